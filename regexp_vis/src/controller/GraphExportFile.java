@@ -22,14 +22,20 @@
  */
 package controller;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -42,11 +48,21 @@ import model.Automaton.StateTransitionsPair;
 import model.AutomatonState;
 import model.AutomatonTransition;
 import model.BasicRegexp;
+import model.BasicRegexpReader;
+import model.BasicRegexpWriter;
+import model.InvalidRegexpDataException;
 import model.InvalidRegexpException;
 import view.GraphCanvasFX;
 import view.GraphNode;
 
 public class GraphExportFile {
+    /**
+     * Start of a file in the binary format, see writeBinaryFile(). The zero
+     * byte can't start a text file.
+     */
+    private static final byte[] BINARY_MAGIC = { 0, 'R', 'V', 'G' };
+    private static final int BINARY_VERSION = 1;
+
     /**
      * Class which contains all the data for a AutomatonState entry
      */
@@ -153,11 +169,21 @@ public class GraphExportFile {
     private void readFile(File file)
         throws BadGraphExportFileException, IOException
     {
-        // We need to make sure we are using UTF-8 to encode characters such as
-        // epsilon
-        FileInputStream is = new FileInputStream(file);
-        InputStreamReader isr = new InputStreamReader(is, "UTF-8");
-        try (BufferedReader br = new BufferedReader(isr)) {
+        try (BufferedInputStream is = new BufferedInputStream(
+                new FileInputStream(file))) {
+            byte[] magic = new byte[BINARY_MAGIC.length];
+            is.mark(magic.length);
+            int len = is.read(magic);
+            is.reset();
+            if (len == magic.length && Arrays.equals(magic, BINARY_MAGIC)) {
+                readBinaryFile(is);
+                return;
+            }
+
+            // We need to make sure we are using UTF-8 to encode characters
+            // such as epsilon
+            BufferedReader br = new BufferedReader(
+                    new InputStreamReader(is, "UTF-8"));
             String strLine;
             boolean firstLine = true;
 
@@ -176,6 +202,53 @@ public class GraphExportFile {
         }
     }
 
+    private void readBinaryFile(BufferedInputStream is)
+        throws BadGraphExportFileException, IOException
+    {
+        // The stream is closed by readFile()
+        DataInputStream in = new DataInputStream(is);
+        try {
+            in.skipBytes(BINARY_MAGIC.length);
+            if (in.readUnsignedByte() != BINARY_VERSION) {
+                throw new BadGraphExportFileException(
+                        "Unsupported binary file version");
+            }
+
+            // Labels are read straight from the same stream
+            BasicRegexpReader reader = new BasicRegexpReader(in);
+            int numStates = reader.readVarInt();
+            if (numStates == 0) {
+                throw new BadGraphExportFileException(
+                        "File must contain the start state");
+            }
+            for (int i = 0; i < numStates; i++) {
+                AutomatonStateEntry entry = new AutomatonStateEntry();
+                entry.x = in.readDouble();
+                entry.y = in.readDouble();
+                entry.isFinal = in.readBoolean();
+                mStateEntries.add(entry);
+            }
+
+            int numTransitions = reader.readVarInt();
+            for (int i = 0; i < numTransitions; i++) {
+                AutomatonTransitionEntry entry = new AutomatonTransitionEntry();
+                entry.fromId = reader.readVarInt();
+                entry.toId = reader.readVarInt();
+                if (entry.fromId >= numStates || entry.toId >= numStates) {
+                    throw new BadGraphExportFileException(
+                            "Transition refers to unknown state");
+                }
+                entry.data = reader.read();
+                mTransitionEntries.add(entry);
+            }
+        } catch (EOFException e) {
+            throw new BadGraphExportFileException("Unexpected end of file", e);
+        } catch (InvalidRegexpDataException e) {
+            // Bad varints and labels, rather than the file failing to read
+            throw new BadGraphExportFileException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Set up the given automaton and canvas based on the contents of this
      * GraphExportFile. It is expected that the automaton and canvas are empty.
@@ -337,6 +410,42 @@ public class GraphExportFile {
         }
     }
 
+    /**
+     * Write this GraphExportFile to the specified file, in a binary format
+     * rather than text. Transition labels are stored with BasicRegexpWriter,
+     * so labels which share sub-expressions (e.g. after removing states) are
+     * much smaller, and don't have to be parsed when read back. Files in
+     * either format can be read with GraphExportFile(File).
+     *
+     * @param file The file to write to
+     */
+    public void writeBinaryFile(File file)
+        throws IOException
+    {
+        FileOutputStream os = new FileOutputStream(file);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(os))) {
+            out.write(BINARY_MAGIC);
+            out.writeByte(BINARY_VERSION);
+
+            // Labels are written straight to the same stream
+            BasicRegexpWriter writer = new BasicRegexpWriter(out);
+            writer.writeVarInt(mStateEntries.size());
+            for (AutomatonStateEntry entry : mStateEntries) {
+                out.writeDouble(entry.x);
+                out.writeDouble(entry.y);
+                out.writeBoolean(entry.isFinal);
+            }
+
+            writer.writeVarInt(mTransitionEntries.size());
+            for (AutomatonTransitionEntry entry : mTransitionEntries) {
+                writer.writeVarInt(entry.fromId);
+                writer.writeVarInt(entry.toId);
+                writer.write(entry.data);
+            }
+        }
+    }
+
     private void writeStateEntry(BufferedWriter w, AutomatonStateEntry entry)
         throws IOException
     {
@@ -77,6 +77,7 @@ public class NfaToDfaActivity extends Activity {
         // Check if nothing needs to be done, fast-track to removal of
         // non-determinism
         if (removeEpsilonActivity.checkActivityDone()) {
+            removeEpsilonActivity.releaseContext();
             subActivity = removeNonDeterminismActivity;
             removeNonDeterminismActivity.recreateContext();
 
@@ -110,6 +111,11 @@ public class NfaToDfaActivity extends Activity {
         initiateActivity();
     }
 
+    @Override
+    public void onEnded() {
+        removeEpsilonActivity.releaseContext();
+    }
+
     @Override
     public void onGraphFileImport(GraphExportFile file) {
         // Start off removing epsilon transitions
@@ -166,6 +172,7 @@ public class NfaToDfaActivity extends Activity {
         // Called by RemoveEpsilonTransitionsActivity when the activity is
         // finished
         historyClear();
+        removeEpsilonActivity.releaseContext();
         this.subActivity = removeNonDeterminismActivity;
         removeNonDeterminismActivity.recreateContext();
         if (removeNonDeterminismActivity.checkActivityDone()) {
@@ -237,9 +244,24 @@ public class NfaToDfaActivity extends Activity {
 
         public void recreateContext() {
             // Called by NfaToDfaActivity
+            if (ctx != null) {
+                // Stop the old context tracking the automaton
+                ctx.detach();
+            }
             ctx = new RemoveEpsilonTransitionsContext(automaton);
         }
 
+        /**
+         * Stop the context tracking the automaton, called by NfaToDfaActivity
+         * when it moves on from removing epsilon transitions or ends.
+         */
+        public void releaseContext() {
+            if (ctx != null) {
+                ctx.detach();
+                ctx = null;
+            }
+        }
+
         /**
          * Create the context menu and its menu items.
          */
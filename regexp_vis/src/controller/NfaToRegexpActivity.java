@@ -42,9 +42,11 @@ import model.Command;
 import model.ConjoinParallelTransitionsCommand;
 import model.IsolateFinalStateCommand;
 import model.IsolateInitialStateCommand;
+import model.RegexpInternTable;
 import model.RemoveLoopTransitionCommand;
 import model.RemoveStateCleanlyCommand;
 import model.SequenceStateTransitionsCommand;
+import model.StateElimination;
 import model.TranslationTools;
 import view.GraphCanvasEvent;
 import view.GraphCanvasFX;
@@ -55,6 +57,7 @@ public class NfaToRegexpActivity extends Activity {
     private MenuItem itemRemoveLoop;
     private MenuItem itemRemoveParallelTrans;
     private MenuItem itemRemoveAndSeq;
+    private MenuItem itemRemoveAllStates;
     /**
      * The state that has been right-clicked we we open up a context menu.
      */
@@ -65,6 +68,11 @@ public class NfaToRegexpActivity extends Activity {
      * state, false otherwise. We can't do much if there is no final state.
      */
     private boolean hasFinalState = true;
+    /**
+     * Shares repeated subexpressions between the transitions created while
+     * removing states.
+     */
+    private final RegexpInternTable internTable = new RegexpInternTable();
 
     public NfaToRegexpActivity(GraphCanvasFX canvas, Automaton automaton) {
         super(canvas, automaton);
@@ -185,6 +193,7 @@ public class NfaToRegexpActivity extends Activity {
         itemRemoveParallelTrans = new MenuItem(
                 "Remove parallel transitions");
         itemRemoveAndSeq = new MenuItem("Remove state, concatenate transitions");
+        itemRemoveAllStates = new MenuItem("Remove all states automatically");
 
         itemRemoveLoop.setOnAction(new EventHandler<ActionEvent>() {
             public void handle(ActionEvent event) {
@@ -201,9 +210,14 @@ public class NfaToRegexpActivity extends Activity {
                 onRemoveState(event);
             }
         });
+        itemRemoveAllStates.setOnAction(new EventHandler<ActionEvent>() {
+            public void handle(ActionEvent event) {
+                onRemoveAllStates(event);
+            }
+        });
 
         contextMenu.getItems().addAll(itemRemoveLoop, itemRemoveParallelTrans,
-                itemRemoveAndSeq);
+                itemRemoveAndSeq, itemRemoveAllStates);
     }
 
     private void onRemoveLoop(ActionEvent event) {
@@ -261,7 +275,7 @@ public class NfaToRegexpActivity extends Activity {
     private void onRemoveState(ActionEvent event) {
         SequenceStateTransitionsCommand cmd =
                 new SequenceStateTransitionsCommand(automaton,
-                        this.rightClickedState);
+                        this.rightClickedState, internTable);
         SequenceStateTransitionsUICommand uiCmd =
                 new SequenceStateTransitionsUICommand(canvas, cmd);
 
@@ -272,9 +286,55 @@ public class NfaToRegexpActivity extends Activity {
         }
     }
 
+    /**
+     * Execute a command created by StateElimination, through its matching
+     * UICommand.
+     */
+    private void executeEliminationCommand(Command cmd) {
+        if (cmd instanceof ConjoinParallelTransitionsCommand) {
+            super.executeNewUICommand(new ConjoinParallelTransitionsUICommand(
+                    canvas, (ConjoinParallelTransitionsCommand) cmd));
+        } else if (cmd instanceof RemoveLoopTransitionCommand) {
+            super.executeNewUICommand(new RemoveLoopTransitionUICommand(
+                    canvas, (RemoveLoopTransitionCommand) cmd));
+        } else {
+            super.executeNewUICommand(new SequenceStateTransitionsUICommand(
+                    canvas, (SequenceStateTransitionsCommand) cmd));
+        }
+    }
+
+    private void onRemoveAllStates(ActionEvent event) {
+        // The order of removal decides how large the expression gets, so let
+        // StateElimination choose it
+        AutomatonState state;
+        while ((state = StateElimination.chooseNextState(automaton,
+                StateElimination.Heuristic.LABEL_WEIGHT)) != null) {
+            while (automaton.stateExists(state)) {
+                executeEliminationCommand(StateElimination.createNextCommand(
+                        automaton, state, internTable));
+            }
+        }
+
+        AutomatonState start = automaton.getStartState();
+        for (AutomatonTransition t : automaton.getStateTransitions(start)) {
+            if (TranslationTools.stateHasParallelTrans(automaton, start,
+                    t.getTo())) {
+                executeEliminationCommand(
+                        new ConjoinParallelTransitionsCommand(automaton, start,
+                                t.getTo()));
+                break;
+            }
+        }
+
+        if (checkActivityDone()) {
+            onActivityDone();
+        }
+    }
+
     @Override
     public void onEnteredRegexp(String text) {
         super.onEnteredRegexp(text);
+        internTable.clear();
         // Need to fully breakdown everything, otherwise there would be nothing
         // to do initially
         ensureNotHybridAutomaton(this.automaton, this.canvas);
@@ -344,6 +404,10 @@ public class NfaToRegexpActivity extends Activity {
 
         }
 
+        // Doesn't need a state to be right-clicked, only something to do
+        itemRemoveAllStates.setDisable(!this.hasFinalState
+                || checkActivityDone());
+
         contextMenu.show(canvas, event.getScreenX(),
                 event.getScreenY());
         event.consume();
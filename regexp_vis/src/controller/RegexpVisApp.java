@@ -99,6 +99,7 @@ public class RegexpVisApp implements Observer {
 
     public static final String WINDOW_TITLE = Main.TITLE + " v" + Main.VERSION;
     private static final String AUTOMATON_GRAPH_FILE_EXT = ".txt";
+    private static final String AUTOMATON_GRAPH_BINARY_FILE_EXT = ".rvg";
 
     private final String[] optimisationOptionLabels = new String[] {
             "No Optimisation", "Low Optimisation", "Medium Optimisation",
@@ -632,10 +633,12 @@ public class RegexpVisApp implements Observer {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Import Automaton Graph File");
         // Choose .txt, our file format is text based as this just makes it
-        // easier to edit with text editors.
+        // easier to edit with text editors. Files in the binary format are
+        // detected when read.
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("Automaton Graph Files", "*"
-                        + AUTOMATON_GRAPH_FILE_EXT),
+                        + AUTOMATON_GRAPH_FILE_EXT, "*"
+                        + AUTOMATON_GRAPH_BINARY_FILE_EXT),
                 new FileChooser.ExtensionFilter("All Files", "*"));
 
         File selectedFile = fileChooser.showOpenDialog(this.stage);
@@ -668,10 +671,16 @@ public class RegexpVisApp implements Observer {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export Automaton Graph File");
         // Choose .txt, our file format is text based as this just makes it
-        // easier to edit with text editors.
+        // easier to edit with text editors. The binary format is much smaller
+        // for the long labels made when converting to a regexp.
+        FileChooser.ExtensionFilter binaryFilter =
+                new FileChooser.ExtensionFilter(
+                        "Compact Automaton Graph Files", "*"
+                                + AUTOMATON_GRAPH_BINARY_FILE_EXT);
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("Automaton Graph Files", "*"
                         + AUTOMATON_GRAPH_FILE_EXT),
+                binaryFilter,
                 new FileChooser.ExtensionFilter("All Files", "*"));
 
         File selectedFile = fileChooser.showSaveDialog(this.stage);
@@ -680,16 +689,25 @@ public class RegexpVisApp implements Observer {
             return;
         }
 
+        boolean binary = fileChooser.getSelectedExtensionFilter() == binaryFilter
+                || selectedFile.getAbsolutePath().endsWith(
+                        AUTOMATON_GRAPH_BINARY_FILE_EXT);
+        String ext = binary ? AUTOMATON_GRAPH_BINARY_FILE_EXT
+                : AUTOMATON_GRAPH_FILE_EXT;
+
         // Add file extension if it was not specified
-        if (!selectedFile.getAbsolutePath().endsWith(AUTOMATON_GRAPH_FILE_EXT)) {
-            selectedFile = new File(selectedFile.getAbsolutePath()
-                    + AUTOMATON_GRAPH_FILE_EXT);
+        if (!selectedFile.getAbsolutePath().endsWith(ext)) {
+            selectedFile = new File(selectedFile.getAbsolutePath() + ext);
         }
 
         try {
             GraphExportFile f = new GraphExportFile(this.automaton,
                     this.mCanvas);
-            f.writeFile(selectedFile);
+            if (binary) {
+                f.writeBinaryFile(selectedFile);
+            } else {
+                f.writeFile(selectedFile);
+            }
         } catch (IOException e) {
             new Alert(AlertType.ERROR,
                     "Failed to save file, unexpected I/O error.").showAndWait();
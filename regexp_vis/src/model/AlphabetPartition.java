@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Splits the characters of an automaton into equivalence classes: two
+ * characters are in the same class when every state has the same out-going
+ * transitions (the same target states) on both of them. A table driven matcher
+ * then only needs one column per class rather than one per character, and
+ * looks up the column of an input character with classOf().
+ *
+ * Class 0 holds every character which no transition is labelled with (so
+ * always moves to the dead state), the characters used by the automaton are
+ * in classes 1 to getNumClasses() - 1, numbered in the order of their smallest
+ * character. Epsilon transitions don't consume a character so are ignored.
+ * Labels which aren't single characters (partially converted automata) put
+ * each character of their alphabet in a class of its own.
+ *
+ * The classes are exact for the given automaton, but not necessarily the
+ * coarsest for its language: "a" and "b" in the Glushkov automaton of (a|b)c
+ * go to different states so are kept apart, in the minimal DFA they are
+ * merged. An AlphabetPartition is immutable.
+ */
+public final class AlphabetPartition {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int[] EMPTY_PAGE = new int[PAGE_SIZE];
+
+    // Two level remap table, the class of "c" is
+    // mPages[c >>> PAGE_BITS][c & PAGE_MASK]. Pages with no used characters
+    // all share EMPTY_PAGE.
+    private final int[][] mPages;
+    // The characters used by the automaton, sorted
+    private final char[] mAlphabet;
+    // The smallest character of each class
+    private final char[] mRepresentatives;
+
+    /**
+     * @param automaton The automaton to partition the characters of
+     */
+    public AlphabetPartition(Automaton automaton)
+    {
+        this(automaton.freeze());
+    }
+
+    /**
+     * Partitions the characters of the Glushkov automaton of the expression,
+     * see RegexpCompiler.compileGlushkov().
+     *
+     * @param re The expression to partition the characters of
+     */
+    public AlphabetPartition(BasicRegexp re)
+    {
+        this(RegexpCompiler.compileGlushkov(re).freeze());
+    }
+
+    /**
+     * @param automaton The snapshot to partition the characters of
+     */
+    public AlphabetPartition(CompactAutomaton automaton)
+    {
+        mAlphabet = calcAlphabet(automaton);
+        int numChars = mAlphabet.length;
+
+        // Partition refinement over the used characters, all of them start in
+        // one class. For each pair of states the set of characters labelling
+        // the transitions between them splits every class it cuts in two.
+        int[] cls = new int[numChars];
+        int[] classSize = new int[numChars + 1];
+        int[] marked = new int[numChars + 1];
+        int[] split = new int[numChars + 1];
+        Arrays.fill(split, -1);
+        classSize[0] = numChars;
+        int numClasses = numChars == 0 ? 0 : 1;
+
+        int[] group = new int[numChars];
+        for (int s = 0; s < automaton.getNumStates(); s++) {
+            long[] pairs = calcTargetCharPairs(automaton, s);
+            int i = 0;
+            while (i < pairs.length) {
+                int target = (int) (pairs[i] >>> 32);
+                int groupSize = 0;
+                while (i < pairs.length && (int) (pairs[i] >>> 32) == target) {
+                    int c = (int) pairs[i];
+                    // Skip duplicates, from parallel transitions
+                    if (groupSize == 0 || group[groupSize - 1] != c) {
+                        group[groupSize++] = c;
+                    }
+                    i++;
+                }
+                numClasses = refine(cls, classSize, marked, split, numClasses,
+                        group, groupSize);
+            }
+        }
+        // Non single character labels can't be compared with the other
+        // labels, separate each of their characters
+        for (int label = 0; label < automaton.getNumLabels(); label++) {
+            if (automaton.isSingleCharLabel(label)) {
+                continue;
+            }
+            for (char c : automaton.getLabel(label).getAlphabet()
+                    .toCharArray()) {
+                group[0] = Arrays.binarySearch(mAlphabet, c);
+                numClasses = refine(cls, classSize, marked, split, numClasses,
+                        group, 1);
+            }
+        }
+
+        // Renumber the classes by their smallest character, after the
+        // unused class 0
+        int[] renumber = new int[numClasses];
+        Arrays.fill(renumber, -1);
+        mRepresentatives = new char[numClasses + 1];
+        mRepresentatives[0] = calcFirstUnused(mAlphabet);
+        int next = 1;
+        for (int i = 0; i < numChars; i++) {
+            if (renumber[cls[i]] < 0) {
+                renumber[cls[i]] = next;
+                mRepresentatives[next] = mAlphabet[i];
+                next++;
+            }
+        }
+
+        mPages = new int[(Character.MAX_VALUE + 1) >>> PAGE_BITS][];
+        Arrays.fill(mPages, EMPTY_PAGE);
+        for (int i = 0; i < numChars; i++) {
+            char c = mAlphabet[i];
+            int page = c >>> PAGE_BITS;
+            if (mPages[page] == EMPTY_PAGE) {
+                mPages[page] = new int[PAGE_SIZE];
+            }
+            mPages[page][c & PAGE_MASK] = renumber[cls[i]];
+        }
+    }
+
+    /**
+     * @return The sorted distinct characters of the single character,
+     * non-epsilon labels, and of the alphabets of the other labels
+     */
+    private static char[] calcAlphabet(CompactAutomaton automaton)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int label = 0; label < automaton.getNumLabels(); label++) {
+            if (label == automaton.getEpsilonLabel()) {
+                continue;
+            }
+            if (automaton.isSingleCharLabel(label)) {
+                sb.append(automaton.getLabelChar(label));
+            } else {
+                sb.append(automaton.getLabel(label).getAlphabet());
+            }
+        }
+        char[] chars = sb.toString().toCharArray();
+        Arrays.sort(chars);
+        int len = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (len == 0 || chars[len - 1] != chars[i]) {
+                chars[len++] = chars[i];
+            }
+        }
+        return Arrays.copyOf(chars, len);
+    }
+
+    /**
+     * @return The (target, character index) pairs of the single character,
+     * non-epsilon transitions of the state, packed into longs and sorted by
+     * target then character
+     */
+    private long[] calcTargetCharPairs(CompactAutomaton automaton, int state)
+    {
+        int start = automaton.getTransitionsStart(state);
+        int end = automaton.getTransitionsEnd(state);
+        long[] pairs = new long[end - start];
+        int len = 0;
+        for (int t = start; t < end; t++) {
+            int label = automaton.getTransitionLabel(t);
+            if (label == automaton.getEpsilonLabel()
+                    || !automaton.isSingleCharLabel(label)) {
+                continue;
+            }
+            int c = Arrays.binarySearch(mAlphabet,
+                    automaton.getLabelChar(label));
+            pairs[len++] = ((long) automaton.getTransitionTarget(t) << 32) | c;
+        }
+        pairs = Arrays.copyOf(pairs, len);
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    /**
+     * Splits every class containing some, but not all, of the characters in
+     * the group into the characters in the group and the rest.
+     *
+     * @return The new number of classes
+     */
+    private static int refine(int[] cls, int[] classSize, int[] marked,
+            int[] split, int numClasses, int[] group, int groupSize)
+    {
+        for (int i = 0; i < groupSize; i++) {
+            marked[cls[group[i]]]++;
+        }
+        // Classes "firstNew" onwards are the ones split off in this call,
+        // split[] maps each cut class to its new class and back
+        int firstNew = numClasses;
+        for (int i = 0; i < groupSize; i++) {
+            int c = cls[group[i]];
+            if (split[c] < 0 && marked[c] < classSize[c]) {
+                split[c] = numClasses;
+                split[numClasses] = c;
+                numClasses++;
+            }
+        }
+        for (int i = 0; i < groupSize; i++) {
+            int c = cls[group[i]];
+            marked[c] = 0;
+            int newClass = split[c];
+            if (newClass >= 0) {
+                cls[group[i]] = newClass;
+                classSize[c]--;
+                classSize[newClass]++;
+            }
+        }
+        for (int newClass = firstNew; newClass < numClasses; newClass++) {
+            split[split[newClass]] = -1;
+            split[newClass] = -1;
+        }
+        return numClasses;
+    }
+
+    private static char calcFirstUnused(char[] alphabet)
+    {
+        char c = 0;
+        for (char used : alphabet) {
+            if (used != c) {
+                break;
+            }
+            c++;
+        }
+        return c;
+    }
+
+    /**
+     * @return The number of classes, including the class of unused characters
+     */
+    public int getNumClasses()
+    {
+        return mRepresentatives.length;
+    }
+
+    /**
+     * @param c The character to lookup
+     * @return The class of the character, 0 if the automaton has no
+     * transitions on it
+     */
+    public int classOf(char c)
+    {
+        return mPages[c >>> PAGE_BITS][c & PAGE_MASK];
+    }
+
+    /**
+     * @param cls The class
+     * @return The smallest character in the class, any character of a class
+     * may be used to compute the transitions of the whole class
+     */
+    public char getRepresentative(int cls)
+    {
+        return mRepresentatives[cls];
+    }
+
+    /**
+     * @return The characters used by the automaton (those not in class 0),
+     * sorted
+     */
+    public char[] getAlphabet()
+    {
+        return mAlphabet.clone();
+    }
+}
@@ -22,9 +22,11 @@
  */
 package model;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -73,6 +75,22 @@ public class Automaton {
         }
     }
 
+    /**
+     * Listener notified whenever a state is added to or removed from an
+     * automaton, e.g. when a command is executed or undone.
+     */
+    public interface StateListener {
+        /**
+         * @param state The state which has just been added
+         */
+        void onStateAdded(AutomatonState state);
+
+        /**
+         * @param state The state which has just been removed
+         */
+        void onStateRemoved(AutomatonState state);
+    }
+
     private class GraphIterator implements Iterator<StateTransitionsPair>
     {
         private Iterator<Map.Entry<Integer, StateTransitionsPair>> mEntrySetIterator;
@@ -104,6 +122,15 @@ public class Automaton {
     // AutomatonState and the values are a pair containing the state and its
     // out-going transitions
     private HashMap<Integer, StateTransitionsPair> mGraph;
+    // Reverse adjacency index, the key is the state a transition goes to and
+    // the value is the set of transitions in the graph going to that state.
+    // States are compared by identity (AutomatonState doesn't override
+    // equals()), so foreign duplicate states never share an entry. Kept in
+    // sync with mGraph by every method which adds or removes transitions.
+    private HashMap<AutomatonState, LinkedHashSet<AutomatonTransition>> mIngoing;
+    // Index of every transition in the graph by its ID, kept in sync with
+    // mGraph in the same way as mIngoing
+    private HashMap<Integer, AutomatonTransition> mTransitionsById;
     // The state to start in, not stating the end state, since that will be
     // handled by isFinal() in AutomatonState
     private AutomatonState mStartState;
@@ -111,9 +138,12 @@ public class Automaton {
     private int mCounter;
     // Counter to give AutomatonTransition(s) unique IDs
     private int mTransCounter;
+    // Listeners for states being added and removed, not reset by clear()
+    private final ArrayList<StateListener> mStateListeners;
 
     public Automaton()
     {
+        mStateListeners = new ArrayList<>();
         clear();
     }
 
@@ -121,11 +151,40 @@ public class Automaton {
      * Clear all states and transitions, and reset counters.
      */
     public void clear() {
+        if (mGraph != null) {
+            for (StateTransitionsPair pair : mGraph.values()) {
+                for (StateListener l : mStateListeners) {
+                    l.onStateRemoved(pair.mState);
+                }
+            }
+        }
+
         mTransCounter = 0;
         mCounter = 0;
         mGraph = new HashMap<>();
+        mIngoing = new HashMap<>();
+        mTransitionsById = new HashMap<>();
         mStartState = new AutomatonState(mCounter++);
         mGraph.put(mStartState.getId(), new StateTransitionsPair(mStartState));
+        for (StateListener l : mStateListeners) {
+            l.onStateAdded(mStartState);
+        }
+    }
+
+    /**
+     * @param listener The listener to notify when states are added or removed
+     */
+    public void addStateListener(StateListener listener)
+    {
+        mStateListeners.add(listener);
+    }
+
+    /**
+     * @param listener The listener to stop notifying
+     */
+    public void removeStateListener(StateListener listener)
+    {
+        mStateListeners.remove(listener);
     }
 
     /**
@@ -227,15 +286,7 @@ public class Automaton {
      */
     public AutomatonTransition getTransitionById(int id)
     {
-        // TODO: improve efficiency, possibly using a map to lookup based on ID
-        for (StateTransitionsPair pair : mGraph.values()) {
-            for (AutomatonTransition t : pair.mTransitions) {
-                if (t.getId() == id) {
-                    return t;
-                }
-            }
-        }
-        return null;
+        return mTransitionsById.get(id);
     }
 
     /**
@@ -266,18 +317,7 @@ public class Automaton {
                 "automaton.");
         }
 
-        for (Map.Entry<Integer, StateTransitionsPair> e : mGraph.entrySet()) {
-            LinkedList<AutomatonTransition> transitions =
-                e.getValue().mTransitions;
-
-            for (AutomatonTransition t : transitions) {
-                if (t.getTo() == state) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return mIngoing.containsKey(state);
     }
 
     /**
@@ -292,19 +332,12 @@ public class Automaton {
                 "automaton.");
         }
 
-        LinkedList<AutomatonTransition> ret = new LinkedList<>();
-        for (Map.Entry<Integer, StateTransitionsPair> e : mGraph.entrySet()) {
-            LinkedList<AutomatonTransition> transitions =
-                    e.getValue().mTransitions;
-
-            for (AutomatonTransition t : transitions) {
-                if (t.getTo() == state) {
-                    ret.add(t);
-                }
-            }
+        LinkedHashSet<AutomatonTransition> ingoing = mIngoing.get(state);
+        if (ingoing == null) {
+            return new LinkedList<>();
         }
 
-        return ret;
+        return new LinkedList<>(ingoing);
     }
 
     /**
@@ -367,6 +400,15 @@ public class Automaton {
 
         StateTransitionsPair pair = new StateTransitionsPair(state, transitions);
         mGraph.put(state.getId(), pair);
+        for (AutomatonTransition t : transitions) {
+            // The list isn't validated, tolerate null entries as before
+            if (t != null) {
+                indexTransition(t);
+            }
+        }
+        for (StateListener l : mStateListeners) {
+            l.onStateAdded(state);
+        }
     }
 
     /**
@@ -387,7 +429,17 @@ public class Automaton {
             throw new RuntimeException("Cannot remove the start state.");
         }
 
-        return mGraph.remove(state.getId()).mTransitions;
+        LinkedList<AutomatonTransition> transitions =
+            mGraph.remove(state.getId()).mTransitions;
+        for (AutomatonTransition t : transitions) {
+            if (t != null) {
+                unindexTransition(t);
+            }
+        }
+        for (StateListener l : mStateListeners) {
+            l.onStateRemoved(state);
+        }
+        return transitions;
     }
 
     /**
@@ -405,13 +457,17 @@ public class Automaton {
                 "cannot add transition");
         }
 
-        // Check a transition doesn't already exist
-        if (pair.mTransitions.contains(transition)) {
+        // Check a transition doesn't already exist, the in-going index holds
+        // exactly the transitions in the graph so avoid scanning the list
+        LinkedHashSet<AutomatonTransition> ingoing =
+            mIngoing.get(transition.getTo());
+        if (ingoing != null && ingoing.contains(transition)) {
             throw new RuntimeException(
                 "The specified transitions already exists in this automaton");
         }
 
         pair.mTransitions.addLast(transition);
+        indexTransition(transition);
     }
 
     /**
@@ -434,6 +490,60 @@ public class Automaton {
             throw new RuntimeException(
                 "The specified transition doesn't exist");
         }
+        unindexTransition(transition);
+    }
+
+    /**
+     * Record a transition which has just been added to the graph in the
+     * reverse adjacency and ID indices.
+     *
+     * @param transition The transition to record
+     */
+    private void indexTransition(AutomatonTransition transition)
+    {
+        LinkedHashSet<AutomatonTransition> ingoing =
+            mIngoing.get(transition.getTo());
+        if (ingoing == null) {
+            ingoing = new LinkedHashSet<>();
+            mIngoing.put(transition.getTo(), ingoing);
+        }
+        ingoing.add(transition);
+        mTransitionsById.put(transition.getId(), transition);
+    }
+
+    /**
+     * Forget a transition which has just been removed from the graph in the
+     * reverse adjacency and ID indices. Empty entries are dropped so that
+     * hasIngoingTransition() only needs to check for the key.
+     *
+     * @param transition The transition to forget
+     */
+    private void unindexTransition(AutomatonTransition transition)
+    {
+        LinkedHashSet<AutomatonTransition> ingoing =
+            mIngoing.get(transition.getTo());
+        if (ingoing != null) {
+            ingoing.remove(transition);
+            if (ingoing.isEmpty()) {
+                mIngoing.remove(transition.getTo());
+            }
+        }
+        // Only forget the ID if it still maps to this transition, foreign
+        // transitions may reuse IDs
+        if (mTransitionsById.get(transition.getId()) == transition) {
+            mTransitionsById.remove(transition.getId());
+        }
+    }
+
+    /**
+     * Creates an immutable, compact snapshot of this automaton for read-only
+     * analysis, see CompactAutomaton.
+     *
+     * @return The snapshot
+     */
+    public CompactAutomaton freeze()
+    {
+        return new CompactAutomaton(this);
     }
 
     /**
@@ -457,16 +567,15 @@ public class Automaton {
         return pair.getState();
     }
 
+    /**
+     * Alias of getTransitionById()
+     *
+     * @param id The ID of the transition to find
+     * @return The AutomatonTransition with the given ID, or null if no such
+     * transition exists
+     */
     public AutomatonTransition getAutomatonTransitionById(int id)
     {
-        for (StateTransitionsPair pair : mGraph.values()) {
-            for (AutomatonTransition t : pair.getTransitions()) {
-                if (t.getId() == id) {
-                    return t;
-                }
-            }
-        }
-
-        return null;
+        return getTransitionById(id);
     }
 }
@@ -22,12 +22,18 @@
  */
 package model;
 
+import java.util.Arrays;
+
 /**
  * Class which represents a state of an automaton
  */
 public final class AutomatonState {
     private final int mId;
     private boolean mIsFinal;
+    // Sorted and distinct, empty unless set
+    private int[] mPatternIds = NO_PATTERN_IDS;
+
+    private static final int[] NO_PATTERN_IDS = new int[0];
 
     public AutomatonState(int id, boolean isFinal)
     {
@@ -43,7 +49,9 @@ public final class AutomatonState {
     @Override
     public String toString()
     {
-        return Integer.toString(mId) + (mIsFinal ? " [final]" : "");
+        return Integer.toString(mId) + (mIsFinal ? " [final]" : "")
+                + (mPatternIds.length > 0 ? " " + Arrays.toString(mPatternIds)
+                        : "");
     }
 
     /**
@@ -71,4 +79,47 @@ public final class AutomatonState {
     {
         mIsFinal = f;
     }
+
+    /**
+     * @return The IDs of the patterns this state accepts, when the automaton
+     * matches several patterns at once (see RegexpCompiler.compileUnion()),
+     * sorted. Empty if there are none.
+     */
+    public int[] getPatternIds()
+    {
+        // The empty array can be shared
+        return mPatternIds.length == 0 ? mPatternIds : mPatternIds.clone();
+    }
+
+    /**
+     * @param id A pattern ID
+     * @return True if this state accepts the given pattern
+     */
+    public boolean hasPatternId(int id)
+    {
+        return Arrays.binarySearch(mPatternIds, id) >= 0;
+    }
+
+    /**
+     * Sets the IDs of the patterns this state accepts. This doesn't change
+     * whether the state is final.
+     *
+     * @param ids The pattern IDs, in any order and possibly repeated
+     */
+    public void setPatternIds(int[] ids)
+    {
+        if (ids == null) {
+            throw new IllegalArgumentException("Pattern IDs cannot be null");
+        }
+
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[n - 1] != sorted[i]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        mPatternIds = n == 0 ? NO_PATTERN_IDS : Arrays.copyOf(sorted, n);
+    }
 }
@@ -90,7 +90,36 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
     final private ArrayList<BasicRegexp> mSortedOperands;
     final private char mChar;
     final private RegexpOperator mOperator;
-    // IDEA(mjn33): cache results from .optimise() and .isNullable()?
+    /**
+     * Structural hash, computed once on construction. Consistent with
+     * equals(), so the operands of a CHOICE are hashed in sorted order.
+     */
+    final private int mHash;
+    /**
+     * Result of optimiseFully() for this expression, null if not known yet.
+     * If the result is this expression, it is a fixed point and optimise()
+     * can return immediately.
+     */
+    private OptimiseResult mOptimised;
+    /**
+     * Number of nodes in this expression, and number of nodes on the longest
+     * path down to a single character expression. Cheap to compute on
+     * construction from the operands.
+     */
+    final private int mSize;
+    final private int mHeight;
+    /**
+     * Attributes computed the first time they are needed, see isNullable(),
+     * getAlphabet() and toString(). As BasicRegexp is immutable these never
+     * change, threads racing to compute them would compute the same value.
+     */
+    private byte mNullable = NULLABLE_UNKNOWN;
+    private String mAlphabet;
+    private String mString;
+
+    private static final byte NULLABLE_UNKNOWN = 0;
+    private static final byte NULLABLE_FALSE = 1;
+    private static final byte NULLABLE_TRUE = 2;
 
     /**
      * Construct a BasicRegexp with the specified high-level operator and
@@ -140,14 +169,20 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
             optimisedOperands = new ArrayList<>(operands);
         }
 
-        ArrayList<BasicRegexp> sortedOptimisedOperands = new ArrayList<>(
-                optimisedOperands);
-        Collections.sort(sortedOptimisedOperands);
+        // Only CHOICE needs the sorted operands, see compareTo()
+        ArrayList<BasicRegexp> sortedOptimisedOperands = optimisedOperands;
+        if (op == RegexpOperator.CHOICE) {
+            sortedOptimisedOperands = new ArrayList<>(optimisedOperands);
+            Collections.sort(sortedOptimisedOperands);
+        }
 
         mOperands = optimisedOperands;
         mSortedOperands = sortedOptimisedOperands;
         mChar = EPSILON_CHAR;
         mOperator = op;
+        mHash = calcHash();
+        mSize = calcSize();
+        mHeight = calcHeight();
     }
 
     /**
@@ -174,9 +209,12 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
 
         mOperands = new ArrayList<>();
         mOperands.add(operand);
-        mSortedOperands = new ArrayList<>(mOperands);
+        mSortedOperands = mOperands;
         mChar = EPSILON_CHAR;
         mOperator = op;
+        mHash = calcHash();
+        mSize = calcSize();
+        mHeight = calcHeight();
     }
 
     /**
@@ -190,6 +228,47 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
         mSortedOperands = null;
         mChar = c;
         mOperator = RegexpOperator.NONE;
+        mHash = calcHash();
+        mSize = 1;
+        mHeight = 1;
+    }
+
+    private int calcSize()
+    {
+        long size = 1;
+        for (BasicRegexp operand : mOperands) {
+            size += operand == null ? 0 : operand.mSize;
+        }
+        // Shared sub-expressions are counted once per use, so this can
+        // overflow
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private int calcHeight()
+    {
+        int height = 0;
+        for (BasicRegexp operand : mOperands) {
+            if (operand != null) {
+                height = Math.max(height, operand.mHeight);
+            }
+        }
+        return height + 1;
+    }
+
+    private int calcHash()
+    {
+        int hash = mOperator.ordinal();
+        if (isSingleChar()) {
+            return 31 * hash + mChar;
+        }
+
+        // Ordering of CHOICE operands is unimportant, see compareTo()
+        List<BasicRegexp> list = mOperator == RegexpOperator.CHOICE
+                ? mSortedOperands : mOperands;
+        for (BasicRegexp operand : list) {
+            hash = 31 * hash + (operand == null ? 0 : operand.mHash);
+        }
+        return hash;
     }
 
     private static int compareOperandLists(List<BasicRegexp> list1,
@@ -219,6 +298,11 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
 
     public int compareTo(BasicRegexp other)
     {
+        // Shared subexpressions, e.g. from a RegexpInternTable
+        if (this == other) {
+            return 0;
+        }
+
         // Compare operators first
         int ret = mOperator.compareTo(other.mOperator);
         if (ret != 0) {
@@ -261,9 +345,17 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
             return false;
         }
         BasicRegexp other = (BasicRegexp) obj;
+        if (mHash != other.mHash) {
+            return false;
+        }
         return this.compareTo(other) == 0;
     }
 
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
     /**
      * @return true if this is a single character expression, false
      * otherwise
@@ -317,6 +409,16 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
      * contains the empty word
      */
     public boolean isNullable()
+    {
+        byte nullable = mNullable;
+        if (nullable == NULLABLE_UNKNOWN) {
+            nullable = calcNullable() ? NULLABLE_TRUE : NULLABLE_FALSE;
+            mNullable = nullable;
+        }
+        return nullable == NULLABLE_TRUE;
+    }
+
+    private boolean calcNullable()
     {
         switch (mOperator) {
         case NONE:
@@ -354,40 +456,245 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
     }
 
     /**
-     * Find the matching closing parenthesis for the parenthesis at the start of
-     * this string
+     * @return The number of nodes in the tree for this expression, counting
+     * sub-expressions once for each place they are used
+     */
+    public int getSize()
+    {
+        return mSize;
+    }
+
+    /**
+     * @return The height of the tree for this expression, 1 for a single
+     * character expression
+     */
+    public int getHeight()
+    {
+        return mHeight;
+    }
+
+    /**
+     * @return The characters used in this expression, excluding epsilon,
+     * each appearing once and in ascending order
+     */
+    public String getAlphabet()
+    {
+        String alphabet = mAlphabet;
+        if (alphabet == null) {
+            alphabet = calcAlphabet();
+            mAlphabet = alphabet;
+        }
+        return alphabet;
+    }
+
+    private String calcAlphabet()
+    {
+        if (isSingleChar()) {
+            return mChar == EPSILON_CHAR ? "" : String.valueOf(mChar);
+        }
+
+        String alphabet = "";
+        for (BasicRegexp operand : mOperands) {
+            alphabet = mergeAlphabets(alphabet, operand.getAlphabet());
+        }
+        return alphabet;
+    }
+
+    /**
+     * Factored out of calcAlphabet(), merge two alphabets as returned by
+     * getAlphabet()
+     */
+    private static String mergeAlphabets(String a, String b)
+    {
+        if (a.isEmpty() || a.equals(b)) {
+            return b;
+        } else if (b.isEmpty()) {
+            return a;
+        }
+
+        StringBuilder sb = new StringBuilder(a.length() + b.length());
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (ca <= cb) {
+                sb.append(ca);
+                i++;
+                if (ca == cb) {
+                    j++;
+                }
+            } else {
+                sb.append(cb);
+                j++;
+            }
+        }
+        sb.append(a, i, a.length());
+        sb.append(b, j, b.length());
+        return sb.length() == a.length() ? a : sb.toString();
+    }
+
+    /**
+     * Calculates the Brzozowski derivative of this expression with respect to
+     * a character, i.e. an expression for the words "w" such that "cw" is in
+     * the language of this expression. The result isn't optimised, see
+     * optimise().
      *
-     * <b>Precondition:</b> it is assumed that "str" starts with an opening
-     * parenthesis
+     * @param c The character, must not be EPSILON_CHAR
+     * @return The derivative, or null if the derivative is the empty language
+     * (which a BasicRegexp cannot represent)
+     */
+    public BasicRegexp derivative(char c)
+    {
+        switch (mOperator) {
+        case NONE:
+            return mChar == c && mChar != EPSILON_CHAR ? EPSILON_EXPRESSION
+                    : null;
+        case STAR:
+        case PLUS: {
+            // d(r*) = d(r)r*, d(r+) = d(r)r*
+            BasicRegexp operandDerivative = mOperands.get(0).derivative(c);
+            if (operandDerivative == null) {
+                return null;
+            }
+            BasicRegexp star = mOperator == RegexpOperator.STAR ? this
+                    : new BasicRegexp(mOperands.get(0), RegexpOperator.STAR);
+            ArrayList<BasicRegexp> sequence = new ArrayList<>();
+            sequence.add(operandDerivative);
+            sequence.add(star);
+            return derivativeSequence(sequence);
+        }
+        case OPTION:
+            // d(r?) = d(r)
+            return mOperands.get(0).derivative(c);
+        case SEQUENCE: {
+            // d(rs) = d(r)s | d(s) if r is nullable, d(r)s otherwise
+            ArrayList<BasicRegexp> choices = new ArrayList<>();
+            for (int i = 0; i < mOperands.size(); i++) {
+                BasicRegexp operand = mOperands.get(i);
+                BasicRegexp operandDerivative = operand.derivative(c);
+                if (operandDerivative != null) {
+                    ArrayList<BasicRegexp> sequence = new ArrayList<>();
+                    sequence.add(operandDerivative);
+                    sequence.addAll(mOperands.subList(i + 1,
+                            mOperands.size()));
+                    choices.add(derivativeSequence(sequence));
+                }
+                if (!operand.isNullable()) {
+                    break;
+                }
+            }
+            return derivativeChoice(choices);
+        }
+        case CHOICE: {
+            // d(r|s) = d(r) | d(s)
+            ArrayList<BasicRegexp> choices = new ArrayList<>();
+            for (BasicRegexp operand : mOperands) {
+                BasicRegexp operandDerivative = operand.derivative(c);
+                if (operandDerivative != null) {
+                    choices.add(operandDerivative);
+                }
+            }
+            return derivativeChoice(choices);
+        }
+        default:
+            throw new RuntimeException("BUG: Should be unreachable.");
+        }
+    }
+
+    /**
+     * Factored out of derivative(), creates a SEQUENCE of the given operands
+     * without any epsilon operands
+     */
+    private static BasicRegexp derivativeSequence(
+        ArrayList<BasicRegexp> operands)
+    {
+        Iterator<BasicRegexp> it = operands.iterator();
+        while (it.hasNext()) {
+            BasicRegexp re = it.next();
+            if (re.isSingleChar() && re.getChar() == EPSILON_CHAR) {
+                it.remove();
+            }
+        }
+        if (operands.isEmpty()) {
+            return EPSILON_EXPRESSION;
+        } else if (operands.size() == 1) {
+            return operands.get(0);
+        } else {
+            return new BasicRegexp(operands, RegexpOperator.SEQUENCE);
+        }
+    }
+
+    /**
+     * Factored out of derivative(), creates a CHOICE of the given operands,
+     * or null (the empty language) if there are none
+     */
+    private static BasicRegexp derivativeChoice(
+        ArrayList<BasicRegexp> operands)
+    {
+        if (operands.isEmpty()) {
+            return null;
+        } else if (operands.size() == 1) {
+            return operands.get(0);
+        } else {
+            return new BasicRegexp(operands, RegexpOperator.CHOICE);
+        }
+    }
+
+    /**
+     * Working state of parseRegexp() for one level of parentheses
+     */
+    private static final class ParseFrame {
+        private final ArrayList<BasicRegexp> mSequenceOperands =
+                new ArrayList<>();
+        private final ArrayList<BasicRegexp> mChoiceOperands =
+                new ArrayList<>();
+        // Index of the opening parenthesis, -1 for the top level
+        private final int mOpenIdx;
+        // Index of the last CHOICE operator found at this level
+        private int mChoiceIdx = -1;
+
+        private ParseFrame(int openIdx)
+        {
+            mOpenIdx = openIdx;
+        }
+    }
+
+    /**
+     * Find the first opening parenthesis in "str" which has no matching
+     * closing parenthesis. Stray closing parentheses are skipped, they are
+     * reported when parseRegexp() reaches them.
      *
-     * @param str The string in question
-     * @return the index of the matching closing parenthesis, -1 otherwise if
-     * there is no matching closing parenthesis in this string
+     * @param str The regular expression being parsed
+     * @return The index of the first unclosed parenthesis, or -1 if there is
+     * none
      */
-    private static int findMatchingParenIdx(String str)
+    private static int findFirstUnclosedParenIdx(String str)
     {
-        assert(str.charAt(0) == '(');
-        int curIdx = 1;
-        int parenCount = 1; // 1 open parenthesis at start
+        int depth = 0;
+        // Index of the last parenthesis opened at depth 0, which is the first
+        // of any left open at the end
+        int outermostIdx = -1;
 
-        while (curIdx < str.length()) {
-            switch (str.charAt(curIdx)) {
+        for (int idx = 0; idx < str.length(); idx++) {
+            switch (str.charAt(idx)) {
             case '(':
-                parenCount++;
+                if (depth == 0) {
+                    outermostIdx = idx;
+                }
+                depth++;
                 break;
             case ')':
-                parenCount--;
+                if (depth > 0) {
+                    depth--;
+                }
                 break;
             default:
                 break;
             }
-            if (parenCount == 0) {
-                return curIdx;
-            }
-            curIdx++;
         }
 
-        return -1; // No matching parenthesis found
+        return depth > 0 ? outermostIdx : -1;
     }
 
     /**
@@ -396,11 +703,12 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
      *
      * @param sequenceOperands The current working list of operands in sequence
      * @param op The operator that we are processing
+     * @param idx The index of the operator in the regular expression
      * @see parseRegexp
      * @throws InvalidRegexpException in event of parse error
      */
     private static void processUnaryOp(ArrayList<BasicRegexp> sequenceOperands,
-        RegexpOperator op) throws InvalidRegexpException
+        RegexpOperator op, int idx) throws InvalidRegexpException
     {
         if (!sequenceOperands.isEmpty()) {
             BasicRegexp back = sequenceOperands
@@ -410,7 +718,7 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
             sequenceOperands.add(new BasicRegexp(back, op));
         } else {
             throw new InvalidRegexpException(
-                op.name() + " operator on empty word");
+                op.name() + " operator on empty word", idx);
         }
     }
 
@@ -420,11 +728,13 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
      *
      * @param sequenceOperands The current working list of operands in sequence
      * @param choiceOperands The current working list of operands for choice
+     * @param idx The index of the choice operator in the regular expression
      * @see parseRegexp
      * @throws InvalidRegexpException in event of parse error
      */
     private static void processChoiceOp(ArrayList<BasicRegexp> sequenceOperands,
-        ArrayList<BasicRegexp> choiceOperands) throws InvalidRegexpException
+        ArrayList<BasicRegexp> choiceOperands, int idx)
+        throws InvalidRegexpException
     {
         if (sequenceOperands.size() > 1) {
             // Found multiple operands, they will be in sequence
@@ -438,97 +748,142 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
             BasicRegexp back = sequenceOperands.remove(0);
             choiceOperands.add(back);
         } else {
-            throw new InvalidRegexpException("CHOICE operator on empty word");
+            throw new InvalidRegexpException("CHOICE operator on empty word",
+                idx);
+        }
+    }
+
+    /**
+     * Factored out of parseRegexp, build the expression for one level of
+     * parentheses once its end is reached
+     *
+     * @param frame The working state for this level
+     * @return The expression, or null if this level is empty
+     * @throws InvalidRegexpException in event of parse error
+     */
+    private static BasicRegexp finishFrame(ParseFrame frame)
+        throws InvalidRegexpException
+    {
+        ArrayList<BasicRegexp> sequenceOperands = frame.mSequenceOperands;
+        ArrayList<BasicRegexp> choiceOperands = frame.mChoiceOperands;
+
+        if (!choiceOperands.isEmpty()) {
+            // The remaining sequence operands are part of the choice operation
+            processChoiceOp(sequenceOperands, choiceOperands,
+                frame.mChoiceIdx);
+            return new BasicRegexp(choiceOperands, RegexpOperator.CHOICE);
+        } else if (sequenceOperands.size() == 1) {
+            // Don't return a sequence of a single expression
+            return sequenceOperands.get(0);
+        } else if (!sequenceOperands.isEmpty()) {
+            return new BasicRegexp(sequenceOperands, RegexpOperator.SEQUENCE);
+        } else {
+            return null;
         }
     }
 
     /**
      * Parse the given regular expression, outputting a tree hierarchy of
-     * BasicRegexp objects
+     * BasicRegexp objects. Parsing is done in a single pass with an explicit
+     * stack of parentheses, so takes linear time and doesn't recurse however
+     * deeply the expression is nested.
      *
      * @param str The regular expression to parse
-     * @return The root BasicRegexp for the parse tree
+     * @return The root BasicRegexp for the parse tree, or null if "str" is
+     * empty
      * @throws InvalidRegexpException if this isn't a valid regexp (or at least
-     * one this parser doesn't support)
+     * one this parser doesn't support), the exception gives the index of the
+     * error in "str"
      */
     public static BasicRegexp parseRegexp(String str)
         throws InvalidRegexpException
     {
-        ArrayList<BasicRegexp> sequenceOperands = new ArrayList<>();
-        ArrayList<BasicRegexp> choiceOperands = new ArrayList<>();
-        int idx = 0;
+        int unclosedIdx = findFirstUnclosedParenIdx(str);
+        ArrayList<ParseFrame> stack = new ArrayList<>();
+        ParseFrame frame = new ParseFrame(-1);
 
-        while (idx < str.length()) {
-            switch (str.charAt(idx)) {
-            case '(': {
-                int parenIdx = findMatchingParenIdx(str.substring(idx));
-                if (parenIdx == -1) {
+        for (int idx = 0; idx < str.length(); idx++) {
+            char c = str.charAt(idx);
+            switch (c) {
+            case '(':
+                if (idx == unclosedIdx) {
                     throw new InvalidRegexpException(
-                        "Unclosed parenthesis found");
+                        "Unclosed parenthesis found", idx);
                 }
-                parenIdx += idx; // parenIdx is relative to idx
-                BasicRegexp re = parseRegexp(str.substring(idx + 1, parenIdx));
+                stack.add(frame);
+                frame = new ParseFrame(idx);
+                break;
+            case ')': {
+                if (stack.isEmpty()) {
+                    // No last matching opening parenthesis, error
+                    throw new InvalidRegexpException(
+                        "Stray closing parenthesis found", idx);
+                }
+                BasicRegexp re = finishFrame(frame);
                 if (re == null) {
                     // Completely empty sub-expression, e.g. "()"
                     throw new InvalidRegexpException(
-                        "Empty parentheses found");
+                        "Empty parentheses found", frame.mOpenIdx);
                 }
-                sequenceOperands.add(re);
-                idx = parenIdx;
+                frame = stack.remove(stack.size() - 1);
+                frame.mSequenceOperands.add(re);
                 break;
             }
-            case ')':
-                // No last matching opening parenthesis, error
-                throw new InvalidRegexpException(
-                    "Stray closing parenthesis found");
             case '*':
-                processUnaryOp(sequenceOperands, RegexpOperator.STAR);
+                processUnaryOp(frame.mSequenceOperands, RegexpOperator.STAR,
+                    idx);
                 break;
             case '+':
-                processUnaryOp(sequenceOperands, RegexpOperator.PLUS);
+                processUnaryOp(frame.mSequenceOperands, RegexpOperator.PLUS,
+                    idx);
                 break;
             case '?':
-                processUnaryOp(sequenceOperands, RegexpOperator.OPTION);
+                processUnaryOp(frame.mSequenceOperands, RegexpOperator.OPTION,
+                    idx);
                 break;
             case '|':
-                processChoiceOp(sequenceOperands, choiceOperands);
+                processChoiceOp(frame.mSequenceOperands, frame.mChoiceOperands,
+                    idx);
+                frame.mChoiceIdx = idx;
                 break;
             default:
                 // Ignore whitespace
-                if (!Character.isWhitespace(str.charAt(idx))) {
+                if (!Character.isWhitespace(c)) {
                     // Normal character
                     // IDEA(mjn33): Parse e.g. '%' as epsilon
-                    BasicRegexp re = new BasicRegexp(str.charAt(idx));
-                    sequenceOperands.add(re);
+                    frame.mSequenceOperands.add(new BasicRegexp(c));
                 }
             }
-            idx++;
         }
 
-        if (!choiceOperands.isEmpty()) {
-            // The remaining sequence operands are part of the choice operation
-            processChoiceOp(sequenceOperands, choiceOperands);
-            return new BasicRegexp(choiceOperands, RegexpOperator.CHOICE);
-        } else if (sequenceOperands.size() == 1) {
-            // Don't return a sequence of a single expression
-            return sequenceOperands.get(0);
-        } else if (!sequenceOperands.isEmpty()) {
-            return new BasicRegexp(sequenceOperands, RegexpOperator.SEQUENCE);
-        } else {
-            return null;
-        }
+        // Any unclosed parenthesis was reported when reached
+        assert(stack.isEmpty());
+        return finishFrame(frame);
     }
 
     @Override
     public String toString()
     {
-        StringBuilder sb = new StringBuilder();
-        toStringBuilder(sb);
-        return sb.toString();
+        String str = mString;
+        if (str == null) {
+            StringBuilder sb = new StringBuilder();
+            toStringBuilder(sb);
+            str = sb.toString();
+            mString = str;
+        }
+        return str;
     }
 
     private void toStringBuilder(StringBuilder sb)
     {
+        // Reuse the printed form of sub-expressions already printed, e.g. the
+        // labels of transitions which were sequenced
+        String str = mString;
+        if (str != null) {
+            sb.append(str);
+            return;
+        }
+
         switch (mOperator) {
         case NONE:
             if (mChar == EPSILON_CHAR) {
@@ -773,7 +1128,7 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
                 return this;
             } else {
                 // Optimisation made on sub expression
-                return new BasicRegexp(subExprOptimised, RegexpOperator.STAR);
+                return new BasicRegexp(subExprOptimised, RegexpOperator.PLUS);
             }
         default:
             throw new RuntimeException("BUG: Should be unreachable.");
@@ -856,7 +1211,7 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
             return ret;
         }
 
-        if (a.mOperands.get(0).compareTo(b.mOperands.get(0)) == 0) {
+        if (a.mOperands.get(0).equals(b.mOperands.get(0))) {
             return ret;
         }
 
@@ -974,7 +1329,7 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
             int j = i + 1;
             while (j < optimisedOperands.size()) {
                 BasicRegexp jExpr = optimisedOperands.get(j);
-                if (iExpr.compareTo(jExpr) == 0) {
+                if (iExpr.equals(jExpr)) {
                     optimisedOperands.remove(j);
                     // Don't increment j
                 } else {
@@ -1048,6 +1403,12 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
         // Step 3: Reconstruct if necessary, return "this" is no optimisation
         // performed.
 
+        OptimiseResult cached = mOptimised;
+        if (cached != null && cached.mWhat == what && cached.mRegexp == this) {
+            // Known fixed point, nothing to do at any level
+            return this;
+        }
+
         switch (mOperator) {
         case NONE:
             return this;
@@ -1066,6 +1427,135 @@ public class BasicRegexp implements Comparable<BasicRegexp> {
         }
     }
 
+    /**
+     * Default budget for optimiseFully(), enough for all but pathologically
+     * large expressions.
+     */
+    public static final int DEFAULT_OPTIMISE_BUDGET = 1 << 16;
+
+    /**
+     * A cached result of optimiseFully(), and the flags it was for. Immutable
+     * so it can be published with a single write, like String.hashCode().
+     */
+    private static final class OptimiseResult {
+        private final int mWhat;
+        private final BasicRegexp mRegexp;
+
+        private OptimiseResult(int what, BasicRegexp re)
+        {
+            mWhat = what;
+            mRegexp = re;
+        }
+    }
+
+    /**
+     * Rewrite steps left for one call of optimiseFully()
+     */
+    private static final class OptimiseBudget {
+        private int mRemaining;
+
+        private OptimiseBudget(int remaining)
+        {
+            mRemaining = remaining;
+        }
+    }
+
+    /**
+     * Creates an optimised version of this regular expression, applying the
+     * optimisations of optimise() bottom up until no more can be made. Unlike
+     * optimise() the result does not depend on a level, and results are
+     * cached on each sub-expression, so sub-expressions shared between
+     * calls (e.g. those of transitions sequenced when removing a state) are
+     * only optimised once.
+     *
+     * @param what A bitfield describing what optimisations to make
+     * (OPTIMISE_* constants)
+     * @param budget The maximum number of rewrite steps to perform, once
+     * used up the expression is returned as optimised so far, which is
+     * still equivalent to this expression
+     * @return The optimised expression
+     */
+    public BasicRegexp optimiseFully(int what, int budget)
+    {
+        return optimiseFully(what, new OptimiseBudget(budget));
+    }
+
+    private BasicRegexp optimiseFully(int what, OptimiseBudget budget)
+    {
+        OptimiseResult cached = mOptimised;
+        if (cached != null && cached.mWhat == what) {
+            return cached.mRegexp;
+        }
+        if (isSingleChar()) {
+            mOptimised = new OptimiseResult(what, this);
+            return this;
+        }
+
+        BasicRegexp current = this;
+        while (true) {
+            // Bring the operands to their fixed points first...
+            BasicRegexp next = current.optimiseOperandsFully(what, budget);
+            if (budget.mRemaining <= 0) {
+                // Out of budget, don't cache a partial result
+                return next;
+            }
+            budget.mRemaining--;
+
+            // ...then rewrite this expression, which only needs to look at
+            // the operands as they're already known to be fixed points.
+            BasicRegexp rewritten = next.optimise(what, -1);
+            if (rewritten == next) {
+                current = next;
+                break;
+            }
+            current = rewritten;
+            cached = current.mOptimised;
+            if (cached != null && cached.mWhat == what) {
+                current = cached.mRegexp;
+                break;
+            }
+        }
+
+        OptimiseResult result = new OptimiseResult(what, current);
+        current.mOptimised = result;
+        mOptimised = result;
+        return current;
+    }
+
+    /**
+     * Factored out of optimiseFully(), optimise all operands of this
+     * expression to their fixed points
+     *
+     * @return This expression with its operands replaced with their
+     * optimised versions, "this" if none changed
+     */
+    private BasicRegexp optimiseOperandsFully(int what, OptimiseBudget budget)
+    {
+        if (isSingleChar()) {
+            return this;
+        }
+
+        ArrayList<BasicRegexp> optimisedOperands = null;
+        for (int i = 0; i < mOperands.size(); i++) {
+            BasicRegexp operand = mOperands.get(i);
+            BasicRegexp optimisedOperand = operand.optimiseFully(what, budget);
+            if (optimisedOperand != operand && optimisedOperands == null) {
+                optimisedOperands = new ArrayList<>(mOperands.subList(0, i));
+            }
+            if (optimisedOperands != null) {
+                optimisedOperands.add(optimisedOperand);
+            }
+        }
+
+        if (optimisedOperands == null) {
+            return this;
+        } else if (mOperator.isUnary()) {
+            return new BasicRegexp(optimisedOperands.get(0), mOperator);
+        } else {
+            return new BasicRegexp(optimisedOperands, mOperator);
+        }
+    }
+
     /**
      * For debugging purposes, prints out the tree of BasicRegexp objects,
      * formatted nicely
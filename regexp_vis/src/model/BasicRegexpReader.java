@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * Reads BasicRegexp trees written by BasicRegexpWriter. Sub-expressions
+ * which were shared when written are shared again once read.
+ *
+ * Bytes are read one at a time from the underlying stream and never past the
+ * end of an expression, so it can be mixed with other data, the caller should
+ * buffer the stream.
+ */
+public class BasicRegexpReader implements Closeable {
+
+    private final InputStream mIn;
+    /**
+     * The nodes read so far, indexed by their number
+     */
+    private final ArrayList<BasicRegexp> mNodes;
+
+    /**
+     * @param in The stream to read from
+     */
+    public BasicRegexpReader(InputStream in)
+    {
+        if (in == null) {
+            throw new IllegalArgumentException("in cannot be null");
+        }
+        mIn = in;
+        mNodes = new ArrayList<>();
+    }
+
+    private int readByte() throws IOException
+    {
+        int b = mIn.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of stream");
+        }
+        return b;
+    }
+
+    /**
+     * Read the next expression from the stream.
+     *
+     * @return The expression read
+     * @throws EOFException if the end of the stream is reached
+     * @throws InvalidRegexpDataException if the data isn't a valid
+     * expression
+     * @throws IOException if the underlying stream throws
+     */
+    public BasicRegexp read() throws IOException
+    {
+        int op = readByte();
+        if (op >= BasicRegexpWriter.FIRST_LITERAL) {
+            return new BasicRegexp((char) op);
+        }
+
+        BasicRegexp re;
+        switch (op) {
+        case BasicRegexpWriter.OP_CHAR: {
+            int c = readVarInt();
+            if (c > Character.MAX_VALUE) {
+                throw new InvalidRegexpDataException("Invalid character: " + c);
+            }
+            return new BasicRegexp((char) c);
+        }
+        case BasicRegexpWriter.OP_BACKREF: {
+            int id = readVarInt();
+            if (id >= mNodes.size()) {
+                throw new InvalidRegexpDataException(
+                        "Invalid back-reference: " + id);
+            }
+            return mNodes.get(id);
+        }
+        case BasicRegexpWriter.OP_STAR:
+            re = new BasicRegexp(read(), BasicRegexp.RegexpOperator.STAR);
+            break;
+        case BasicRegexpWriter.OP_PLUS:
+            re = new BasicRegexp(read(), BasicRegexp.RegexpOperator.PLUS);
+            break;
+        case BasicRegexpWriter.OP_OPTION:
+            re = new BasicRegexp(read(), BasicRegexp.RegexpOperator.OPTION);
+            break;
+        case BasicRegexpWriter.OP_SEQUENCE:
+            re = new BasicRegexp(readOperands(),
+                    BasicRegexp.RegexpOperator.SEQUENCE);
+            break;
+        case BasicRegexpWriter.OP_CHOICE:
+            re = new BasicRegexp(readOperands(),
+                    BasicRegexp.RegexpOperator.CHOICE);
+            break;
+        default:
+            throw new InvalidRegexpDataException("Invalid opcode: " + op);
+        }
+
+        // Numbered once complete, the same as BasicRegexpWriter
+        mNodes.add(re);
+        return re;
+    }
+
+    private ArrayList<BasicRegexp> readOperands() throws IOException
+    {
+        int count = readVarInt();
+        if (count == 0) {
+            throw new InvalidRegexpDataException("No operands");
+        }
+        // Don't trust the count for the initial capacity
+        ArrayList<BasicRegexp> operands = new ArrayList<>(
+                Math.min(count, 16));
+        for (int i = 0; i < count; i++) {
+            operands.add(read());
+        }
+        return operands;
+    }
+
+    /**
+     * Read an int written by BasicRegexpWriter.writeVarInt().
+     *
+     * @return The value read
+     * @throws EOFException if the end of the stream is reached
+     * @throws InvalidRegexpDataException if the value is too large for an
+     * int
+     * @throws IOException if the underlying stream throws
+     */
+    public int readVarInt() throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            if (shift == 28 && (b & 0xF8) != 0) {
+                // Would overflow, or be negative
+                throw new InvalidRegexpDataException("Varint out of range");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidRegexpDataException("Varint too long");
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        mIn.close();
+    }
+
+}
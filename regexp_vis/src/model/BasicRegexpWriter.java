@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Writes BasicRegexp trees to a stream in a compact binary encoding, read
+ * back by BasicRegexpReader without any parsing.
+ *
+ * Each node is written in prefix order: a single byte for characters 0x08 to
+ * 0xFF, otherwise an opcode followed by the operands, with the character or
+ * number of operands as a varint where needed. Every non-single character
+ * node written is numbered, and when the same instance is written again
+ * (e.g. shared between the labels from state elimination) only a
+ * back-reference to its number is written. Numbering carries on between
+ * calls of write(), so sub-expressions are shared across all expressions
+ * written to the same stream.
+ *
+ * Bytes are written straight to the underlying stream, so it can be mixed
+ * with other data, the caller should buffer the stream.
+ */
+public class BasicRegexpWriter implements Closeable, Flushable {
+
+    static final int OP_CHAR = 0;
+    static final int OP_STAR = 1;
+    static final int OP_PLUS = 2;
+    static final int OP_OPTION = 3;
+    static final int OP_SEQUENCE = 4;
+    static final int OP_CHOICE = 5;
+    static final int OP_BACKREF = 6;
+    /**
+     * Bytes from this value up are single characters, with that value
+     */
+    static final int FIRST_LITERAL = 0x08;
+
+    private final OutputStream mOut;
+    /**
+     * The numbers given to the nodes written so far
+     */
+    private final IdentityHashMap<BasicRegexp, Integer> mNodeIds;
+
+    /**
+     * @param out The stream to write to
+     */
+    public BasicRegexpWriter(OutputStream out)
+    {
+        if (out == null) {
+            throw new IllegalArgumentException("out cannot be null");
+        }
+        mOut = out;
+        mNodeIds = new IdentityHashMap<>();
+    }
+
+    /**
+     * Write an expression to the stream.
+     *
+     * @param re The expression to write
+     * @throws IOException if the underlying stream throws
+     */
+    public void write(BasicRegexp re) throws IOException
+    {
+        if (re == null) {
+            throw new IllegalArgumentException("re cannot be null");
+        }
+
+        if (re.isSingleChar()) {
+            char c = re.getChar();
+            if (c >= FIRST_LITERAL && c <= 0xFF) {
+                mOut.write(c);
+            } else {
+                mOut.write(OP_CHAR);
+                writeVarInt(c);
+            }
+            return;
+        }
+
+        Integer id = mNodeIds.get(re);
+        if (id != null) {
+            mOut.write(OP_BACKREF);
+            writeVarInt(id);
+            return;
+        }
+
+        List<BasicRegexp> operands = re.getOperands();
+        switch (re.getOperator()) {
+        case STAR:
+            mOut.write(OP_STAR);
+            break;
+        case PLUS:
+            mOut.write(OP_PLUS);
+            break;
+        case OPTION:
+            mOut.write(OP_OPTION);
+            break;
+        case SEQUENCE:
+            mOut.write(OP_SEQUENCE);
+            writeVarInt(operands.size());
+            break;
+        case CHOICE:
+            mOut.write(OP_CHOICE);
+            writeVarInt(operands.size());
+            break;
+        default:
+            throw new RuntimeException("BUG: Should be unreachable.");
+        }
+        for (BasicRegexp operand : operands) {
+            write(operand);
+        }
+
+        // Numbered once complete, BasicRegexpReader does the same
+        mNodeIds.put(re, mNodeIds.size());
+    }
+
+    /**
+     * Write a non-negative int in as few bytes as possible, 7 bits at a time
+     * starting with the least significant.
+     *
+     * @param value The value to write
+     * @throws IOException if the underlying stream throws
+     */
+    public void writeVarInt(int value) throws IOException
+    {
+        if (value < 0) {
+            throw new IllegalArgumentException("value cannot be negative");
+        }
+        while (value >= 0x80) {
+            mOut.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mOut.write(value);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        mOut.close();
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Builds a DFA directly from a BasicRegexp using Brzozowski derivatives, no
+ * NFA is built first. Each DFA state is a derivative of the expression, after
+ * normalising with optimise() so that derivatives which only differ in the
+ * order or duplication of CHOICE operands are the same state. This keeps the
+ * number of states finite.
+ */
+public final class BrzozowskiConstruction {
+    /**
+     * Default limit on the number of states built, as a safety net
+     */
+    public static final int DEFAULT_MAX_STATES = 1 << 16;
+
+    private BrzozowskiConstruction()
+    {
+    }
+
+    /**
+     * @param re The expression to normalise
+     * @return "re" with all optimisations applied, the canonical form used to
+     * identify derivatives
+     */
+    static BasicRegexp normalise(BasicRegexp re)
+    {
+        return re.optimiseFully(BasicRegexp.OPTIMISE_ALL, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param re The expression to build a DFA for
+     * @return A new deterministic automaton accepting the language of "re"
+     */
+    public static Automaton buildDfa(BasicRegexp re)
+    {
+        return buildDfa(re, null, DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * @param re The expression to build a DFA for
+     * @param stateExpressions If not null, filled with a mapping from each
+     * state of the returned automaton to the (normalised) derivative it
+     * represents
+     * @param maxStates The maximum number of states to build
+     * @return A new deterministic automaton accepting the language of "re"
+     * @throws RuntimeException if more than "maxStates" states are needed
+     */
+    public static Automaton buildDfa(BasicRegexp re,
+            Map<AutomatonState, BasicRegexp> stateExpressions, int maxStates)
+    {
+        if (re == null) {
+            throw new IllegalArgumentException("BasicRegexp cannot be null");
+        }
+
+        char[] alphabet = re.getAlphabet().toCharArray();
+        BasicRegexp[] labels = new BasicRegexp[alphabet.length];
+        for (int i = 0; i < alphabet.length; i++) {
+            labels[i] = new BasicRegexp(alphabet[i]);
+        }
+
+        Automaton dfa = new Automaton();
+        // Expressions after "done" are yet to be expanded
+        HashMap<BasicRegexp, AutomatonState> states = new HashMap<>();
+        ArrayList<BasicRegexp> expressions = new ArrayList<>();
+        BasicRegexp start = normalise(re);
+        states.put(start, dfa.getStartState());
+        expressions.add(start);
+        dfa.getStartState().setFinal(start.isNullable());
+
+        for (int done = 0; done < expressions.size(); done++) {
+            BasicRegexp expr = expressions.get(done);
+            AutomatonState from = states.get(expr);
+            for (int i = 0; i < alphabet.length; i++) {
+                BasicRegexp derivative = expr.derivative(alphabet[i]);
+                if (derivative == null) {
+                    // The empty language, leave the transition out
+                    continue;
+                }
+                derivative = normalise(derivative);
+                AutomatonState to = states.get(derivative);
+                if (to == null) {
+                    if (expressions.size() >= maxStates) {
+                        throw new RuntimeException("More than " + maxStates
+                            + " states needed for the DFA of " + re);
+                    }
+                    to = dfa.createNewState();
+                    to.setFinal(derivative.isNullable());
+                    dfa.addStateWithTransitions(to,
+                            new LinkedList<AutomatonTransition>());
+                    states.put(derivative, to);
+                    expressions.add(derivative);
+                }
+                dfa.addTransition(dfa.createNewTransition(from, to,
+                        labels[i]));
+            }
+        }
+
+        if (stateExpressions != null) {
+            for (Map.Entry<BasicRegexp, AutomatonState> e : states.entrySet()) {
+                stateExpressions.put(e.getValue(), e.getKey());
+            }
+        }
+        return dfa;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of an Automaton, for read-only analysis passes over large
+ * automata. Created with Automaton.freeze().
+ *
+ * States are given dense indices from 0 to getNumStates() - 1, the start state
+ * always has index 0. Transitions are stored in compressed sparse row (CSR)
+ * layout: the out-going transitions of state "s" are the transition indices
+ * from getTransitionsStart(s) (inclusive) to getTransitionsEnd(s) (exclusive).
+ * Each transition stores the index of the state it goes to and the index of
+ * its expression in a table of distinct labels. The out-going transitions of a
+ * state are sorted by label, then by target state, so transitions with equal
+ * labels are adjacent.
+ *
+ * Changes made to the Automaton (or the finality or pattern IDs of its
+ * states) after the snapshot was taken are not reflected in the snapshot.
+ */
+public final class CompactAutomaton {
+    // Dense state index -> state object, and state ID -> dense state index
+    // (-1 for IDs not in use)
+    private final AutomatonState[] mStates;
+    private final int[] mIndexById;
+    private final boolean[] mFinal;
+    private final int[][] mPatternIds;
+    // CSR layout, the transitions of state "s" are in the range
+    // [mTransOffsets[s], mTransOffsets[s + 1])
+    private final int[] mTransOffsets;
+    private final int[] mTransTargets;
+    private final int[] mTransLabels;
+    private final int[] mTransIds;
+    // Table of distinct labels, and for each label its character, or -1 if
+    // the label isn't a single character expression
+    private final BasicRegexp[] mLabels;
+    private final int[] mLabelChars;
+    private final int mEpsilonLabel;
+
+    CompactAutomaton(Automaton automaton)
+    {
+        int numStates = automaton.getNumStates();
+        mStates = new AutomatonState[numStates];
+        mFinal = new boolean[numStates];
+        mPatternIds = new int[numStates][];
+
+        // Assign dense indices, start state first
+        AutomatonState startState = automaton.getStartState();
+        mStates[0] = startState;
+        int maxId = startState.getId();
+        int idx = 1;
+        int numTrans = 0;
+        Iterator<Automaton.StateTransitionsPair> it = automaton.graphIterator();
+        while (it.hasNext()) {
+            Automaton.StateTransitionsPair pair = it.next();
+            AutomatonState state = pair.getState();
+            numTrans += pair.getTransitions().size();
+            if (state != startState) {
+                mStates[idx++] = state;
+                maxId = Math.max(maxId, state.getId());
+            }
+        }
+
+        mIndexById = new int[maxId + 1];
+        Arrays.fill(mIndexById, -1);
+        for (int i = 0; i < numStates; i++) {
+            mIndexById[mStates[i].getId()] = i;
+            mFinal[i] = mStates[i].isFinal();
+            mPatternIds[i] = mStates[i].getPatternIds();
+        }
+
+        // Build the label table, BasicRegexp is Comparable so use a TreeMap to
+        // find equal labels. The iteration order puts single characters first,
+        // in character order.
+        TreeMap<BasicRegexp, Integer> labelMap = new TreeMap<>();
+        for (AutomatonState state : mStates) {
+            for (AutomatonTransition t : automaton.getStateTransitions(state)) {
+                labelMap.put(t.getData(), 0);
+            }
+        }
+        mLabels = new BasicRegexp[labelMap.size()];
+        mLabelChars = new int[labelMap.size()];
+        int epsilonLabel = -1;
+        int labelIdx = 0;
+        for (BasicRegexp re : labelMap.keySet()) {
+            labelMap.put(re, labelIdx);
+            mLabels[labelIdx] = re;
+            if (re.isSingleChar()) {
+                mLabelChars[labelIdx] = re.getChar();
+                if (re.getChar() == BasicRegexp.EPSILON_CHAR) {
+                    epsilonLabel = labelIdx;
+                }
+            } else {
+                mLabelChars[labelIdx] = -1;
+            }
+            labelIdx++;
+        }
+        mEpsilonLabel = epsilonLabel;
+
+        // Fill in the transitions, sorting each state's transitions by label
+        // then target
+        mTransOffsets = new int[numStates + 1];
+        mTransTargets = new int[numTrans];
+        mTransLabels = new int[numTrans];
+        mTransIds = new int[numTrans];
+        int transIdx = 0;
+        for (int s = 0; s < numStates; s++) {
+            mTransOffsets[s] = transIdx;
+            ArrayList<AutomatonTransition> trans = new ArrayList<>(
+                    automaton.getStateTransitions(mStates[s]));
+            for (AutomatonTransition t : trans) {
+                if (indexOf(t.getTo()) < 0) {
+                    throw new RuntimeException("Transition " + t.getId()
+                            + " goes to a state which is not part of this "
+                            + "automaton, cannot freeze.");
+                }
+            }
+            Collections.sort(trans, (t1, t2) -> {
+                int ret = Integer.compare(labelMap.get(t1.getData()),
+                        labelMap.get(t2.getData()));
+                if (ret != 0) {
+                    return ret;
+                }
+                return Integer.compare(indexOf(t1.getTo()),
+                        indexOf(t2.getTo()));
+            });
+            for (AutomatonTransition t : trans) {
+                mTransLabels[transIdx] = labelMap.get(t.getData());
+                mTransTargets[transIdx] = indexOf(t.getTo());
+                mTransIds[transIdx] = t.getId();
+                transIdx++;
+            }
+        }
+        mTransOffsets[numStates] = transIdx;
+    }
+
+    /**
+     * @return The number of states in this snapshot
+     */
+    public int getNumStates()
+    {
+        return mStates.length;
+    }
+
+    /**
+     * @return The number of transitions in this snapshot
+     */
+    public int getNumTransitions()
+    {
+        return mTransTargets.length;
+    }
+
+    /**
+     * @return The index of the start state, always 0
+     */
+    public int getStartIndex()
+    {
+        return 0;
+    }
+
+    /**
+     * @param index The index of the state
+     * @return The AutomatonState the given index represents
+     */
+    public AutomatonState getState(int index)
+    {
+        return mStates[index];
+    }
+
+    /**
+     * @param state The state to lookup
+     * @return The index of the given state, or -1 if the state wasn't part of
+     * the automaton when this snapshot was taken
+     */
+    public int indexOf(AutomatonState state)
+    {
+        int id = state.getId();
+        if (id < 0 || id >= mIndexById.length) {
+            return -1;
+        }
+        int index = mIndexById[id];
+        if (index < 0 || mStates[index] != state) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * @param index The index of the state
+     * @return Whether the state was final when this snapshot was taken
+     */
+    public boolean isFinal(int index)
+    {
+        return mFinal[index];
+    }
+
+    /**
+     * @param index The index of the state
+     * @return The pattern IDs of the state when this snapshot was taken, see
+     * AutomatonState.getPatternIds()
+     */
+    public int[] getPatternIds(int index)
+    {
+        int[] ids = mPatternIds[index];
+        return ids.length == 0 ? ids : ids.clone();
+    }
+
+    /**
+     * @param index The index of the state
+     * @return The index of the first out-going transition of the state
+     */
+    public int getTransitionsStart(int index)
+    {
+        return mTransOffsets[index];
+    }
+
+    /**
+     * @param index The index of the state
+     * @return One past the index of the last out-going transition of the state
+     */
+    public int getTransitionsEnd(int index)
+    {
+        return mTransOffsets[index + 1];
+    }
+
+    /**
+     * @param trans The index of the transition
+     * @return The index of the state the transition goes to
+     */
+    public int getTransitionTarget(int trans)
+    {
+        return mTransTargets[trans];
+    }
+
+    /**
+     * @param trans The index of the transition
+     * @return The index of the transition's label in the label table
+     */
+    public int getTransitionLabel(int trans)
+    {
+        return mTransLabels[trans];
+    }
+
+    /**
+     * @param trans The index of the transition
+     * @return The ID of the AutomatonTransition this transition was created
+     * from
+     */
+    public int getTransitionId(int trans)
+    {
+        return mTransIds[trans];
+    }
+
+    /**
+     * @return The number of distinct labels
+     */
+    public int getNumLabels()
+    {
+        return mLabels.length;
+    }
+
+    /**
+     * @param label The index of the label
+     * @return The expression for the given label
+     */
+    public BasicRegexp getLabel(int label)
+    {
+        return mLabels[label];
+    }
+
+    /**
+     * @param label The index of the label
+     * @return True if the label is a single character expression
+     */
+    public boolean isSingleCharLabel(int label)
+    {
+        return mLabelChars[label] >= 0;
+    }
+
+    /**
+     * @param label The index of the label
+     * @return The character of the given single character label
+     * @throws RuntimeException if the label isn't a single character
+     * expression, like BasicRegexp.getChar()
+     */
+    public char getLabelChar(int label)
+    {
+        if (mLabelChars[label] < 0) {
+            throw new RuntimeException(
+                "getLabelChar() must only be called on single character " +
+                "labels");
+        }
+        return (char) mLabelChars[label];
+    }
+
+    /**
+     * @return The index of the epsilon label, or -1 if there are no epsilon
+     * transitions
+     */
+    public int getEpsilonLabel()
+    {
+        return mEpsilonLabel;
+    }
+}
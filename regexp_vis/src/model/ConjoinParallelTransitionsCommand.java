@@ -59,8 +59,8 @@ public class ConjoinParallelTransitionsCommand extends CompositeCommand {
 
         BasicRegexp newRe = new BasicRegexp(operands,
                 BasicRegexp.RegexpOperator.CHOICE);
-        // Do very low depth optimisation
-        newRe = newRe.optimise(BasicRegexp.OPTIMISE_ALL, 1);
+        newRe = newRe.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                BasicRegexp.DEFAULT_OPTIMISE_BUDGET);
         mNewTransition = automaton.createNewTransition(mFrom, mTo,
                 newRe);
         super.commands.add(new AddTransitionCommand(automaton, mNewTransition));
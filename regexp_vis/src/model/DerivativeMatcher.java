@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Matches strings against a BasicRegexp directly with Brzozowski derivatives,
+ * without building an automaton. Derivatives are normalised and interned like
+ * the states of BrzozowskiConstruction, but only built the first time the
+ * input needs them, so creating a matcher is cheap. Transitions found are
+ * cached for later matches.
+ *
+ * The cache grows with the number of distinct derivatives reached, so this is
+ * meant for short-lived patterns. A DerivativeMatcher must not be shared
+ * between threads.
+ */
+public final class DerivativeMatcher {
+    // State ID used for the empty language
+    private static final int DEAD_STATE = -1;
+
+    private final HashMap<BasicRegexp, Integer> mStateIds;
+    private final ArrayList<BasicRegexp> mStates;
+    private final ArrayList<Boolean> mNullable;
+    // Cached transitions of each state, by character
+    private final ArrayList<HashMap<Character, Integer>> mTransitions;
+
+    /**
+     * @param re The expression to match against
+     */
+    public DerivativeMatcher(BasicRegexp re)
+    {
+        if (re == null) {
+            throw new IllegalArgumentException("BasicRegexp cannot be null");
+        }
+
+        mStateIds = new HashMap<>();
+        mStates = new ArrayList<>();
+        mNullable = new ArrayList<>();
+        mTransitions = new ArrayList<>();
+        intern(BrzozowskiConstruction.normalise(re));
+    }
+
+    private int intern(BasicRegexp re)
+    {
+        Integer id = mStateIds.get(re);
+        if (id == null) {
+            id = mStates.size();
+            mStateIds.put(re, id);
+            mStates.add(re);
+            mNullable.add(re.isNullable());
+            mTransitions.add(new HashMap<Character, Integer>());
+        }
+        return id;
+    }
+
+    /**
+     * @param input The input to match
+     * @return True if the expression matches the whole of the input
+     */
+    public boolean matches(CharSequence input)
+    {
+        int state = 0;
+        int len = input.length();
+        for (int i = 0; i < len; i++) {
+            char c = input.charAt(i);
+            HashMap<Character, Integer> transitions = mTransitions.get(state);
+            Integer next = transitions.get(c);
+            if (next == null) {
+                BasicRegexp derivative = c == BasicRegexp.EPSILON_CHAR ? null
+                        : mStates.get(state).derivative(c);
+                next = derivative == null ? DEAD_STATE
+                        : intern(BrzozowskiConstruction.normalise(derivative));
+                transitions.put(c, next);
+            }
+            if (next == DEAD_STATE) {
+                return false;
+            }
+            state = next;
+        }
+        return mNullable.get(state);
+    }
+
+    /**
+     * @return The number of distinct derivatives built so far
+     */
+    public int getNumStates()
+    {
+        return mStates.size();
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * DFA minimisation by Hopcroft's partition refinement algorithm, which runs in
+ * O(n k log n) time for n states and k distinct characters.
+ *
+ * The input must be deterministic, but needn't be complete: missing
+ * transitions go to an implicit dead state. Unreachable states, and states
+ * from which no final state can be reached, are not part of the minimal DFA.
+ * Final states which accept different patterns (see
+ * AutomatonState.getPatternIds()) are never merged.
+ */
+public final class DfaMinimisation {
+
+    private DfaMinimisation()
+    {
+    }
+
+    /**
+     * @param dfa A deterministic automaton with only single character
+     * transitions
+     * @return A new automaton with the minimal number of states which accepts
+     * the same language
+     */
+    public static Automaton minimise(Automaton dfa)
+    {
+        if (dfa == null) {
+            throw new IllegalArgumentException("Automaton cannot be null");
+        }
+
+        CompactAutomaton compact = dfa.freeze();
+        int[] classes = calcStateClasses(compact);
+        int numClasses = 0;
+        for (int c : classes) {
+            numClasses = Math.max(numClasses, c + 1);
+        }
+
+        // Class 0 is the start state's class, unless the start state is dead
+        Automaton minimal = new Automaton();
+        AutomatonState[] classStates = new AutomatonState[numClasses];
+        if (numClasses > 0) {
+            classStates[0] = minimal.getStartState();
+        }
+        for (int c = 1; c < numClasses; c++) {
+            classStates[c] = minimal.createNewState();
+            minimal.addStateWithTransitions(classStates[c],
+                    new LinkedList<AutomatonTransition>());
+        }
+
+        // Every member of a class has equivalent transitions, so only the
+        // first member of each class (in index order) is used
+        boolean[] done = new boolean[numClasses];
+        for (int s = 0; s < compact.getNumStates(); s++) {
+            int c = classes[s];
+            if (c < 0 || done[c]) {
+                continue;
+            }
+            done[c] = true;
+            classStates[c].setFinal(compact.isFinal(s));
+            classStates[c].setPatternIds(compact.getPatternIds(s));
+            int end = compact.getTransitionsEnd(s);
+            for (int t = compact.getTransitionsStart(s); t < end; t++) {
+                int toClass = classes[compact.getTransitionTarget(t)];
+                if (toClass >= 0) {
+                    minimal.addTransition(minimal.createNewTransition(
+                            classStates[c], classStates[toClass],
+                            compact.getLabel(compact.getTransitionLabel(t))));
+                }
+            }
+        }
+
+        return minimal;
+    }
+
+    /**
+     * @param dfa A deterministic automaton with only single character
+     * transitions
+     * @return The sets of states which are equivalent to each other, one set
+     * for each state of the minimal DFA. Unreachable and dead states are not
+     * in any set.
+     */
+    public static List<Set<AutomatonState>> calcEquivalentStates(
+            Automaton dfa)
+    {
+        if (dfa == null) {
+            throw new IllegalArgumentException("Automaton cannot be null");
+        }
+
+        CompactAutomaton compact = dfa.freeze();
+        int[] classes = calcStateClasses(compact);
+        List<Set<AutomatonState>> equivalentStatesList = new ArrayList<>();
+        for (int s = 0; s < classes.length; s++) {
+            int c = classes[s];
+            if (c < 0) {
+                continue;
+            }
+            if (c == equivalentStatesList.size()) {
+                equivalentStatesList.add(new HashSet<AutomatonState>());
+            }
+            equivalentStatesList.get(c).add(compact.getState(s));
+        }
+        return equivalentStatesList;
+    }
+
+    /**
+     * Partition the states of a DFA into classes of equivalent states.
+     *
+     * @param dfa A deterministic snapshot with only single character
+     * transitions
+     * @return For each state index, the index of its class, or -1 if the state
+     * is unreachable or dead. Classes are numbered in order of their first
+     * member's index, so the class of a live start state is 0.
+     * @throws RuntimeException if the automaton isn't deterministic
+     */
+    static int[] calcStateClasses(CompactAutomaton dfa)
+    {
+        int numLabels = dfa.getNumLabels();
+        for (int label = 0; label < numLabels; label++) {
+            if (!dfa.isSingleCharLabel(label)
+                    || label == dfa.getEpsilonLabel()) {
+                throw new RuntimeException("Cannot minimise an automaton with "
+                    + "transitions which are not single characters");
+            }
+        }
+
+        // Densely number the reachable states, followed by the dead state
+        StateSet reachable = TranslationTools.calcReachableStates(dfa,
+                dfa.getStartIndex(), label -> true);
+        int[] dense = new int[dfa.getNumStates()];
+        int n = 0;
+        for (int s = 0; s < dense.length; s++) {
+            dense[s] = reachable.containsIndex(s) ? n++ : -1;
+        }
+        int dead = n;
+        int numStates = n + 1;
+
+        // Complete transition function, and its inverse in CSR layout, both
+        // indexed by state * numLabels + label
+        int[] delta = new int[numStates * numLabels];
+        Arrays.fill(delta, dead);
+        boolean[] isFinal = new boolean[numStates];
+        for (int s = 0; s < dense.length; s++) {
+            int q = dense[s];
+            if (q < 0) {
+                continue;
+            }
+            isFinal[q] = dfa.isFinal(s);
+            int end = dfa.getTransitionsEnd(s);
+            for (int t = dfa.getTransitionsStart(s); t < end; t++) {
+                int idx = q * numLabels + dfa.getTransitionLabel(t);
+                int to = dense[dfa.getTransitionTarget(t)];
+                if (delta[idx] != dead && delta[idx] != to) {
+                    throw new RuntimeException(
+                        "Cannot minimise a non-deterministic automaton");
+                }
+                delta[idx] = to;
+            }
+        }
+        int[] invOffsets = new int[numStates * numLabels + 1];
+        for (int idx = 0; idx < delta.length; idx++) {
+            invOffsets[delta[idx] * numLabels + idx % numLabels + 1]++;
+        }
+        for (int i = 0; i < numStates * numLabels; i++) {
+            invOffsets[i + 1] += invOffsets[i];
+        }
+        int[] invSources = new int[delta.length];
+        int[] fill = new int[numStates * numLabels];
+        for (int idx = 0; idx < delta.length; idx++) {
+            int key = delta[idx] * numLabels + idx % numLabels;
+            invSources[invOffsets[key] + fill[key]++] = idx / numLabels;
+        }
+
+        // The partition: the states of block b are
+        // elems[blockStart[b]..blockEnd[b]), and loc is the inverse of elems
+        int[] elems = new int[numStates];
+        int[] loc = new int[numStates];
+        int[] blockOf = new int[numStates];
+        int[] blockStart = new int[numStates];
+        int[] blockEnd = new int[numStates];
+        int[] blockMarked = new int[numStates];
+        // The initial blocks: block 0 is the non-final states, which always
+        // includes the dead state, and the final states are grouped by the
+        // patterns they accept into blocks from 1
+        int[] initialBlock = new int[numStates];
+        // IntBuffer compares and hashes the elements of the array it wraps
+        HashMap<IntBuffer, Integer> patternBlocks = new HashMap<>();
+        for (int s = 0; s < dense.length; s++) {
+            int q = dense[s];
+            if (q < 0 || !isFinal[q]) {
+                continue;
+            }
+            IntBuffer key = IntBuffer.wrap(dfa.getPatternIds(s));
+            Integer b = patternBlocks.get(key);
+            if (b == null) {
+                b = patternBlocks.size() + 1;
+                patternBlocks.put(key, b);
+            }
+            initialBlock[q] = b;
+        }
+        int numBlocks = patternBlocks.size() + 1;
+        int[] blockSize = new int[numBlocks];
+        for (int q = 0; q < numStates; q++) {
+            blockSize[initialBlock[q]]++;
+        }
+        int largest = 0;
+        for (int b = 0; b < numBlocks; b++) {
+            blockStart[b] = b == 0 ? 0 : blockStart[b - 1] + blockSize[b - 1];
+            blockEnd[b] = blockStart[b];
+            if (blockSize[b] > blockSize[largest]) {
+                largest = b;
+            }
+        }
+        for (int q = 0; q < numStates; q++) {
+            int b = initialBlock[q];
+            int pos = blockEnd[b]++;
+            elems[pos] = q;
+            loc[q] = pos;
+            blockOf[q] = b;
+        }
+        // Every initial block but the largest is a splitter
+        int[] worklist = new int[numStates * numLabels];
+        boolean[] inWorklist = new boolean[numStates * numLabels];
+        int worklistSize = 0;
+        for (int b = 0; b < numBlocks; b++) {
+            if (b == largest) {
+                continue;
+            }
+            for (int a = 0; a < numLabels; a++) {
+                worklist[worklistSize++] = b * numLabels + a;
+                inWorklist[b * numLabels + a] = true;
+            }
+        }
+
+        int[] preimage = new int[numStates];
+        int[] touched = new int[numStates];
+        while (worklistSize > 0) {
+            int splitter = worklist[--worklistSize];
+            inWorklist[splitter] = false;
+            int splitterBlock = splitter / numLabels;
+            int a = splitter % numLabels;
+
+            // Collect the preimage first, marking moves states around and the
+            // splitter block may be one of the blocks being marked. Each state
+            // has one successor per label, so the preimage has no duplicates.
+            int preimageSize = 0;
+            for (int i = blockStart[splitterBlock]; i < blockEnd[splitterBlock];
+                    i++) {
+                int key = elems[i] * numLabels + a;
+                for (int j = invOffsets[key]; j < invOffsets[key + 1]; j++) {
+                    preimage[preimageSize++] = invSources[j];
+                }
+            }
+
+            // Mark the preimage, moving marked states to the front of their
+            // block
+            int numTouched = 0;
+            for (int i = 0; i < preimageSize; i++) {
+                int p = preimage[i];
+                int b = blockOf[p];
+                if (blockMarked[b] == 0) {
+                    touched[numTouched++] = b;
+                }
+                int pos = blockStart[b] + blockMarked[b]++;
+                int other = elems[pos];
+                elems[loc[p]] = other;
+                loc[other] = loc[p];
+                elems[pos] = p;
+                loc[p] = pos;
+            }
+
+            // Split every partially marked block, the marked part becomes the
+            // new block
+            for (int i = 0; i < numTouched; i++) {
+                int b = touched[i];
+                int marked = blockMarked[b];
+                blockMarked[b] = 0;
+                if (marked == blockEnd[b] - blockStart[b]) {
+                    continue;
+                }
+                int newBlock = numBlocks++;
+                blockStart[newBlock] = blockStart[b];
+                blockEnd[newBlock] = blockStart[b] + marked;
+                blockStart[b] = blockEnd[newBlock];
+                for (int j = blockStart[newBlock]; j < blockEnd[newBlock];
+                        j++) {
+                    blockOf[elems[j]] = newBlock;
+                }
+                boolean newIsSmaller = marked
+                        <= blockEnd[b] - blockStart[b];
+                for (int c = 0; c < numLabels; c++) {
+                    int add = inWorklist[b * numLabels + c] || newIsSmaller
+                            ? newBlock : b;
+                    worklist[worklistSize++] = add * numLabels + c;
+                    inWorklist[add * numLabels + c] = true;
+                }
+            }
+        }
+
+        // Number the classes, the block of the dead state has no class
+        int[] blockClass = new int[numBlocks];
+        Arrays.fill(blockClass, -1);
+        int numClasses = 0;
+        int[] classes = new int[dense.length];
+        for (int s = 0; s < dense.length; s++) {
+            if (dense[s] < 0 || blockOf[dense[s]] == blockOf[dead]) {
+                classes[s] = -1;
+                continue;
+            }
+            int b = blockOf[dense[s]];
+            if (blockClass[b] < 0) {
+                blockClass[b] = numClasses++;
+            }
+            classes[s] = blockClass[b];
+        }
+        return classes;
+    }
+}
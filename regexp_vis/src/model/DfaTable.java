@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A DFA flattened into a transition table, for matching without walking the
+ * Automaton object graph. Characters are first mapped to their
+ * AlphabetPartition class, the next state is then the table entry at
+ * state * getNumClasses() + class. States are numbered like the states of a
+ * CompactAutomaton, the start state is 0, and -1 is the dead state.
+ *
+ * A table can be saved to a file with save() and loaded back with load(). The
+ * file is mapped read-only rather than read, the tables are views of the
+ * mapped file, so loading takes the same time for any size of DFA and the
+ * pages of the file are shared by every process which loads it. The file
+ * layout is, with all values big-endian ints:
+ *
+ * <pre>
+ * magic ("\0RVD"), version, number of states, number of classes,
+ * number of class pages
+ * class page index: 256 page numbers, one for each high byte of a character
+ * class pages: 256 classes for each page, page 0 is all class 0
+ * final flags: 1 for each final state, 0 otherwise
+ * transition table: number of states * number of classes target states
+ * </pre>
+ *
+ * Loading checks the header and the sizes, but not the table entries. Matching
+ * with a corrupted file may throw IndexOutOfBoundsException, never anything
+ * worse. A DfaTable is immutable and may be shared between threads.
+ */
+public final class DfaTable {
+    private static final int MAGIC = 0x00525644;
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 5;
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int NUM_PAGES = (Character.MAX_VALUE + 1) / PAGE_SIZE;
+
+    private final int mNumStates;
+    private final int mNumClasses;
+    // Either wrap arrays, for a table built from an Automaton, or are views of
+    // a mapped file
+    private final IntBuffer mPageIndex;
+    private final IntBuffer mPages;
+    private final IntBuffer mFinal;
+    private final IntBuffer mDelta;
+
+    /**
+     * @param dfa The DFA to flatten, it must have no epsilon transitions, and
+     * only single character transitions, with at most one for each character
+     * from each state
+     * @throws IllegalArgumentException if the automaton isn't deterministic
+     */
+    public DfaTable(Automaton dfa)
+    {
+        if (dfa == null) {
+            throw new IllegalArgumentException("dfa cannot be null");
+        }
+        CompactAutomaton compact = dfa.freeze();
+        for (int label = 0; label < compact.getNumLabels(); label++) {
+            if (label == compact.getEpsilonLabel()
+                    || !compact.isSingleCharLabel(label)) {
+                throw new IllegalArgumentException(
+                        "DFA must only have single character transitions");
+            }
+        }
+        if (TranslationTools.automatonHasNonDeterminism(compact)) {
+            throw new IllegalArgumentException(
+                    "Automaton is not deterministic");
+        }
+
+        AlphabetPartition classes = new AlphabetPartition(compact);
+        mNumStates = compact.getNumStates();
+        mNumClasses = classes.getNumClasses();
+
+        // Page 0 is shared by every page with no used characters
+        int[] pageIndex = new int[NUM_PAGES];
+        int[] pages = new int[PAGE_SIZE * (NUM_PAGES + 1)];
+        int numPages = 1;
+        for (char c : classes.getAlphabet()) {
+            int page = c >>> PAGE_BITS;
+            if (pageIndex[page] == 0) {
+                pageIndex[page] = numPages++;
+            }
+            pages[pageIndex[page] * PAGE_SIZE + (c & PAGE_MASK)] =
+                    classes.classOf(c);
+        }
+        mPageIndex = IntBuffer.wrap(pageIndex);
+        mPages = IntBuffer.wrap(Arrays.copyOf(pages, numPages * PAGE_SIZE));
+
+        int[] isFinal = new int[mNumStates];
+        int[] delta = new int[mNumStates * mNumClasses];
+        Arrays.fill(delta, -1);
+        for (int s = 0; s < mNumStates; s++) {
+            isFinal[s] = compact.isFinal(s) ? 1 : 0;
+            int end = compact.getTransitionsEnd(s);
+            for (int t = compact.getTransitionsStart(s); t < end; t++) {
+                char c = compact.getLabelChar(compact.getTransitionLabel(t));
+                delta[s * mNumClasses + classes.classOf(c)] =
+                        compact.getTransitionTarget(t);
+            }
+        }
+        mFinal = IntBuffer.wrap(isFinal);
+        mDelta = IntBuffer.wrap(delta);
+    }
+
+    private DfaTable(int numStates, int numClasses, IntBuffer pageIndex,
+            IntBuffer pages, IntBuffer isFinal, IntBuffer delta)
+    {
+        mNumStates = numStates;
+        mNumClasses = numClasses;
+        mPageIndex = pageIndex;
+        mPages = pages;
+        mFinal = isFinal;
+        mDelta = delta;
+    }
+
+    /**
+     * Map a table written by save(). The file may be closed, or even deleted,
+     * once loaded.
+     *
+     * @param file The file to load
+     * @return The loaded table, backed by the mapped file
+     * @throws IOException if the file can't be read, or isn't a valid table
+     */
+    public static DfaTable load(File file) throws IOException
+    {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_INTS * 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid DFA table size: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a DFA table");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported DFA table version");
+        }
+        int numStates = buffer.getInt(8);
+        int numClasses = buffer.getInt(12);
+        int numPages = buffer.getInt(16);
+        if (numStates < 1 || numClasses < 1 || numPages < 1
+                || numPages > NUM_PAGES + 1) {
+            throw new IOException("Invalid DFA table header");
+        }
+        long expected = 4L * (HEADER_INTS + NUM_PAGES
+                + (long) numPages * PAGE_SIZE + numStates
+                + (long) numStates * numClasses);
+        if (buffer.capacity() != expected) {
+            throw new IOException("DFA table has the wrong size, expected "
+                    + expected + " bytes");
+        }
+
+        int offset = HEADER_INTS;
+        IntBuffer pageIndex = slice(buffer, offset, NUM_PAGES);
+        offset += NUM_PAGES;
+        IntBuffer pages = slice(buffer, offset, numPages * PAGE_SIZE);
+        offset += numPages * PAGE_SIZE;
+        IntBuffer isFinal = slice(buffer, offset, numStates);
+        offset += numStates;
+        IntBuffer delta = slice(buffer, offset, numStates * numClasses);
+
+        // Only the page index is checked, it is small
+        for (int i = 0; i < NUM_PAGES; i++) {
+            if (pageIndex.get(i) < 0 || pageIndex.get(i) >= numPages) {
+                throw new IOException("Invalid DFA table page index");
+            }
+        }
+        return new DfaTable(numStates, numClasses, pageIndex, pages, isFinal,
+                delta);
+    }
+
+    /**
+     * @return A view of "count" ints of the buffer, starting "offset" ints in
+     */
+    private static IntBuffer slice(ByteBuffer buffer, int offset, int count)
+    {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(offset * 4);
+        dup.limit(offset * 4 + count * 4);
+        return dup.slice().asIntBuffer();
+    }
+
+    /**
+     * Write the table to a file, in the format described by the class
+     * documentation.
+     *
+     * @param file The file to write to
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException
+    {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        FileOutputStream os = new FileOutputStream(file);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(os))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mNumStates);
+            out.writeInt(mNumClasses);
+            out.writeInt(mPages.limit() / PAGE_SIZE);
+            writeInts(out, mPageIndex);
+            writeInts(out, mPages);
+            writeInts(out, mFinal);
+            writeInts(out, mDelta);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, IntBuffer buffer)
+        throws IOException
+    {
+        for (int i = 0; i < buffer.limit(); i++) {
+            out.writeInt(buffer.get(i));
+        }
+    }
+
+    /**
+     * @return The number of states, not counting the dead state
+     */
+    public int getNumStates()
+    {
+        return mNumStates;
+    }
+
+    /**
+     * @return The number of character classes, the columns of the table
+     */
+    public int getNumClasses()
+    {
+        return mNumClasses;
+    }
+
+    /**
+     * @return The start state, always 0
+     */
+    public int getStartState()
+    {
+        return 0;
+    }
+
+    /**
+     * @param c The character to lookup
+     * @return The class of the character, see AlphabetPartition.classOf()
+     */
+    public int classOf(char c)
+    {
+        return mPages.get(mPageIndex.get(c >>> PAGE_BITS) * PAGE_SIZE
+                + (c & PAGE_MASK));
+    }
+
+    /**
+     * @param state The current state, not the dead state
+     * @param c The next character of the input
+     * @return The next state, -1 for the dead state
+     */
+    public int step(int state, char c)
+    {
+        return mDelta.get(state * mNumClasses + classOf(c));
+    }
+
+    /**
+     * @param state The state, not the dead state
+     * @return Whether the state is final
+     */
+    public boolean isFinal(int state)
+    {
+        return mFinal.get(state) != 0;
+    }
+
+    /**
+     * @param input The input to match
+     * @return Whether the DFA accepts the whole of the input
+     */
+    public boolean matches(CharSequence input)
+    {
+        int state = 0;
+        int len = input.length();
+        for (int i = 0; i < len && state >= 0; i++) {
+            state = step(state, input.charAt(i));
+        }
+        return state >= 0 && isFinal(state);
+    }
+}
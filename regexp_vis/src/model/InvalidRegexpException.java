@@ -26,8 +26,31 @@ package model;
  * Exception thrown during parsing of an invalid regular expression
  */
 public class InvalidRegexpException extends Exception {
+    private final int mColumn;
+
     public InvalidRegexpException(String msg)
     {
         super(msg);
+        mColumn = -1;
+    }
+
+    /**
+     * @param msg Description of the error
+     * @param column The index in the regular expression where the error was
+     * found
+     */
+    public InvalidRegexpException(String msg, int column)
+    {
+        super(msg + " at column " + column);
+        mColumn = column;
+    }
+
+    /**
+     * @return The index in the regular expression where the error was found,
+     * starting from 0, or -1 if unknown
+     */
+    public int getColumn()
+    {
+        return mColumn;
     }
 }
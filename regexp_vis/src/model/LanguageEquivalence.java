@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Checks whether two automata (or regexps) accept the same language, with
+ * the algorithm of Hopcroft and Karp: pairs of states of the two DFAs are
+ * explored breadth first from the pair of start states, and pairs which must
+ * be equivalent are merged with a union-find structure, so each DFA state is
+ * paired with at most a few others rather than with every state of the
+ * other DFA.
+ *
+ * Neither DFA is built up front, their states are determinised from the NFAs
+ * on demand (with NfaMatcher, like LazyDfaMatcher) as the search reaches
+ * them, so the search stops as soon as a difference is found and only ever
+ * visits reachable states.
+ *
+ * Because the search is breadth first, the counterexample returned is a
+ * shortest word accepted by exactly one of the two.
+ */
+public final class LanguageEquivalence {
+
+    /**
+     * A set of NFA states, the key for looking up DFA states.
+     */
+    private static final class Subset {
+        private final long[] mWords;
+        private final int mHash;
+
+        private Subset(long[] words)
+        {
+            mWords = words;
+            mHash = Arrays.hashCode(words);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Subset)) {
+                return false;
+            }
+            Subset other = (Subset) obj;
+            return mHash == other.mHash && Arrays.equals(mWords, other.mWords);
+        }
+    }
+
+    /**
+     * One of the two automata, with its DFA states built so far. DFA states
+     * are numbered in the order they are reached.
+     */
+    private static final class Side {
+        private final NfaMatcher mNfa;
+        private final char[] mAlphabet;
+        private final HashMap<Subset, Integer> mIds;
+        private final ArrayList<long[]> mStates;
+        private final ArrayList<int[]> mNext;
+        private final int[] mAddedAt;
+        private int mStamp;
+        private final long[] mScratch;
+
+        private Side(NfaMatcher nfa, char[] alphabet)
+        {
+            mNfa = nfa;
+            mAlphabet = alphabet;
+            mIds = new HashMap<>();
+            mStates = new ArrayList<>();
+            mNext = new ArrayList<>();
+            mAddedAt = new int[mNfa.getNumClosures()];
+            mScratch = new long[mNfa.getNumWords()];
+        }
+
+        /**
+         * @return The local ID of the DFA state for "words", which must not
+         * be modified afterwards
+         */
+        private int intern(long[] words)
+        {
+            Subset key = new Subset(words);
+            Integer id = mIds.get(key);
+            if (id == null) {
+                id = mStates.size();
+                mIds.put(key, id);
+                mStates.add(words);
+                int[] next = new int[mAlphabet.length];
+                Arrays.fill(next, -1);
+                mNext.add(next);
+            }
+            return id;
+        }
+
+        private boolean isFinal(int id)
+        {
+            return mNfa.isFinal(mStates.get(id));
+        }
+
+        /**
+         * @return The local ID of the DFA state reached from "id" on the
+         * character mAlphabet[cls], the empty set of states if there is no
+         * transition
+         */
+        private int next(int id, int cls)
+        {
+            int[] next = mNext.get(id);
+            if (next[cls] < 0) {
+                if (mStamp == Integer.MAX_VALUE) {
+                    Arrays.fill(mAddedAt, 0);
+                    mStamp = 0;
+                }
+                mNfa.step(mStates.get(id), mScratch, mAlphabet[cls],
+                        mAddedAt, ++mStamp);
+                next[cls] = intern(mScratch.clone());
+            }
+            return next[cls];
+        }
+    }
+
+    private LanguageEquivalence() {
+    }
+
+    /**
+     * @param a The first regexp
+     * @param b The second regexp
+     * @return True if both regexps describe the same language
+     */
+    public static boolean areEquivalent(BasicRegexp a, BasicRegexp b)
+    {
+        return findCounterexample(a, b) == null;
+    }
+
+    /**
+     * @param a The first automaton
+     * @param b The second automaton
+     * @return True if both automata accept the same language
+     */
+    public static boolean areEquivalent(Automaton a, Automaton b)
+    {
+        return findCounterexample(a, b) == null;
+    }
+
+    /**
+     * @param a The first regexp
+     * @param b The second regexp
+     * @return A shortest word in the language of exactly one of the regexps,
+     * or null if they describe the same language
+     */
+    public static String findCounterexample(BasicRegexp a, BasicRegexp b)
+    {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("BasicRegexp cannot be null");
+        }
+        return findCounterexample(RegexpCompiler.compileThompson(a),
+                RegexpCompiler.compileThompson(b));
+    }
+
+    /**
+     * @param a The first automaton
+     * @param b The second automaton
+     * @return A shortest word accepted by exactly one of the automata, or null
+     * if they accept the same language
+     * @throws RuntimeException if either automaton has transitions which are
+     * not single characters
+     */
+    public static String findCounterexample(Automaton a, Automaton b)
+    {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("Automaton cannot be null");
+        }
+
+        NfaMatcher nfaA = new NfaMatcher(a);
+        NfaMatcher nfaB = new NfaMatcher(b);
+        TreeSet<Character> chars = new TreeSet<>();
+        for (char c : nfaA.getAlphabet()) {
+            chars.add(c);
+        }
+        for (char c : nfaB.getAlphabet()) {
+            chars.add(c);
+        }
+        char[] alphabet = new char[chars.size()];
+        int idx = 0;
+        for (char c : chars) {
+            alphabet[idx++] = c;
+        }
+
+        Side sideA = new Side(nfaA, alphabet);
+        Side sideB = new Side(nfaB, alphabet);
+        int startA = sideA.intern(nfaA.getStartWords());
+        int startB = sideB.intern(nfaB.getStartWords());
+        if (sideA.isFinal(startA) != sideB.isFinal(startB)) {
+            return "";
+        }
+
+        // Classes of DFA states of both sides which must be equivalent if the
+        // languages are
+        UnionFind classes = new UnionFind();
+        classes.union(classes.find(startA, 0), classes.find(startB, 1));
+
+        // Queue of explored pairs, with the pair and character each one was
+        // reached from for building the counterexample
+        IntList queueA = new IntList();
+        IntList queueB = new IntList();
+        IntList parents = new IntList();
+        IntList parentChars = new IntList();
+        queueA.add(startA);
+        queueB.add(startB);
+        parents.add(-1);
+        parentChars.add(-1);
+
+        for (int head = 0; head < queueA.size(); head++) {
+            int p = queueA.get(head);
+            int q = queueB.get(head);
+            for (int cls = 0; cls < alphabet.length; cls++) {
+                int p2 = sideA.next(p, cls);
+                int q2 = sideB.next(q, cls);
+                int rootP = classes.find(p2, 0);
+                int rootQ = classes.find(q2, 1);
+                if (rootP == rootQ) {
+                    continue;
+                }
+                classes.union(rootP, rootQ);
+                queueA.add(p2);
+                queueB.add(q2);
+                parents.add(head);
+                parentChars.add(cls);
+                if (sideA.isFinal(p2) != sideB.isFinal(q2)) {
+                    return buildWord(parents, parentChars, alphabet,
+                            queueA.size() - 1);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static String buildWord(IntList parents, IntList parentChars,
+            char[] alphabet, int pair)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = pair; parents.get(i) >= 0; i = parents.get(i)) {
+            sb.append(alphabet[parentChars.get(i)]);
+        }
+        return sb.reverse().toString();
+    }
+
+    /**
+     * Growable array of ints.
+     */
+    private static final class IntList {
+        private int[] mData = new int[16];
+        private int mSize;
+
+        private void add(int value)
+        {
+            if (mSize == mData.length) {
+                mData = Arrays.copyOf(mData, mSize * 2);
+            }
+            mData[mSize++] = value;
+        }
+
+        private int get(int idx)
+        {
+            return mData[idx];
+        }
+
+        private int size()
+        {
+            return mSize;
+        }
+    }
+
+    /**
+     * Union-find over the DFA states of both sides, with path halving and
+     * union by size. A state is identified by its local ID and its side (0 or
+     * 1), the two sides are interleaved in the arrays.
+     */
+    private static final class UnionFind {
+        private int[] mParent = new int[0];
+        private int[] mSize = new int[0];
+
+        private void ensureCapacity(int node)
+        {
+            if (node < mParent.length) {
+                return;
+            }
+            int oldLength = mParent.length;
+            int newLength = Math.max(16, Math.max(node + 1, oldLength * 2));
+            mParent = Arrays.copyOf(mParent, newLength);
+            mSize = Arrays.copyOf(mSize, newLength);
+            for (int i = oldLength; i < newLength; i++) {
+                mParent[i] = i;
+                mSize[i] = 1;
+            }
+        }
+
+        /**
+         * @return The root of the class of the given state
+         */
+        private int find(int id, int side)
+        {
+            int node = 2 * id + side;
+            ensureCapacity(node);
+            while (mParent[node] != node) {
+                mParent[node] = mParent[mParent[node]];
+                node = mParent[node];
+            }
+            return node;
+        }
+
+        /**
+         * Merge the classes of two roots.
+         */
+        private void union(int rootA, int rootB)
+        {
+            if (mSize[rootA] < mSize[rootB]) {
+                int tmp = rootA;
+                rootA = rootB;
+                rootB = tmp;
+            }
+            mParent[rootB] = rootA;
+            mSize[rootA] += mSize[rootB];
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Runs an automaton on input strings by building DFA states on demand, the
+ * first time the input reaches them, using the same subset logic as
+ * NfaMatcher. Built states and their transitions are cached, so frequently
+ * used paths run at DFA speed without ever determinising the whole automaton.
+ *
+ * The cache has a fixed memory budget. When a new state would exceed it the
+ * whole cache is flushed and rebuilt from the state the input is in, like the
+ * lazy DFA of RE2. Cache hits, misses and flushes are counted.
+ *
+ * Like NfaMatcher this works on a snapshot of the automaton taken at
+ * construction. Unlike NfaMatcher the cache is not synchronised, so a
+ * LazyDfaMatcher must not be shared between threads.
+ */
+public final class LazyDfaMatcher {
+    /**
+     * Default cache budget, in bytes
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 8L << 20;
+
+    // Approximate bytes used by a cached state besides its bitset and
+    // transition array: the DState object, array headers and the HashMap
+    // entry
+    private static final int STATE_OVERHEAD = 112;
+
+    /**
+     * A DFA state, the set of NFA states it represents and its transitions
+     * built so far.
+     */
+    private static final class DState {
+        private final long[] mWords;
+        private final int mHash;
+        private final boolean mFinal;
+        // Indexed by character class, null if not built yet
+        private final DState[] mNext;
+
+        private DState(long[] words, boolean isFinal, int numClasses)
+        {
+            mWords = words;
+            mHash = Arrays.hashCode(words);
+            mFinal = isFinal;
+            mNext = new DState[numClasses];
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DState)) {
+                return false;
+            }
+            DState other = (DState) obj;
+            return mHash == other.mHash && Arrays.equals(mWords, other.mWords);
+        }
+    }
+
+    private final NfaMatcher mNfa;
+    private final char[] mAlphabet;
+    // Character class of each character below 256, -1 for characters with no
+    // transitions
+    private final int[] mLatin1Classes;
+    private final long mMemoryBudget;
+    private final long mStateCost;
+    // The empty set of states, not cached as it never changes
+    private final DState mDeadState;
+
+    private final HashMap<DState, DState> mCache;
+    private long mMemoryUsed;
+    private DState mStartState;
+    private final long[] mScratch;
+    private final int[] mAddedAt;
+    private int mStamp;
+
+    private long mCacheHits;
+    private long mCacheMisses;
+    private long mCacheFlushes;
+
+    /**
+     * @param automaton The automaton to match with
+     */
+    public LazyDfaMatcher(Automaton automaton)
+    {
+        this(automaton, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param automaton The automaton to match with
+     * @param memoryBudget The approximate number of bytes the cached states
+     * may use
+     * @throws IllegalArgumentException if the budget is too small to cache at
+     * least a few states
+     * @throws RuntimeException if the automaton has transitions which are not
+     * single characters
+     */
+    public LazyDfaMatcher(Automaton automaton, long memoryBudget)
+    {
+        mNfa = new NfaMatcher(automaton);
+        mAlphabet = mNfa.getAlphabet();
+        mLatin1Classes = new int[256];
+        Arrays.fill(mLatin1Classes, -1);
+        for (int i = 0; i < mAlphabet.length && mAlphabet[i] < 256; i++) {
+            mLatin1Classes[mAlphabet[i]] = i;
+        }
+
+        mStateCost = STATE_OVERHEAD + 8L * mNfa.getNumWords()
+                + 4L * mAlphabet.length;
+        if (memoryBudget < 4 * mStateCost) {
+            throw new IllegalArgumentException("A memory budget of "
+                + memoryBudget + " bytes is too small, at least "
+                + 4 * mStateCost + " bytes are needed for this automaton");
+        }
+        mMemoryBudget = memoryBudget;
+
+        mDeadState = new DState(new long[mNfa.getNumWords()], false,
+                mAlphabet.length);
+        mCache = new HashMap<>();
+        mScratch = new long[mNfa.getNumWords()];
+        mAddedAt = new int[mNfa.getNumClosures()];
+    }
+
+    /**
+     * @param input The input to run the automaton on
+     * @return True if the automaton accepts the whole of the input
+     */
+    public boolean matches(CharSequence input)
+    {
+        if (mStartState == null) {
+            long[] start = mNfa.getStartWords();
+            mStartState = intern(start, mNfa.isFinal(start));
+        }
+
+        DState state = mStartState;
+        int len = input.length();
+        for (int i = 0; i < len; i++) {
+            char c = input.charAt(i);
+            int cls = c < 256 ? mLatin1Classes[c]
+                    : Arrays.binarySearch(mAlphabet, c);
+            if (cls < 0) {
+                // No transitions on this character at all
+                return false;
+            }
+
+            DState next = state.mNext[cls];
+            if (next != null) {
+                mCacheHits++;
+            } else {
+                mCacheMisses++;
+                next = computeNext(state, cls);
+            }
+            if (next == mDeadState) {
+                return false;
+            }
+            state = next;
+        }
+        return state.mFinal;
+    }
+
+    /**
+     * Build the transition of "state" on the given character class.
+     */
+    private DState computeNext(DState state, int cls)
+    {
+        if (mStamp == Integer.MAX_VALUE) {
+            Arrays.fill(mAddedAt, 0);
+            mStamp = 0;
+        }
+        DState next;
+        if (!mNfa.step(state.mWords, mScratch, mAlphabet[cls], mAddedAt,
+                ++mStamp)) {
+            next = mDeadState;
+        } else {
+            DState cached = mCache.get(new DState(mScratch, false, 0));
+            next = cached != null ? cached : intern(mScratch.clone(),
+                    mNfa.isFinal(mScratch));
+        }
+        // If the cache was flushed, "state" is no longer cached but linking it
+        // is harmless, it will be garbage once the current match is done
+        state.mNext[cls] = next;
+        return next;
+    }
+
+    /**
+     * Add a new state to the cache, flushing the cache first if it is full.
+     */
+    private DState intern(long[] words, boolean isFinal)
+    {
+        if (mMemoryUsed + mStateCost > mMemoryBudget) {
+            mCache.clear();
+            mMemoryUsed = 0;
+            mStartState = null;
+            mCacheFlushes++;
+        }
+        DState state = new DState(words, isFinal, mAlphabet.length);
+        mCache.put(state, state);
+        mMemoryUsed += mStateCost;
+        return state;
+    }
+
+    /**
+     * @return The number of characters whose transition was already cached
+     */
+    public long getCacheHits()
+    {
+        return mCacheHits;
+    }
+
+    /**
+     * @return The number of characters whose transition had to be computed
+     */
+    public long getCacheMisses()
+    {
+        return mCacheMisses;
+    }
+
+    /**
+     * @return The number of times the cache has been flushed
+     */
+    public long getCacheFlushes()
+    {
+        return mCacheFlushes;
+    }
+
+    /**
+     * @return The number of DFA states currently cached
+     */
+    public int getNumCachedStates()
+    {
+        return mCache.size();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Command which minimises a DFA in place. Each class of equivalent states is
+ * merged into one of its members, and unreachable and dead states are removed.
+ * See DfaMinimisation.
+ */
+public class MinimiseDfaCommand extends CompositeCommand {
+    private final List<AutomatonState> mRemovedStates;
+
+    public MinimiseDfaCommand(Automaton automaton)
+    {
+        super(automaton);
+
+        CompactAutomaton compact = automaton.freeze();
+        int[] classes = DfaMinimisation.calcStateClasses(compact);
+
+        // The first member of each class (in index order) is kept, so the
+        // start state is kept for its class. The start state is also kept if
+        // it is dead.
+        int numStates = compact.getNumStates();
+        int[] representatives = new int[numStates];
+        Arrays.fill(representatives, -1);
+        boolean[] kept = new boolean[numStates];
+        for (int s = 0; s < numStates; s++) {
+            int c = classes[s];
+            if (c >= 0 && representatives[c] < 0) {
+                representatives[c] = s;
+                kept[s] = true;
+            }
+        }
+        kept[compact.getStartIndex()] = true;
+
+        // Transitions from kept states to removed states are either
+        // redirected to the kept member of the same class, or removed if
+        // they go to a dead state
+        ArrayList<AutomatonTransition> newTrans = new ArrayList<>();
+        for (int s = 0; s < numStates; s++) {
+            if (!kept[s]) {
+                continue;
+            }
+            AutomatonState from = compact.getState(s);
+            for (AutomatonTransition t : automaton.getStateTransitions(from)) {
+                int to = compact.indexOf(t.getTo());
+                if (kept[to] && classes[to] >= 0) {
+                    continue;
+                }
+                super.commands.add(new RemoveTransitionCommand(automaton, t));
+                if (classes[to] >= 0) {
+                    newTrans.add(automaton.createNewTransition(from,
+                            compact.getState(representatives[classes[to]]),
+                            t.getData()));
+                }
+            }
+        }
+
+        // Removing the states removes all of their out-going transitions too,
+        // which covers all remaining transitions in-going to them
+        mRemovedStates = new ArrayList<>();
+        for (int s = 0; s < numStates; s++) {
+            if (!kept[s]) {
+                AutomatonState state = compact.getState(s);
+                mRemovedStates.add(state);
+                super.commands.add(new RemoveStateCommand(automaton, state));
+            }
+        }
+
+        for (AutomatonTransition t : newTrans) {
+            super.commands.add(new AddTransitionCommand(automaton, t));
+        }
+    }
+
+    /**
+     * @return The states which this command removes, as an unmodifiable list
+     */
+    public List<AutomatonState> getRemovedStates()
+    {
+        return Collections.unmodifiableList(mRemovedStates);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Runs an automaton on input strings by simulating it as an NFA, with the set
+ * of current states held as a bitset. Epsilon closures are computed once up
+ * front, so there is no backtracking and no allocation per input character.
+ * They are kept as lists of states rather than bitsets, so construction takes
+ * time and memory linear in the size of the automaton plus the total size of
+ * the distinct closures, rather than quadratic in the number of states.
+ *
+ * The matcher works on a snapshot of the automaton taken at construction,
+ * later changes to the automaton are not reflected. All transitions must be
+ * single characters (or epsilon). A matcher may be shared between threads.
+ */
+public final class NfaMatcher {
+    private final int mNumStates;
+    private final int mNumWords;
+    private final int mStartClosure;
+    // The states of distinct epsilon closure "c" are in the range
+    // [mClosureStarts[c], mClosureStarts[c + 1]) of mClosureStates, states
+    // in the same epsilon cycle share a closure
+    private final int[] mClosureStarts;
+    private final int[] mClosureStates;
+    private final long[] mFinalWords;
+    // The non-epsilon transitions of state "s" are in the range
+    // [mTransOffsets[s], mTransOffsets[s + 1]), each with its character and
+    // the index of the epsilon closure of the state it goes to
+    private final int[] mTransOffsets;
+    private final char[] mTransChars;
+    private final int[] mTransClosures;
+    private final char[] mAlphabet;
+
+    /**
+     * @param automaton The automaton to match with
+     * @throws RuntimeException if the automaton has transitions which are not
+     * single characters
+     */
+    public NfaMatcher(Automaton automaton)
+    {
+        if (automaton == null) {
+            throw new IllegalArgumentException("Automaton cannot be null");
+        }
+
+        CompactAutomaton compact = automaton.freeze();
+        for (int label = 0; label < compact.getNumLabels(); label++) {
+            if (!compact.isSingleCharLabel(label)) {
+                throw new RuntimeException("Cannot match with an automaton "
+                    + "with transitions which are not single characters, "
+                    + "break them down first");
+            }
+        }
+
+        mNumStates = compact.getNumStates();
+        mNumWords = (mNumStates + 63) >>> 6;
+
+        // One closure per component of the epsilon transitions, found with a
+        // search from any of its states as they all reach the same states
+        int[] closureOf = TranslationTools.calcEpsilonComponents(compact);
+        int numClosures = 0;
+        for (int s = 0; s < mNumStates; s++) {
+            numClosures = Math.max(numClosures, closureOf[s] + 1);
+        }
+        int[] roots = new int[numClosures];
+        for (int s = mNumStates - 1; s >= 0; s--) {
+            roots[closureOf[s]] = s;
+        }
+        int epsilonLabel = compact.getEpsilonLabel();
+        mClosureStarts = new int[numClosures + 1];
+        int[] closureStates = new int[mNumStates];
+        int numClosureStates = 0;
+        // The closure each state was last added to, and the search stack
+        int[] seenIn = new int[mNumStates];
+        Arrays.fill(seenIn, -1);
+        int[] stack = new int[mNumStates];
+        for (int c = 0; c < numClosures; c++) {
+            mClosureStarts[c] = numClosureStates;
+            int top = 0;
+            stack[top++] = roots[c];
+            seenIn[roots[c]] = c;
+            while (top > 0) {
+                int s = stack[--top];
+                if (numClosureStates == closureStates.length) {
+                    closureStates = Arrays.copyOf(closureStates,
+                            closureStates.length * 2);
+                }
+                closureStates[numClosureStates++] = s;
+                int end = compact.getTransitionsEnd(s);
+                for (int t = compact.getTransitionsStart(s); t < end; t++) {
+                    int to = compact.getTransitionTarget(t);
+                    if (compact.getTransitionLabel(t) == epsilonLabel
+                            && seenIn[to] != c) {
+                        seenIn[to] = c;
+                        stack[top++] = to;
+                    }
+                }
+            }
+        }
+        mClosureStarts[numClosures] = numClosureStates;
+        mClosureStates = Arrays.copyOf(closureStates, numClosureStates);
+        mStartClosure = closureOf[compact.getStartIndex()];
+
+        mFinalWords = new long[mNumWords];
+        for (int s = 0; s < mNumStates; s++) {
+            if (compact.isFinal(s)) {
+                mFinalWords[s >>> 6] |= 1L << s;
+            }
+        }
+
+        mTransOffsets = new int[mNumStates + 1];
+        mTransChars = new char[compact.getNumTransitions()];
+        mTransClosures = new int[compact.getNumTransitions()];
+        int numTrans = 0;
+        for (int s = 0; s < mNumStates; s++) {
+            mTransOffsets[s] = numTrans;
+            int end = compact.getTransitionsEnd(s);
+            for (int t = compact.getTransitionsStart(s); t < end; t++) {
+                int label = compact.getTransitionLabel(t);
+                if (label == epsilonLabel) {
+                    continue;
+                }
+                mTransChars[numTrans] = compact.getLabelChar(label);
+                mTransClosures[numTrans] =
+                        closureOf[compact.getTransitionTarget(t)];
+                numTrans++;
+            }
+        }
+        mTransOffsets[mNumStates] = numTrans;
+
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (int t = 0; t < numTrans; t++) {
+            alphabet.add(mTransChars[t]);
+        }
+        mAlphabet = new char[alphabet.size()];
+        int idx = 0;
+        for (char c : alphabet) {
+            mAlphabet[idx++] = c;
+        }
+    }
+
+    /**
+     * Add the states of a closure to a bitset of states.
+     */
+    private void addClosure(long[] words, int closure)
+    {
+        int[] states = mClosureStates;
+        int end = mClosureStarts[closure + 1];
+        for (int i = mClosureStarts[closure]; i < end; i++) {
+            int s = states[i];
+            words[s >>> 6] |= 1L << s;
+        }
+    }
+
+    /**
+     * @param input The input to run the automaton on
+     * @return True if the automaton accepts the whole of the input
+     */
+    public boolean matches(CharSequence input)
+    {
+        long[] current = getStartWords();
+        long[] next = new long[mNumWords];
+        int[] addedAt = new int[getNumClosures()];
+
+        int len = input.length();
+        for (int i = 0; i < len; i++) {
+            if (!step(current, next, input.charAt(i), addedAt, i + 1)) {
+                // No states left, nothing more can be accepted
+                return false;
+            }
+            long[] tmp = current;
+            current = next;
+            next = tmp;
+        }
+        return isFinal(current);
+    }
+
+    /**
+     * @return The number of words in each bitset of states
+     */
+    int getNumWords()
+    {
+        return mNumWords;
+    }
+
+    /**
+     * @return The number of distinct epsilon closures, the size of the
+     * "addedAt" array to pass to step()
+     */
+    int getNumClosures()
+    {
+        return mClosureStarts.length - 1;
+    }
+
+    /**
+     * @return The characters of the automaton's transitions, sorted
+     */
+    char[] getAlphabet()
+    {
+        return mAlphabet.clone();
+    }
+
+    /**
+     * @return A new bitset of the states the automaton starts in
+     */
+    long[] getStartWords()
+    {
+        long[] words = new long[mNumWords];
+        addClosure(words, mStartClosure);
+        return words;
+    }
+
+    /**
+     * Compute the states reachable from a set of states on one character.
+     *
+     * @param current The current set of states
+     * @param next Overwritten with the set of states after reading "c"
+     * @param c The character read
+     * @param addedAt Scratch space with one entry per closure, must not
+     * contain "stamp"
+     * @param stamp A value unique to this call for the given "addedAt"
+     * @return False if "next" is empty
+     */
+    boolean step(long[] current, long[] next, char c, int[] addedAt,
+            int stamp)
+    {
+        Arrays.fill(next, 0);
+        boolean any = false;
+        for (int w = 0; w < mNumWords; w++) {
+            long bits = current[w];
+            while (bits != 0) {
+                int s = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int end = mTransOffsets[s + 1];
+                for (int t = mTransOffsets[s]; t < end; t++) {
+                    int closure = mTransClosures[t];
+                    if (mTransChars[t] != c || addedAt[closure] == stamp) {
+                        continue;
+                    }
+                    // Add each closure at most once per step
+                    addedAt[closure] = stamp;
+                    addClosure(next, closure);
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * @param words A set of states
+     * @return True if the set contains a final state
+     */
+    boolean isFinal(long[] words)
+    {
+        for (int w = 0; w < mNumWords; w++) {
+            if ((words[w] & mFinalWords[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches an input against many patterns at once. The patterns are compiled
+ * into one automaton with RegexpCompiler.compileUnion(), determinised and
+ * minimised, and the DFA is flattened into a transition table with one
+ * column per AlphabetPartition character class. A single pass over the input
+ * then gives every pattern which matches the whole of it, rather than one
+ * pass per pattern.
+ *
+ * The DFA is built in full up front, like SubsetConstruction it may have
+ * exponentially many states for patterns such as (a|b)*a(a|b){n}. A
+ * PatternSetMatcher is immutable and may be shared between threads.
+ */
+public final class PatternSetMatcher {
+    private final int mNumPatterns;
+    private final int mNumStates;
+    private final AlphabetPartition mClasses;
+    // Indexed by state * mClasses.getNumClasses() + class, -1 for the dead
+    // state
+    private final int[] mDelta;
+    // The patterns accepted by each state, sorted
+    private final int[][] mPatternIds;
+
+    /**
+     * @param patterns The patterns to match, the ID of a pattern is its index
+     * in the list
+     */
+    public PatternSetMatcher(List<BasicRegexp> patterns)
+    {
+        Automaton dfa = DfaMinimisation.minimise(SubsetConstruction
+                .determinise(RegexpCompiler.compileUnion(patterns)));
+        CompactAutomaton compact = dfa.freeze();
+
+        mNumPatterns = patterns.size();
+        mNumStates = compact.getNumStates();
+        // One column per character class, class 0 (characters with no
+        // transitions) is left as the dead state
+        mClasses = new AlphabetPartition(compact);
+        int numClasses = mClasses.getNumClasses();
+        mDelta = new int[mNumStates * numClasses];
+        Arrays.fill(mDelta, -1);
+        mPatternIds = new int[mNumStates][];
+        for (int s = 0; s < mNumStates; s++) {
+            mPatternIds[s] = compact.getPatternIds(s);
+            int end = compact.getTransitionsEnd(s);
+            for (int t = compact.getTransitionsStart(s); t < end; t++) {
+                char c = compact.getLabelChar(compact.getTransitionLabel(t));
+                mDelta[s * numClasses + mClasses.classOf(c)] =
+                        compact.getTransitionTarget(t);
+            }
+        }
+    }
+
+    /**
+     * @param input The input to match
+     * @return The IDs of the patterns which match the whole of the input,
+     * sorted, empty if there are none
+     */
+    public int[] matches(CharSequence input)
+    {
+        int state = 0;
+        int numClasses = mClasses.getNumClasses();
+        int len = input.length();
+        for (int i = 0; i < len && state >= 0; i++) {
+            state = mDelta[state * numClasses
+                    + mClasses.classOf(input.charAt(i))];
+        }
+        if (state < 0) {
+            return new int[0];
+        }
+        int[] ids = mPatternIds[state];
+        return ids.length == 0 ? ids : ids.clone();
+    }
+
+    /**
+     * @return The number of patterns
+     */
+    public int getNumPatterns()
+    {
+        return mNumPatterns;
+    }
+
+    /**
+     * @return The number of character classes, the columns of the transition
+     * table, see AlphabetPartition
+     */
+    public int getNumClasses()
+    {
+        return mClasses.getNumClasses();
+    }
+
+    /**
+     * @return The number of states of the minimal DFA
+     */
+    public int getNumStates()
+    {
+        return mNumStates;
+    }
+}
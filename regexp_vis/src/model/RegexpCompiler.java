@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Compiles a BasicRegexp tree into an Automaton in a single pass, as an
+ * alternative to breaking the expression down one transition at a time with
+ * the Breakdown*Command classes.
+ *
+ * Two constructions are available:
+ * <ul>
+ *   <li> compileThompson(), which creates epsilon transitions like the
+ *        breakdown commands do, with O(n) states and transitions for an
+ *        expression with n operators and characters
+ *   <li> compileGlushkov(), the position automaton, which has no epsilon
+ *        transitions and one state per character of the expression plus the
+ *        start state
+ * </ul>
+ *
+ * compileUnion() compiles many patterns at once with the latter.
+ */
+public final class RegexpCompiler {
+
+    /**
+     * Minimal growable list of ints, for position sets and follow lists.
+     */
+    private static final class IntList {
+        private int[] mData = new int[4];
+        private int mSize;
+
+        private void add(int value)
+        {
+            if (mSize == mData.length) {
+                mData = Arrays.copyOf(mData, mSize * 2);
+            }
+            mData[mSize++] = value;
+        }
+
+        private void addAll(IntList other)
+        {
+            if (mSize + other.mSize > mData.length) {
+                mData = Arrays.copyOf(mData,
+                        Math.max(mSize + other.mSize, mData.length * 2));
+            }
+            System.arraycopy(other.mData, 0, mData, mSize, other.mSize);
+            mSize += other.mSize;
+        }
+    }
+
+    /**
+     * The attributes of a sub-expression used by the Glushkov construction.
+     */
+    private static final class PositionInfo {
+        private final boolean mNullable;
+        private final IntList mFirst;
+        private final IntList mLast;
+
+        private PositionInfo(boolean nullable, IntList first, IntList last)
+        {
+            mNullable = nullable;
+            mFirst = first;
+            mLast = last;
+        }
+    }
+
+    /**
+     * State of a single Glushkov construction.
+     */
+    private static final class GlushkovBuilder {
+        // The character of each position, and the positions which may follow
+        // each position
+        private final StringBuilder mChars = new StringBuilder();
+        private final List<IntList> mFollow = new ArrayList<>();
+
+        private PositionInfo build(BasicRegexp re)
+        {
+            switch (re.getOperator()) {
+            case NONE: {
+                IntList first = new IntList();
+                IntList last = new IntList();
+                if (re.getChar() == BasicRegexp.EPSILON_CHAR) {
+                    return new PositionInfo(true, first, last);
+                }
+                int pos = mChars.length();
+                mChars.append(re.getChar());
+                mFollow.add(new IntList());
+                first.add(pos);
+                last.add(pos);
+                return new PositionInfo(false, first, last);
+            }
+            case STAR:
+            case PLUS: {
+                PositionInfo info = build(re.getOperands().get(0));
+                addFollow(info.mLast, info.mFirst);
+                return new PositionInfo(
+                        re.getOperator() == BasicRegexp.RegexpOperator.STAR
+                        || info.mNullable, info.mFirst, info.mLast);
+            }
+            case OPTION: {
+                PositionInfo info = build(re.getOperands().get(0));
+                return new PositionInfo(true, info.mFirst, info.mLast);
+            }
+            case SEQUENCE: {
+                PositionInfo acc = null;
+                for (BasicRegexp operand : re.getOperands()) {
+                    PositionInfo info = build(operand);
+                    if (acc == null) {
+                        acc = info;
+                        continue;
+                    }
+                    addFollow(acc.mLast, info.mFirst);
+                    IntList first = acc.mFirst;
+                    if (acc.mNullable) {
+                        first.addAll(info.mFirst);
+                    }
+                    IntList last = info.mLast;
+                    if (info.mNullable) {
+                        last.addAll(acc.mLast);
+                    }
+                    acc = new PositionInfo(acc.mNullable && info.mNullable,
+                            first, last);
+                }
+                return acc;
+            }
+            case CHOICE: {
+                boolean nullable = false;
+                IntList first = new IntList();
+                IntList last = new IntList();
+                for (BasicRegexp operand : re.getOperands()) {
+                    PositionInfo info = build(operand);
+                    nullable |= info.mNullable;
+                    first.addAll(info.mFirst);
+                    last.addAll(info.mLast);
+                }
+                return new PositionInfo(nullable, first, last);
+            }
+            default:
+                throw new RuntimeException("BUG: Should be unreachable.");
+            }
+        }
+
+        private void addFollow(IntList from, IntList to)
+        {
+            for (int i = 0; i < from.mSize; i++) {
+                mFollow.get(from.mData[i]).addAll(to);
+            }
+        }
+    }
+
+    private RegexpCompiler()
+    {
+    }
+
+    /**
+     * Compile using Thompson's construction. The resulting automaton has a
+     * single final state, and may have epsilon transitions.
+     *
+     * @param re The expression to compile
+     * @return A new automaton accepting the language of "re"
+     */
+    public static Automaton compileThompson(BasicRegexp re)
+    {
+        if (re == null) {
+            throw new IllegalArgumentException("BasicRegexp cannot be null");
+        }
+
+        Automaton automaton = new Automaton();
+        AutomatonState end = newState(automaton);
+        end.setFinal(true);
+        compileThompson(automaton, re, automaton.getStartState(), end);
+        return automaton;
+    }
+
+    /**
+     * Add states and transitions such that the paths from "from" to "to"
+     * match "re". No transitions are added into "from" or out of "to" unless
+     * they are the same state.
+     */
+    private static void compileThompson(Automaton automaton, BasicRegexp re,
+            AutomatonState from, AutomatonState to)
+    {
+        switch (re.getOperator()) {
+        case NONE:
+            addTransition(automaton, from, to, re);
+            break;
+        case STAR: {
+            AutomatonState loop = newState(automaton);
+            addTransition(automaton, from, loop,
+                    BasicRegexp.EPSILON_EXPRESSION);
+            compileThompson(automaton, re.getOperands().get(0), loop, loop);
+            addTransition(automaton, loop, to, BasicRegexp.EPSILON_EXPRESSION);
+            break;
+        }
+        case PLUS: {
+            AutomatonState loopStart = newState(automaton);
+            AutomatonState loopEnd = newState(automaton);
+            addTransition(automaton, from, loopStart,
+                    BasicRegexp.EPSILON_EXPRESSION);
+            compileThompson(automaton, re.getOperands().get(0), loopStart,
+                    loopEnd);
+            addTransition(automaton, loopEnd, loopStart,
+                    BasicRegexp.EPSILON_EXPRESSION);
+            addTransition(automaton, loopEnd, to,
+                    BasicRegexp.EPSILON_EXPRESSION);
+            break;
+        }
+        case OPTION:
+            compileThompson(automaton, re.getOperands().get(0), from, to);
+            if (from != to) {
+                // Within a loop the empty word is already accepted
+                addTransition(automaton, from, to,
+                        BasicRegexp.EPSILON_EXPRESSION);
+            }
+            break;
+        case SEQUENCE: {
+            List<BasicRegexp> operands = re.getOperands();
+            AutomatonState cur = from;
+            for (int i = 0; i < operands.size(); i++) {
+                AutomatonState next = i == operands.size() - 1 ? to
+                        : newState(automaton);
+                compileThompson(automaton, operands.get(i), cur, next);
+                cur = next;
+            }
+            break;
+        }
+        case CHOICE:
+            for (BasicRegexp operand : re.getOperands()) {
+                compileThompson(automaton, operand, from, to);
+            }
+            break;
+        default:
+            throw new RuntimeException("BUG: Should be unreachable.");
+        }
+    }
+
+    /**
+     * Compile using Glushkov's construction. The resulting automaton has no
+     * epsilon transitions, its states other than the start state correspond
+     * to the (non-epsilon) characters of "re", and all transitions into a
+     * state have that state's character.
+     *
+     * @param re The expression to compile
+     * @return A new automaton accepting the language of "re"
+     */
+    public static Automaton compileGlushkov(BasicRegexp re)
+    {
+        if (re == null) {
+            throw new IllegalArgumentException("BasicRegexp cannot be null");
+        }
+
+        Automaton automaton = new Automaton();
+        automaton.getStartState().setFinal(
+                addGlushkovPositions(automaton, re, -1));
+        return automaton;
+    }
+
+    /**
+     * Compile several patterns into a single automaton, the union of their
+     * Glushkov automata sharing one start state. Each final state carries the
+     * ID of the pattern it accepts, the index of the pattern in "patterns",
+     * and the start state carries the IDs of the patterns which accept the
+     * empty word. Determinising the result with SubsetConstruction gives a
+     * DFA whose final states carry every pattern they accept, so a single
+     * pass over an input finds all the patterns matching it.
+     *
+     * @param patterns The patterns to compile
+     * @return A new automaton accepting the union of the languages of the
+     * patterns, with no epsilon transitions
+     */
+    public static Automaton compileUnion(List<BasicRegexp> patterns)
+    {
+        if (patterns == null) {
+            throw new IllegalArgumentException("Patterns cannot be null");
+        }
+
+        Automaton automaton = new Automaton();
+        IntList nullableIds = new IntList();
+        for (int id = 0; id < patterns.size(); id++) {
+            BasicRegexp re = patterns.get(id);
+            if (re == null) {
+                throw new IllegalArgumentException(
+                    "BasicRegexp cannot be null");
+            }
+            if (addGlushkovPositions(automaton, re, id)) {
+                nullableIds.add(id);
+            }
+        }
+
+        AutomatonState start = automaton.getStartState();
+        start.setFinal(nullableIds.mSize > 0);
+        start.setPatternIds(Arrays.copyOf(nullableIds.mData,
+                nullableIds.mSize));
+        return automaton;
+    }
+
+    /**
+     * Add the positions of the Glushkov automaton for "re" to an automaton,
+     * using its start state as the start state of "re".
+     *
+     * @param patternId If not negative, the pattern ID to give the final
+     * positions
+     * @return True if "re" accepts the empty word, the start state's finality
+     * is left to the caller
+     */
+    private static boolean addGlushkovPositions(Automaton automaton,
+            BasicRegexp re, int patternId)
+    {
+        GlushkovBuilder builder = new GlushkovBuilder();
+        PositionInfo info = builder.build(re);
+        int numPositions = builder.mChars.length();
+
+        AutomatonState start = automaton.getStartState();
+        AutomatonState[] states = new AutomatonState[numPositions];
+        BasicRegexp[] labels = new BasicRegexp[numPositions];
+        for (int p = 0; p < numPositions; p++) {
+            states[p] = newState(automaton);
+            labels[p] = new BasicRegexp(builder.mChars.charAt(p));
+        }
+        int[] ids = patternId < 0 ? null : new int[] { patternId };
+        for (int i = 0; i < info.mLast.mSize; i++) {
+            states[info.mLast.mData[i]].setFinal(true);
+            if (ids != null) {
+                states[info.mLast.mData[i]].setPatternIds(ids);
+            }
+        }
+
+        // Follow lists may contain duplicates, e.g. for "(a*)*", so remember
+        // the last source each target was linked from
+        int[] linkedFrom = new int[numPositions];
+        Arrays.fill(linkedFrom, -2);
+        addGlushkovTransitions(automaton, start, -1, info.mFirst, states,
+                labels, linkedFrom);
+        for (int p = 0; p < numPositions; p++) {
+            addGlushkovTransitions(automaton, states[p], p,
+                    builder.mFollow.get(p), states, labels, linkedFrom);
+        }
+        return info.mNullable;
+    }
+
+    private static void addGlushkovTransitions(Automaton automaton,
+            AutomatonState from, int fromPos, IntList targets,
+            AutomatonState[] states, BasicRegexp[] labels, int[] linkedFrom)
+    {
+        for (int i = 0; i < targets.mSize; i++) {
+            int q = targets.mData[i];
+            if (linkedFrom[q] != fromPos) {
+                linkedFrom[q] = fromPos;
+                addTransition(automaton, from, states[q], labels[q]);
+            }
+        }
+    }
+
+    private static AutomatonState newState(Automaton automaton)
+    {
+        AutomatonState state = automaton.createNewState();
+        automaton.addStateWithTransitions(state,
+                new LinkedList<AutomatonTransition>());
+        return state;
+    }
+
+    private static void addTransition(Automaton automaton,
+            AutomatonState from, AutomatonState to, BasicRegexp re)
+    {
+        automaton.addTransition(automaton.createNewTransition(from, to, re));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Hash-consing table for BasicRegexp. Interning an expression returns an
+ * instance where every subexpression is shared with all other structurally
+ * identical subexpressions interned through the same table, so comparing
+ * interned expressions for equality is a pointer check.
+ *
+ * Interning is exact: "a|b" and "b|a" are equal according to
+ * BasicRegexp.equals() but are interned as distinct instances, so that an
+ * interned expression always prints the same as the original.
+ */
+public class RegexpInternTable {
+
+    /**
+     * Key of an interned node: its operator, character and the identities of
+     * its (already interned) operands.
+     */
+    private static final class Key {
+        private final BasicRegexp.RegexpOperator mOperator;
+        private final char mChar;
+        private final BasicRegexp[] mOperands;
+        private final int mHash;
+
+        private Key(BasicRegexp re, BasicRegexp[] operands)
+        {
+            mOperator = re.getOperator();
+            mChar = re.isSingleChar() ? re.getChar() : 0;
+            mOperands = operands;
+            mHash = re.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (mHash != other.mHash || mOperator != other.mOperator
+                    || mChar != other.mChar) {
+                return false;
+            }
+            if (mOperands == null || other.mOperands == null) {
+                return mOperands == other.mOperands;
+            }
+            if (mOperands.length != other.mOperands.length) {
+                return false;
+            }
+            for (int i = 0; i < mOperands.length; i++) {
+                if (mOperands[i] != other.mOperands[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final HashMap<Key, BasicRegexp> mTable;
+
+    public RegexpInternTable()
+    {
+        mTable = new HashMap<>();
+    }
+
+    /**
+     * Get the canonical instance for the specified expression, adding it to
+     * the table if no structurally identical expression has been interned
+     * yet.
+     *
+     * @param re The expression to intern
+     * @return An expression structurally identical to "re", whose
+     * subexpressions are all interned
+     * @throws IllegalArgumentException if "re" is null
+     */
+    public BasicRegexp intern(BasicRegexp re)
+    {
+        if (re == null) {
+            throw new IllegalArgumentException("re cannot be null");
+        }
+
+        BasicRegexp[] interned = null;
+        boolean changed = false;
+        if (!re.isSingleChar()) {
+            List<BasicRegexp> operands = re.getOperands();
+            interned = new BasicRegexp[operands.size()];
+            for (int i = 0; i < interned.length; i++) {
+                BasicRegexp operand = operands.get(i);
+                interned[i] = intern(operand);
+                changed |= interned[i] != operand;
+            }
+        }
+
+        Key key = new Key(re, interned);
+        BasicRegexp existing = mTable.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        BasicRegexp result = re;
+        if (changed) {
+            // Rebuild with the shared operands. The operands of "re" were
+            // flattened on construction, so this has the same structure.
+            if (re.getOperator().isUnary()) {
+                result = new BasicRegexp(interned[0], re.getOperator());
+            } else {
+                ArrayList<BasicRegexp> list = new ArrayList<>(interned.length);
+                for (BasicRegexp operand : interned) {
+                    list.add(operand);
+                }
+                result = new BasicRegexp(list, re.getOperator());
+            }
+        }
+        mTable.put(key, result);
+        return result;
+    }
+
+    /**
+     * @return The number of distinct expressions in this table
+     */
+    public int size()
+    {
+        return mTable.size();
+    }
+
+    /**
+     * Remove all expressions from this table. Previously interned expressions
+     * remain valid but will no longer be shared with ones interned later.
+     */
+    public void clear()
+    {
+        mTable.clear();
+    }
+
+}
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -33,11 +34,40 @@ import java.util.Set;
 
 /**
  * Class which pre-computes data regarding an NFA, for use by
- * RemoveEquivalentStatesCommand.
+ * RemoveEquivalentStatesCommand. Each state is given the ID of its class of
+ * equivalent states, and the context listens to the automaton so that it knows
+ * how many members of each class are still present. Call detach() once the
+ * context is no longer needed.
  */
 public class RemoveEpsilonTransitionsContext {
-    private final Map<AutomatonState, Set<AutomatonState>> mEpsilonClosureMap;
+    private final Automaton mAutomaton;
     private final List<Set<AutomatonState>> mEquivalentStatesList;
+    // Maps each state to the index of its set in mEquivalentStatesList
+    private final Map<AutomatonState, Integer> mClassIdMap;
+    // Number of states of each class currently present in mAutomaton
+    private int[] mLiveCounts;
+    // Number of classes with more than one state present in mAutomaton
+    private int mNumEquivalentClasses;
+    private final Automaton.StateListener mStateListener =
+            new Automaton.StateListener() {
+        @Override
+        public void onStateAdded(AutomatonState state)
+        {
+            Integer classId = mClassIdMap.get(state);
+            if (classId != null && ++mLiveCounts[classId] == 2) {
+                mNumEquivalentClasses++;
+            }
+        }
+
+        @Override
+        public void onStateRemoved(AutomatonState state)
+        {
+            Integer classId = mClassIdMap.get(state);
+            if (classId != null && --mLiveCounts[classId] == 1) {
+                mNumEquivalentClasses--;
+            }
+        }
+    };
 
     /**
      * Goes through "todoStates" to create a set of states which are equivalent
@@ -75,9 +105,21 @@ public class RemoveEpsilonTransitionsContext {
 
     public RemoveEpsilonTransitionsContext(Automaton automaton)
     {
-        mEpsilonClosureMap = new HashMap<>();
+        mAutomaton = automaton;
         mEquivalentStatesList = new ArrayList<>();
+        mClassIdMap = new HashMap<>();
         precompute(automaton);
+        automaton.addStateListener(mStateListener);
+    }
+
+    /**
+     * Stop tracking changes to the automaton this context was created for.
+     * Afterwards, equivalentStatesExist() falls back to checking each state.
+     */
+    public void detach()
+    {
+        mAutomaton.removeStateListener(mStateListener);
+        mLiveCounts = null;
     }
 
     /**
@@ -86,22 +128,45 @@ public class RemoveEpsilonTransitionsContext {
      */
     private void precompute(Automaton automaton)
     {
-        ArrayList<AutomatonState> todoStates = new ArrayList<>();
-        Iterator<Automaton.StateTransitionsPair> it = automaton.graphIterator();
-        while (it.hasNext()) {
-            Automaton.StateTransitionsPair pair = it.next();
-            Set<AutomatonState> epsilonClosure = TranslationTools
-                    .calcEpsilonReachableStates(automaton, pair.getState());
-            mEpsilonClosureMap.put(pair.getState(), epsilonClosure);
-            todoStates.add(pair.getState());
-        }
+        // All closures are computed in one pass on a snapshot. States with
+        // equal closures are exactly those which share a closure instance, so
+        // group them by identity rather than comparing closures pairwise.
+        CompactAutomaton compact = automaton.freeze();
+        StateSet[] closures = TranslationTools.calcAllEpsilonClosures(compact);
+        IdentityHashMap<StateSet, Set<AutomatonState>> equivalentStatesMap =
+                new IdentityHashMap<>();
+        for (int i = 0; i < compact.getNumStates(); i++) {
+            AutomatonState state = compact.getState(i);
 
-        while (!todoStates.isEmpty()) {
-            Set<AutomatonState> equivalentStates = calcEquivalentStates(
-                    todoStates, mEpsilonClosureMap);
-            mEquivalentStatesList.add(equivalentStates);
+            Set<AutomatonState> equivalentStates =
+                    equivalentStatesMap.get(closures[i]);
+            if (equivalentStates == null) {
+                equivalentStates = new HashSet<>();
+                equivalentStatesMap.put(closures[i], equivalentStates);
+                mEquivalentStatesList.add(equivalentStates);
+            }
+            equivalentStates.add(state);
+            mClassIdMap.put(state, mEquivalentStatesList.size() - 1);
+        }
+        // All sets of equivalent states calculated, and all of their states
+        // are present in the automaton
+        mLiveCounts = new int[mEquivalentStatesList.size()];
+        for (int i = 0; i < mLiveCounts.length; i++) {
+            mLiveCounts[i] = mEquivalentStatesList.get(i).size();
+            if (mLiveCounts[i] > 1) {
+                mNumEquivalentClasses++;
+            }
         }
-        // All sets of equivalent states calculated
+    }
+
+    /**
+     * @param automaton The automaton being asked about
+     * @return True if the live counts can answer questions about the given
+     * automaton
+     */
+    private boolean isTracking(Automaton automaton)
+    {
+        return automaton == mAutomaton && mLiveCounts != null;
     }
 
     /**
@@ -112,12 +177,12 @@ public class RemoveEpsilonTransitionsContext {
      */
     public Set<AutomatonState> getEquivalentStates(AutomatonState state)
     {
-        for (Set<AutomatonState> equivalentStates : mEquivalentStatesList) {
-            if (equivalentStates.contains(state)) {
-                return Collections.unmodifiableSet(equivalentStates);
-            }
+        Integer classId = mClassIdMap.get(state);
+        if (classId == null) {
+            return null;
         }
-        return null;
+        return Collections.unmodifiableSet(
+                mEquivalentStatesList.get(classId));
     }
 
     /**
@@ -129,6 +194,15 @@ public class RemoveEpsilonTransitionsContext {
     public boolean equivalentStatesExist(Automaton automaton,
             AutomatonState state)
     {
+        if (isTracking(automaton)) {
+            // Unknown states are a programming error, so let unboxing throw
+            int live = mLiveCounts[mClassIdMap.get(state)];
+            if (automaton.stateExists(state)) {
+                live--;
+            }
+            return live > 0;
+        }
+
         Set<AutomatonState> equivalentStates = getEquivalentStates(state);
         for (AutomatonState eqivalentState : equivalentStates) {
             if (eqivalentState != state
@@ -147,6 +221,10 @@ public class RemoveEpsilonTransitionsContext {
      */
     public boolean equivalentStatesExist(Automaton automaton)
     {
+        if (isTracking(automaton)) {
+            return mNumEquivalentClasses > 0;
+        }
+
         for (Set<AutomatonState> equivalentStates : mEquivalentStatesList) {
             int count = 0;
             for (AutomatonState state : equivalentStates) {
@@ -169,17 +247,7 @@ public class RemoveEpsilonTransitionsContext {
      */
     public boolean areStatesEquivalent(AutomatonState a, AutomatonState b)
     {
-        for (Set<AutomatonState> equivalentStates : mEquivalentStatesList) {
-            boolean containsA = equivalentStates.contains(a);
-            boolean containsB = equivalentStates.contains(b);
-            if (containsA != containsB) {
-                // We know "a" and "b" are in different sets at this point
-                // so return false.
-                return false;
-            } else if (containsA && containsB) {
-                return true;
-            }
-        }
-        return false;
+        Integer classIdA = mClassIdMap.get(a);
+        return classIdA != null && classIdA.equals(mClassIdMap.get(b));
     }
 }
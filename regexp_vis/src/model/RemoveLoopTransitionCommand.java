@@ -59,8 +59,8 @@ public class RemoveLoopTransitionCommand extends CompositeCommand {
             operands.add(t.getData());
             BasicRegexp newRe = new BasicRegexp(operands,
                     BasicRegexp.RegexpOperator.SEQUENCE);
-            // Do very low depth optimisation
-            newRe = newRe.optimise(BasicRegexp.OPTIMISE_ALL, 1);
+            newRe = newRe.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                    BasicRegexp.DEFAULT_OPTIMISE_BUDGET);
             AutomatonTransition newTrans = automaton.createNewTransition(state,
                     t.getTo(), newRe);
             // Remove the old and add the new
@@ -22,33 +22,33 @@
  */
 package model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * Class which manages the current state of removing non-determinism, currently
  * only stores mappings from a single state to a set of states and vice-versa.
+ * Each set of states is expected to be bound to at most one state.
  */
 public class RemoveNonDeterminismContext {
     private final Automaton mAutomaton;
     private final Map<AutomatonState, Set<AutomatonState>> mStateSetMap;
-    private final Set<AutomatonState> mOriginalStates;
+    // Reverse of mStateSetMap, kept in sync by putStateBinding() and
+    // removeStateBinding()
+    private final Map<Set<AutomatonState>, AutomatonState> mSetStateMap;
+    // Snapshot of all the states we are starting off with, sets of original
+    // states are StateSet(s) over this snapshot
+    private final CompactAutomaton mOriginalStates;
 
     public RemoveNonDeterminismContext(Automaton automaton)
     {
         mAutomaton = automaton;
         mStateSetMap = new HashMap<>();
-        mOriginalStates = new HashSet<>();
-
-        // Set mOriginalStates to all the states we are starting off with
-        Iterator<Automaton.StateTransitionsPair> it = mAutomaton.graphIterator();
-        while (it.hasNext()) {
-            Automaton.StateTransitionsPair pair = it.next();
-            mOriginalStates.add(pair.getState());
-        }
+        mSetStateMap = new HashMap<>();
+        mOriginalStates = mAutomaton.freeze();
     }
 
     /**
@@ -62,13 +62,11 @@ public class RemoveNonDeterminismContext {
      */
     public AutomatonState findStateFromSet(Set<AutomatonState> set)
     {
-        for (Map.Entry<AutomatonState, Set<AutomatonState>> entry : mStateSetMap
-                .entrySet()) {
-            if (set.equals(entry.getValue())) {
-                return entry.getKey();
-            }
+        // A null set is a programming error, HashMap would accept it
+        if (set == null) {
+            throw new NullPointerException();
         }
-        return null;
+        return mSetStateMap.get(set);
     }
 
     /**
@@ -90,9 +88,50 @@ public class RemoveNonDeterminismContext {
      * {1, C} that will be translated to {A, B, C}
      *
      * @param reachable A set of reachable states to process
-     * @return The set in terms of only the original states
+     * @return The set in terms of only the original states, a StateSet unless
+     * the set contains states which were never part of the automaton
      */
     public Set<AutomatonState> reachableToSet(Set<AutomatonState> reachable)
+    {
+        StateSet ppSet = new StateSet(mOriginalStates);
+
+        for (AutomatonState s : reachable) {
+            Set<AutomatonState> tmp = mStateSetMap.get(s);
+            if (tmp == null) {
+                tmp = Collections.singleton(s);
+            }
+            if (!isOriginalStateSet(tmp)) {
+                for (AutomatonState s2 : tmp) {
+                    if (mOriginalStates.indexOf(s2) < 0) {
+                        // Not an original state, can't be part of a StateSet
+                        // so fall back to a HashSet
+                        return reachableToHashSet(reachable);
+                    }
+                }
+            }
+            ppSet.addAll(tmp);
+        }
+
+        return ppSet;
+    }
+
+    /**
+     * @param set The set in question
+     * @return True if the set is a StateSet over the original states, and so
+     * can only contain original states
+     */
+    private boolean isOriginalStateSet(Set<AutomatonState> set)
+    {
+        return set instanceof StateSet
+                && ((StateSet) set).getUniverse() == mOriginalStates;
+    }
+
+    /**
+     * reachableToSet() for sets containing states which were never part of
+     * the automaton.
+     */
+    private Set<AutomatonState> reachableToHashSet(
+            Set<AutomatonState> reachable)
     {
         HashSet<AutomatonState> ppSet = new HashSet<>();
 
@@ -108,13 +147,27 @@ public class RemoveNonDeterminismContext {
         return ppSet;
     }
 
+    /**
+     * Bind a state to the set of states it represents. The set must not be
+     * modified afterwards.
+     *
+     * @param s The state
+     * @param set The set of states the state represents
+     */
     public void putStateBinding(AutomatonState s, Set<AutomatonState> set)
     {
+        removeStateBinding(s);
         mStateSetMap.put(s, set);
+        if (set != null) {
+            mSetStateMap.put(set, s);
+        }
     }
 
     public void removeStateBinding(AutomatonState s)
     {
-        mStateSetMap.remove(s);
+        Set<AutomatonState> set = mStateSetMap.remove(s);
+        if (set != null && mSetStateMap.get(set) == s) {
+            mSetStateMap.remove(set);
+        }
     }
 }
@@ -37,6 +37,19 @@ public class SequenceStateTransitionsCommand extends CompositeCommand {
 
     public SequenceStateTransitionsCommand(Automaton automaton,
             AutomatonState state)
+    {
+        this(automaton, state, null);
+    }
+
+    /**
+     * @param automaton The automaton to operate on
+     * @param state The state to remove
+     * @param internTable If not null, the table used to intern the sequenced
+     * expressions, so repeated subexpressions are shared rather than copied
+     * each time a state is removed
+     */
+    public SequenceStateTransitionsCommand(Automaton automaton,
+            AutomatonState state, RegexpInternTable internTable)
     {
         super(automaton);
         mState = state;
@@ -57,8 +70,13 @@ public class SequenceStateTransitionsCommand extends CompositeCommand {
                 operands.add(t2.getData());
                 BasicRegexp newRe = new BasicRegexp(operands,
                         BasicRegexp.RegexpOperator.SEQUENCE);
-                // Do very low depth optimisation
-                newRe = newRe.optimise(BasicRegexp.OPTIMISE_ALL, 1);
+                // Run once per in/out pair, the budget caps the work on
+                // labels the user typed in unoptimised
+                newRe = newRe.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                        BasicRegexp.DEFAULT_OPTIMISE_BUDGET);
+                if (internTable != null) {
+                    newRe = internTable.intern(newRe);
+                }
                 AutomatonTransition newTrans = automaton
                         .createNewTransition(t1.getFrom(), t2.getTo(), newRe);
                 super.commands.add(new AddTransitionCommand(automaton, newTrans));
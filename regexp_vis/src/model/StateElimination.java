@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Automatic NFA to regexp translation by state elimination, using the same
+ * commands as the step by step translation in NfaToRegexpActivity. The order
+ * the states are removed in decides how large the resulting expression is,
+ * so the next state is chosen by a cost heuristic.
+ */
+public final class StateElimination {
+
+    /**
+     * Heuristics for choosing the next state to remove. Ties are broken by
+     * the lowest state ID.
+     */
+    public enum Heuristic {
+        /**
+         * States in order of their ID, the order a user working through the
+         * automaton would likely follow. Only useful as a baseline.
+         */
+        IN_ORDER,
+        /**
+         * The state with the fewest in-going neighbours times out-going
+         * neighbours, i.e. which creates the fewest new transitions.
+         */
+        DEGREE_PRODUCT,
+        /**
+         * The state whose removal adds the least to the total size of the
+         * expressions on the transitions: each in-going expression is copied
+         * once for each out-going neighbour and vice versa, and the loop once
+         * for each pair of them (the weight of Delgado and Morais).
+         */
+        LABEL_WEIGHT
+    }
+
+    private StateElimination() {
+    }
+
+    /**
+     * @param automaton The automaton the state belongs to
+     * @param state The state in question, which must not be the initial or
+     * a final state
+     * @param heuristic The heuristic to use
+     * @return The cost of removing the state under the given heuristic, lower
+     * is better
+     */
+    public static long calcCost(Automaton automaton, AutomatonState state,
+            Heuristic heuristic)
+    {
+        if (heuristic == Heuristic.IN_ORDER) {
+            return state.getId();
+        }
+
+        // Parallel transitions are conjoined before the state is removed, so
+        // count neighbours rather than transitions
+        HashSet<AutomatonState> from = new HashSet<>();
+        long inSize = 0;
+        for (AutomatonTransition t : automaton.getIngoingTransition(state)) {
+            if (t.getFrom() != state) {
+                from.add(t.getFrom());
+                inSize += t.getData().getSize();
+            }
+        }
+        HashSet<AutomatonState> to = new HashSet<>();
+        long outSize = 0;
+        long loopSize = 0;
+        for (AutomatonTransition t : automaton.getStateTransitions(state)) {
+            if (t.getTo() != state) {
+                to.add(t.getTo());
+                outSize += t.getData().getSize();
+            } else {
+                loopSize += t.getData().getSize();
+            }
+        }
+
+        long numIn = from.size();
+        long numOut = to.size();
+        if (heuristic == Heuristic.DEGREE_PRODUCT) {
+            return numIn * numOut;
+        }
+        return inSize * (numOut - 1) + outSize * (numIn - 1)
+                + loopSize * (numIn * numOut - 1);
+    }
+
+    /**
+     * @param automaton The automaton in question, its initial and final
+     * states should already be isolated
+     * @param heuristic The heuristic to use
+     * @return The state to remove next, or null if only the initial and final
+     * states remain
+     */
+    public static AutomatonState chooseNextState(Automaton automaton,
+            Heuristic heuristic)
+    {
+        AutomatonState start = automaton.getStartState();
+        AutomatonState best = null;
+        long bestCost = Long.MAX_VALUE;
+        Iterator<Automaton.StateTransitionsPair> it = automaton.graphIterator();
+        while (it.hasNext()) {
+            AutomatonState state = it.next().getState();
+            if (state == start || state.isFinal()) {
+                continue;
+            }
+            long cost = calcCost(automaton, state, heuristic);
+            if (cost < bestCost || (cost == bestCost
+                    && state.getId() < best.getId())) {
+                best = state;
+                bestCost = cost;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Creates the next command needed to remove a state: first conjoining
+     * parallel transitions to and from it, then removing its loop, and
+     * finally sequencing its transitions and removing the state itself. The
+     * command isn't executed, and the next command can only be created after
+     * it is.
+     *
+     * @param automaton The automaton the state belongs to
+     * @param state The state to remove
+     * @param internTable If not null, the table used to intern the sequenced
+     * expressions, see SequenceStateTransitionsCommand
+     * @return The next command for removing the state
+     */
+    public static Command createNextCommand(Automaton automaton,
+            AutomatonState state, RegexpInternTable internTable)
+    {
+        HashSet<AutomatonState> found = new HashSet<>();
+        for (AutomatonTransition t : automaton.getIngoingTransition(state)) {
+            if (!found.add(t.getFrom())) {
+                return new ConjoinParallelTransitionsCommand(automaton,
+                        t.getFrom(), state);
+            }
+        }
+        found.clear();
+        for (AutomatonTransition t : automaton.getStateTransitions(state)) {
+            if (!found.add(t.getTo())) {
+                return new ConjoinParallelTransitionsCommand(automaton, state,
+                        t.getTo());
+            }
+        }
+
+        AutomatonTransition loop = TranslationTools.getSingleLoop(automaton,
+                state);
+        if (loop != null) {
+            return new RemoveLoopTransitionCommand(automaton, loop);
+        }
+
+        return new SequenceStateTransitionsCommand(automaton, state,
+                internTable);
+    }
+
+    /**
+     * Translates an automaton to a regexp, by isolating its initial and final
+     * states and then removing every other state in the order chosen by the
+     * heuristic. All the commands are executed, undoing them in reverse order
+     * restores the automaton.
+     *
+     * @param automaton The automaton to translate
+     * @param heuristic The heuristic to choose the order of states with
+     * @param internTable If not null, the table used to intern the sequenced
+     * expressions
+     * @return The commands executed, in order
+     */
+    public static List<Command> eliminateAll(Automaton automaton,
+            Heuristic heuristic, RegexpInternTable internTable)
+    {
+        if (automaton == null) {
+            throw new IllegalArgumentException("Automaton cannot be null");
+        } else if (heuristic == null) {
+            throw new IllegalArgumentException("Heuristic cannot be null");
+        }
+
+        ArrayList<Command> commands = new ArrayList<>();
+        if (!TranslationTools.automatonHasFinalState(automaton)) {
+            // The language is the empty set, nothing to translate
+            return commands;
+        }
+        IsolateFinalStateCommand isolateFinalCmd = IsolateFinalStateCommand
+                .create(automaton);
+        if (isolateFinalCmd != null) {
+            isolateFinalCmd.redo();
+            commands.add(isolateFinalCmd);
+        }
+        IsolateInitialStateCommand isolateInitialCmd =
+                IsolateInitialStateCommand.create(automaton);
+        if (isolateInitialCmd != null) {
+            isolateInitialCmd.redo();
+            commands.add(isolateInitialCmd);
+        }
+
+        AutomatonState state;
+        while ((state = chooseNextState(automaton, heuristic)) != null) {
+            while (automaton.stateExists(state)) {
+                Command cmd = createNextCommand(automaton, state, internTable);
+                cmd.redo();
+                commands.add(cmd);
+            }
+        }
+
+        AutomatonState start = automaton.getStartState();
+        for (AutomatonTransition t : automaton.getStateTransitions(start)) {
+            if (TranslationTools.stateHasParallelTrans(automaton, start,
+                    t.getTo())) {
+                Command cmd = new ConjoinParallelTransitionsCommand(automaton,
+                        start, t.getTo());
+                cmd.redo();
+                commands.add(cmd);
+                break;
+            }
+        }
+
+        return commands;
+    }
+
+    /**
+     * @param automaton An automaton which has been through eliminateAll()
+     * @return The expression on the single transition from the initial state
+     * to the final state, epsilon if the initial state is the only final
+     * state, or null if the language is the empty set
+     */
+    public static BasicRegexp getResult(Automaton automaton)
+    {
+        AutomatonState start = automaton.getStartState();
+        if (start == null) {
+            return null;
+        }
+        for (AutomatonTransition t : automaton.getStateTransitions(start)) {
+            if (t.getTo() != start && t.getTo().isFinal()) {
+                return t.getData();
+            }
+        }
+
+        return start.isFinal() ? BasicRegexp.EPSILON_EXPRESSION : null;
+    }
+
+    /**
+     * Translates an automaton with every heuristic in turn, to compare the
+     * size of the expressions they produce. The automaton is restored
+     * afterwards.
+     *
+     * @param automaton The automaton to translate
+     * @return For each heuristic the size of the resulting expression (see
+     * BasicRegexp.getSize()), 0 if the language is the empty set
+     */
+    public static EnumMap<Heuristic, Integer> calcResultSizes(
+            Automaton automaton)
+    {
+        EnumMap<Heuristic, Integer> sizes = new EnumMap<>(Heuristic.class);
+        for (Heuristic heuristic : Heuristic.values()) {
+            List<Command> commands = eliminateAll(automaton, heuristic, null);
+            BasicRegexp result = getResult(automaton);
+            sizes.put(heuristic, result == null ? 0 : result.getSize());
+
+            ListIterator<Command> it = commands.listIterator(commands.size());
+            while (it.hasPrevious()) {
+                it.previous().undo();
+            }
+        }
+
+        return sizes;
+    }
+}
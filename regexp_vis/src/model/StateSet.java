@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of states backed by a bitset over the dense state indices of a
+ * CompactAutomaton, the "universe" of the set. Only states of the universe can
+ * be added.
+ *
+ * Union, intersection and equality between two StateSet(s) with the same
+ * universe work a word (64 states) at a time. The hash code follows the
+ * contract of java.util.Set, so a StateSet is equal to a HashSet of the same
+ * states, and is cached until the set is next modified. As with any set used
+ * as a key in a hash based collection, a StateSet must not be modified while
+ * it is in use as a key.
+ */
+public final class StateSet extends AbstractSet<AutomatonState> {
+    private static final long[] EMPTY_WORDS = new long[0];
+
+    private final CompactAutomaton mUniverse;
+    // Grown on demand, so sets of low indices stay small. Words past the end
+    // of the array are zero.
+    private long[] mWords;
+    private int mSize;
+    private int mHashCode;
+    private boolean mHashCodeValid;
+
+    /**
+     * Create an empty set.
+     *
+     * @param universe The snapshot whose states this set may contain
+     */
+    public StateSet(CompactAutomaton universe)
+    {
+        if (universe == null) {
+            throw new IllegalArgumentException("Universe cannot be null");
+        }
+        mUniverse = universe;
+        mWords = EMPTY_WORDS;
+        mSize = 0;
+    }
+
+    /**
+     * Create a copy of the given set.
+     *
+     * @param other The set to copy
+     */
+    public StateSet(StateSet other)
+    {
+        mUniverse = other.mUniverse;
+        mWords = other.mWords.clone();
+        mSize = other.mSize;
+        mHashCode = other.mHashCode;
+        mHashCodeValid = other.mHashCodeValid;
+    }
+
+    /**
+     * @return The snapshot whose states this set may contain
+     */
+    public CompactAutomaton getUniverse()
+    {
+        return mUniverse;
+    }
+
+    private void ensureWords(int numWords)
+    {
+        if (numWords > mWords.length) {
+            int maxWords = (mUniverse.getNumStates() + 63) >>> 6;
+            int newLength = Math.max(numWords,
+                    Math.min(maxWords, mWords.length * 2));
+            mWords = Arrays.copyOf(mWords, newLength);
+        }
+    }
+
+    private void modified()
+    {
+        mHashCodeValid = false;
+    }
+
+    /**
+     * @param index The dense index of the state
+     * @return True if the state with the given index is in this set
+     */
+    public boolean containsIndex(int index)
+    {
+        int word = index >>> 6;
+        return word < mWords.length && (mWords[word] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param index The dense index of the state to add
+     * @return True if the set did not already contain the state
+     */
+    public boolean addIndex(int index)
+    {
+        if (index < 0 || index >= mUniverse.getNumStates()) {
+            throw new IndexOutOfBoundsException("State index " + index
+                    + " out of range");
+        }
+        int word = index >>> 6;
+        ensureWords(word + 1);
+        long mask = 1L << index;
+        if ((mWords[word] & mask) != 0) {
+            return false;
+        }
+        mWords[word] |= mask;
+        mSize++;
+        modified();
+        return true;
+    }
+
+    /**
+     * @param index The dense index of the state to remove
+     * @return True if the set contained the state
+     */
+    public boolean removeIndex(int index)
+    {
+        if (!containsIndex(index)) {
+            return false;
+        }
+        mWords[index >>> 6] &= ~(1L << index);
+        mSize--;
+        modified();
+        return true;
+    }
+
+    /**
+     * @param from The index to start searching from (inclusive)
+     * @return The lowest index of a state in this set which is at least
+     * "from", or -1 if there is no such state
+     */
+    public int nextIndex(int from)
+    {
+        int word = from >>> 6;
+        if (word >= mWords.length) {
+            return -1;
+        }
+        long bits = mWords[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            word++;
+            if (word >= mWords.length) {
+                return -1;
+            }
+            bits = mWords[word];
+        }
+    }
+
+    /**
+     * Adds all states of another set with the same universe to this set, a
+     * word at a time.
+     *
+     * @param other The set to union with
+     * @return True if this set changed
+     */
+    public boolean union(StateSet other)
+    {
+        checkUniverse(other);
+        ensureWords(other.mWords.length);
+        boolean changed = false;
+        for (int i = 0; i < other.mWords.length; i++) {
+            long old = mWords[i];
+            long word = old | other.mWords[i];
+            if (word != old) {
+                mWords[i] = word;
+                mSize += Long.bitCount(word) - Long.bitCount(old);
+                changed = true;
+            }
+        }
+        if (changed) {
+            modified();
+        }
+        return changed;
+    }
+
+    /**
+     * Removes all states from this set which are not in the other set, a word
+     * at a time.
+     *
+     * @param other The set to intersect with
+     * @return True if this set changed
+     */
+    public boolean intersect(StateSet other)
+    {
+        checkUniverse(other);
+        boolean changed = false;
+        for (int i = 0; i < mWords.length; i++) {
+            long old = mWords[i];
+            long word = i < other.mWords.length ? old & other.mWords[i] : 0;
+            if (word != old) {
+                mWords[i] = word;
+                mSize += Long.bitCount(word) - Long.bitCount(old);
+                changed = true;
+            }
+        }
+        if (changed) {
+            modified();
+        }
+        return changed;
+    }
+
+    /**
+     * @param other The set to test against
+     * @return True if the two sets have at least one state in common
+     */
+    public boolean intersects(StateSet other)
+    {
+        checkUniverse(other);
+        int n = Math.min(mWords.length, other.mWords.length);
+        for (int i = 0; i < n; i++) {
+            if ((mWords[i] & other.mWords[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A new set of all states in the universe which are not in this
+     * set
+     */
+    public StateSet complement()
+    {
+        int numStates = mUniverse.getNumStates();
+        StateSet ret = new StateSet(mUniverse);
+        ret.mWords = new long[(numStates + 63) >>> 6];
+        for (int i = 0; i < ret.mWords.length; i++) {
+            ret.mWords[i] = i < mWords.length ? ~mWords[i] : -1L;
+        }
+        // Clear the bits past the last state
+        if ((numStates & 63) != 0) {
+            ret.mWords[ret.mWords.length - 1] &= (1L << numStates) - 1;
+        }
+        ret.mSize = numStates - mSize;
+        return ret;
+    }
+
+    private void checkUniverse(StateSet other)
+    {
+        if (other.mUniverse != mUniverse) {
+            throw new IllegalArgumentException(
+                "StateSet(s) have different universes");
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return mSize == 0;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        if (!(o instanceof AutomatonState)) {
+            return false;
+        }
+        int index = mUniverse.indexOf((AutomatonState) o);
+        return index >= 0 && containsIndex(index);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the state isn't part of this set's
+     * universe
+     */
+    @Override
+    public boolean add(AutomatonState state)
+    {
+        int index = mUniverse.indexOf(state);
+        if (index < 0) {
+            throw new IllegalArgumentException("State " + state
+                    + " is not part of this set's universe");
+        }
+        return addIndex(index);
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        if (!(o instanceof AutomatonState)) {
+            return false;
+        }
+        int index = mUniverse.indexOf((AutomatonState) o);
+        return index >= 0 && removeIndex(index);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends AutomatonState> c)
+    {
+        if (c instanceof StateSet
+                && ((StateSet) c).mUniverse == mUniverse) {
+            return union((StateSet) c);
+        }
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        if (c instanceof StateSet && ((StateSet) c).mUniverse == mUniverse) {
+            return intersect((StateSet) c);
+        }
+        return super.retainAll(c);
+    }
+
+    @Override
+    public void clear()
+    {
+        if (mSize != 0) {
+            Arrays.fill(mWords, 0);
+            mSize = 0;
+            modified();
+        }
+    }
+
+    @Override
+    public Iterator<AutomatonState> iterator()
+    {
+        return new Iterator<AutomatonState>() {
+            private int mNext = nextIndex(0);
+            private int mLast = -1;
+
+            @Override
+            public boolean hasNext()
+            {
+                return mNext >= 0;
+            }
+
+            @Override
+            public AutomatonState next()
+            {
+                if (mNext < 0) {
+                    throw new NoSuchElementException();
+                }
+                mLast = mNext;
+                mNext = nextIndex(mNext + 1);
+                return mUniverse.getState(mLast);
+            }
+
+            @Override
+            public void remove()
+            {
+                if (mLast < 0) {
+                    throw new IllegalStateException();
+                }
+                removeIndex(mLast);
+                mLast = -1;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof StateSet)
+                || ((StateSet) o).mUniverse != mUniverse) {
+            return super.equals(o);
+        }
+        StateSet other = (StateSet) o;
+        if (mSize != other.mSize) {
+            return false;
+        }
+        if (mHashCodeValid && other.mHashCodeValid
+                && mHashCode != other.mHashCode) {
+            return false;
+        }
+        int n = Math.min(mWords.length, other.mWords.length);
+        for (int i = 0; i < n; i++) {
+            if (mWords[i] != other.mWords[i]) {
+                return false;
+            }
+        }
+        // Equal sizes and equal common words, so any remaining words are zero
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        if (!mHashCodeValid) {
+            int h = 0;
+            for (int i = nextIndex(0); i >= 0; i = nextIndex(i + 1)) {
+                h += mUniverse.getState(i).hashCode();
+            }
+            mHashCode = h;
+            mHashCodeValid = true;
+        }
+        return mHashCode;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Finds every match of a DfaTable in a stream, such as a large log file,
+ * without reading the whole stream into memory. Matches are leftmost-longest
+ * and don't overlap: the search finds the leftmost position at which the DFA
+ * accepts some input, reports the longest input it accepts from there (using
+ * the final flags of the states), and carries on from the end of the match.
+ * An empty match is reported when the start state is final, and the search
+ * then carries on from the next position, like java.util.regex.Matcher.find().
+ *
+ * Input is read into a window which is reused between reads and searches.
+ * Characters from the start of the current match attempt are kept, and the
+ * window doubles in size when the attempt covers more than half of it.
+ * Positions at which no match can start are skipped with a single table
+ * lookup. As with the backtracking of lex scanners, a failed attempt is
+ * retried from the next position.
+ *
+ * An attempt runs for at most maxMatchLength characters, so a match longer
+ * than that is reported as its longest accepted prefix of up to
+ * maxMatchLength characters, and the search carries on from its end. This
+ * bounds the window to the larger of the buffer size and 4 * maxMatchLength
+ * characters, however long the input is, and the time to O(n *
+ * maxMatchLength) for inputs which repeatedly almost match (a*b on a long
+ * run of a's).
+ *
+ * The DfaTable may be shared, but a StreamSearcher holds the buffers of the
+ * current search so must not be shared between threads.
+ */
+public final class StreamSearcher {
+    /**
+     * Default size of the read buffer and initial size of the window, in
+     * characters
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Default limit on the length of a match attempt, in characters
+     */
+    public static final int DEFAULT_MAX_MATCH_LENGTH = 1 << 20;
+
+    /**
+     * Listener notified of each match found by search(). Offsets are in bytes
+     * for a channel and in characters for a Reader, counted from where the
+     * search started.
+     */
+    public interface MatchListener {
+        /**
+         * @param start The offset of the first character of the match
+         * @param end The offset one past the last character of the match,
+         * equal to "start" for an empty match
+         */
+        void onMatch(long start, long end);
+    }
+
+    private final DfaTable mTable;
+    // For each character, whether a non-empty match can start with it
+    private final boolean[] mStarts;
+    private final boolean mStartFinal;
+    private final int mMaxMatchLength;
+    private final ByteBuffer mBytes;
+    private final byte[] mByteArray;
+
+    // The window, mWindow[0] is at offset mBase of the input and the first
+    // mLen characters are valid
+    private char[] mWindow;
+    private long mBase;
+    private int mLen;
+    private boolean mEof;
+    // The source of the current search, exactly one is non-null
+    private ReadableByteChannel mChannel;
+    private Reader mReader;
+
+    /**
+     * @param table The DFA to search with
+     */
+    public StreamSearcher(DfaTable table)
+    {
+        this(table, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param table The DFA to search with
+     * @param bufferSize The size of the read buffer, in bytes or characters
+     */
+    public StreamSearcher(DfaTable table, int bufferSize)
+    {
+        this(table, bufferSize, DEFAULT_MAX_MATCH_LENGTH);
+    }
+
+    /**
+     * @param table The DFA to search with
+     * @param bufferSize The size of the read buffer, in bytes or characters
+     * @param maxMatchLength The most characters a match attempt runs for
+     */
+    public StreamSearcher(DfaTable table, int bufferSize, int maxMatchLength)
+    {
+        if (table == null) {
+            throw new IllegalArgumentException("table cannot be null");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException(
+                    "bufferSize must be at least 1");
+        }
+        if (maxMatchLength < 1) {
+            throw new IllegalArgumentException(
+                    "maxMatchLength must be at least 1");
+        }
+        mTable = table;
+        mMaxMatchLength = maxMatchLength;
+        mStartFinal = table.isFinal(table.getStartState());
+        mStarts = new boolean[Character.MAX_VALUE + 1];
+        for (int c = 0; c < mStarts.length; c++) {
+            mStarts[c] = table.step(table.getStartState(), (char) c) >= 0;
+        }
+        mBytes = ByteBuffer.allocateDirect(bufferSize);
+        mByteArray = new byte[bufferSize];
+        mWindow = new char[bufferSize];
+    }
+
+    /**
+     * Search a channel, each byte is one character (ISO-8859-1), so patterns
+     * match ASCII and Latin-1 text, and the bytes of other encodings only
+     * byte by byte. The channel must be blocking, it is read until it reaches
+     * the end of stream but not closed.
+     *
+     * @param channel The channel to search
+     * @param listener Notified of each match, in order
+     * @return The number of matches found
+     * @throws IOException if reading the channel fails
+     */
+    public long search(ReadableByteChannel channel, MatchListener listener)
+        throws IOException
+    {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel cannot be null");
+        }
+        mChannel = channel;
+        try {
+            return search(listener);
+        } finally {
+            mChannel = null;
+        }
+    }
+
+    /**
+     * Search a stream of characters, it is read until the end of the stream
+     * but not closed.
+     *
+     * @param reader The Reader to search
+     * @param listener Notified of each match, in order
+     * @return The number of matches found
+     * @throws IOException if reading fails
+     */
+    public long search(Reader reader, MatchListener listener)
+        throws IOException
+    {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader cannot be null");
+        }
+        mReader = reader;
+        try {
+            return search(listener);
+        } finally {
+            mReader = null;
+        }
+    }
+
+    private long search(MatchListener listener) throws IOException
+    {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        mBase = 0;
+        mLen = 0;
+        mEof = false;
+
+        long count = 0;
+        long pos = 0;
+        while (true) {
+            if (mStartFinal) {
+                // Every position matches, up to and including the end of the
+                // input
+                if (mEof && pos > mBase + mLen) {
+                    return count;
+                }
+            } else {
+                pos = skipToStart(pos);
+                if (pos < 0) {
+                    return count;
+                }
+            }
+
+            // Run the DFA from "pos" until it dies, the input ends or the
+            // attempt reaches its limit, remembering the last final state
+            // reached
+            int state = mTable.getStartState();
+            long lastEnd = mStartFinal ? pos : -1;
+            long limit = pos + mMaxMatchLength;
+            long i = pos;
+            while (true) {
+                if (i == limit) {
+                    break;
+                }
+                if (i == mBase + mLen && !fill(pos)) {
+                    break;
+                }
+                char[] window = mWindow;
+                int idx = (int) (i - mBase);
+                int len = (int) Math.min(mLen, limit - mBase);
+                while (idx < len) {
+                    state = mTable.step(state, window[idx++]);
+                    if (state < 0) {
+                        break;
+                    }
+                    if (mTable.isFinal(state)) {
+                        lastEnd = mBase + idx;
+                    }
+                }
+                i = mBase + idx;
+                if (state < 0) {
+                    break;
+                }
+            }
+
+            if (lastEnd >= 0) {
+                listener.onMatch(pos, lastEnd);
+                count++;
+                pos = lastEnd > pos ? lastEnd : pos + 1;
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * @return The first position from "pos" onwards whose character can
+     * start a match, or -1 if the input ends first
+     */
+    private long skipToStart(long pos) throws IOException
+    {
+        while (true) {
+            if (pos == mBase + mLen && !fill(pos)) {
+                return -1;
+            }
+            char[] window = mWindow;
+            boolean[] starts = mStarts;
+            int idx = (int) (pos - mBase);
+            int len = mLen;
+            while (idx < len && !starts[window[idx]]) {
+                idx++;
+            }
+            if (idx < len) {
+                return mBase + idx;
+            }
+            pos = mBase + idx;
+        }
+    }
+
+    /**
+     * Read more input into the window, keeping the characters from
+     * "keepFrom" onwards. Makes room by discarding the characters before
+     * "keepFrom", or by growing the window if that would free less than half
+     * of it.
+     *
+     * @return False if the end of the input has been reached
+     */
+    private boolean fill(long keepFrom) throws IOException
+    {
+        if (mEof) {
+            return false;
+        }
+        if (mLen == mWindow.length) {
+            int keep = (int) (keepFrom - mBase);
+            if (keep > 0 && keep >= mWindow.length / 2) {
+                System.arraycopy(mWindow, keep, mWindow, 0, mLen - keep);
+                mLen -= keep;
+                mBase = keepFrom;
+            } else {
+                mWindow = Arrays.copyOf(mWindow, mWindow.length * 2);
+            }
+        }
+
+        int n;
+        do {
+            n = read(mWindow, mLen, mWindow.length - mLen);
+        } while (n == 0);
+        if (n < 0) {
+            mEof = true;
+            return false;
+        }
+        mLen += n;
+        return true;
+    }
+
+    private int read(char[] dst, int off, int len) throws IOException
+    {
+        if (mReader != null) {
+            return mReader.read(dst, off, len);
+        }
+
+        mBytes.clear();
+        mBytes.limit(Math.min(len, mBytes.capacity()));
+        int n = mChannel.read(mBytes);
+        if (n > 0) {
+            mBytes.flip();
+            mBytes.get(mByteArray, 0, n);
+            for (int i = 0; i < n; i++) {
+                dst[off + i] = (char) (mByteArray[i] & 0xFF);
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Headless NFA to DFA conversion. Unlike RemoveNonDeterminismCommand, which
+ * removes the non-determinism of a single state and character at a time,
+ * this performs the whole subset construction in one go and builds a new
+ * Automaton, leaving the original untouched. Only subsets reachable from the
+ * start state are created.
+ *
+ * Each DFA state accepts the patterns of all the states in its subset, see
+ * AutomatonState.getPatternIds().
+ *
+ * determiniseParallel() expands the subsets on a ForkJoinPool, one breadth
+ * first level at a time, and then numbers the new subsets in the order
+ * determinise() would have, so both give the same automaton.
+ */
+public final class SubsetConstruction {
+
+    // Number of subsets expanded by a single task
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * The targets of a subset, by label in character order.
+     */
+    private static final class Expansion {
+        private final int[] mLabels;
+        private final StateSet[] mTargets;
+
+        private Expansion(int[] labels, StateSet[] targets)
+        {
+            mLabels = labels;
+            mTargets = targets;
+        }
+    }
+
+    /**
+     * Expands the subsets in [mStart, mEnd) of the breadth first level which
+     * starts at mLevelStart, the targets are interned in a table shared by
+     * all tasks so equal subsets share one instance.
+     */
+    private static final class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompactAutomaton mCompact;
+        private final ArrayList<StateSet> mSubsets;
+        private final int mLevelStart;
+        private final int mStart;
+        private final int mEnd;
+        private final Expansion[] mExpansions;
+        private final ConcurrentHashMap<StateSet, StateSet> mInterned;
+
+        private ExpandTask(CompactAutomaton compact,
+                ArrayList<StateSet> subsets, int levelStart, int start,
+                int end, Expansion[] expansions,
+                ConcurrentHashMap<StateSet, StateSet> interned)
+        {
+            mCompact = compact;
+            mSubsets = subsets;
+            mLevelStart = levelStart;
+            mStart = start;
+            mEnd = end;
+            mExpansions = expansions;
+            mInterned = interned;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (mEnd - mStart > PARALLEL_THRESHOLD) {
+                int mid = (mStart + mEnd) >>> 1;
+                invokeAll(new ExpandTask(mCompact, mSubsets, mLevelStart,
+                        mStart, mid, mExpansions, mInterned),
+                        new ExpandTask(mCompact, mSubsets, mLevelStart, mid,
+                                mEnd, mExpansions, mInterned));
+                return;
+            }
+
+            int numLabels = mCompact.getNumLabels();
+            StateSet[] targets = new StateSet[numLabels];
+            int[] usedLabels = new int[numLabels];
+            for (int i = mStart; i < mEnd; i++) {
+                Expansion e = expand(mCompact, mSubsets.get(i), targets,
+                        usedLabels);
+                for (int j = 0; j < e.mTargets.length; j++) {
+                    StateSet interned = mInterned.putIfAbsent(e.mTargets[j],
+                            e.mTargets[j]);
+                    if (interned != null) {
+                        e.mTargets[j] = interned;
+                    }
+                }
+                mExpansions[i - mLevelStart] = e;
+            }
+        }
+    }
+
+    private SubsetConstruction()
+    {
+    }
+
+    /**
+     * @param nfa An automaton with no epsilon transitions, and only single
+     * character transitions
+     * @return A new deterministic automaton accepting the same language
+     */
+    public static Automaton determinise(Automaton nfa)
+    {
+        return determinise(nfa, null);
+    }
+
+    /**
+     * @param nfa An automaton with no epsilon transitions, and only single
+     * character transitions
+     * @param subsetMap If not null, filled with a mapping from each state of
+     * the returned automaton to the (unmodifiable) set of states of "nfa" it
+     * represents
+     * @return A new deterministic automaton accepting the same language
+     */
+    public static Automaton determinise(Automaton nfa,
+            Map<AutomatonState, Set<AutomatonState>> subsetMap)
+    {
+        if (nfa == null) {
+            throw new IllegalArgumentException("Automaton cannot be null");
+        }
+
+        CompactAutomaton compact = nfa.freeze();
+        checkInput(compact);
+
+        int numLabels = compact.getNumLabels();
+        Automaton dfa = new Automaton();
+        // Interned subsets, the index of a subset is the index of its DFA
+        // state in dfaStates, and subsets after "done" are yet to be expanded
+        HashMap<StateSet, Integer> subsetIndices = new HashMap<>();
+        ArrayList<StateSet> subsets = new ArrayList<>();
+        ArrayList<AutomatonState> dfaStates = new ArrayList<>();
+
+        StateSet startSet = new StateSet(compact);
+        startSet.addIndex(compact.getStartIndex());
+        subsetIndices.put(startSet, 0);
+        subsets.add(startSet);
+        dfaStates.add(dfa.getStartState());
+        setFinal(compact, startSet, dfa.getStartState());
+
+        // Scratch space for expand()
+        StateSet[] targets = new StateSet[numLabels];
+        int[] usedLabels = new int[numLabels];
+        for (int done = 0; done < subsets.size(); done++) {
+            AutomatonState from = dfaStates.get(done);
+            Expansion e = expand(compact, subsets.get(done), targets,
+                    usedLabels);
+            for (int i = 0; i < e.mLabels.length; i++) {
+                int label = e.mLabels[i];
+                StateSet target = e.mTargets[i];
+
+                Integer toIndex = subsetIndices.get(target);
+                if (toIndex == null) {
+                    toIndex = subsets.size();
+                    AutomatonState to = dfa.createNewState();
+                    setFinal(compact, target, to);
+                    dfa.addStateWithTransitions(to,
+                            new LinkedList<AutomatonTransition>());
+                    subsetIndices.put(target, toIndex);
+                    subsets.add(target);
+                    dfaStates.add(to);
+                }
+                dfa.addTransition(dfa.createNewTransition(from,
+                        dfaStates.get(toIndex), compact.getLabel(label)));
+            }
+        }
+
+        fillSubsetMap(subsetMap, subsets, dfaStates);
+        return dfa;
+    }
+
+    /**
+     * @param nfa An automaton with no epsilon transitions, and only single
+     * character transitions
+     * @param pool The pool to expand the subsets on
+     * @return A new deterministic automaton accepting the same language, the
+     * same as determinise() returns
+     */
+    public static Automaton determiniseParallel(Automaton nfa,
+            ForkJoinPool pool)
+    {
+        return determiniseParallel(nfa, null, pool);
+    }
+
+    /**
+     * @param nfa An automaton with no epsilon transitions, and only single
+     * character transitions
+     * @param subsetMap If not null, filled with a mapping from each state of
+     * the returned automaton to the (unmodifiable) set of states of "nfa" it
+     * represents
+     * @param pool The pool to expand the subsets on
+     * @return A new deterministic automaton accepting the same language, the
+     * same as determinise() returns
+     */
+    public static Automaton determiniseParallel(Automaton nfa,
+            Map<AutomatonState, Set<AutomatonState>> subsetMap,
+            ForkJoinPool pool)
+    {
+        if (nfa == null) {
+            throw new IllegalArgumentException("Automaton cannot be null");
+        } else if (pool == null) {
+            throw new IllegalArgumentException("ForkJoinPool cannot be null");
+        }
+
+        CompactAutomaton compact = nfa.freeze();
+        checkInput(compact);
+
+        Automaton dfa = new Automaton();
+        // Subsets are interned by the tasks, so each distinct subset has a
+        // single instance and can be numbered by identity. The index of a
+        // subset is the index of its DFA state in dfaStates.
+        ConcurrentHashMap<StateSet, StateSet> interned =
+                new ConcurrentHashMap<>();
+        IdentityHashMap<StateSet, Integer> subsetIndices =
+                new IdentityHashMap<>();
+        ArrayList<StateSet> subsets = new ArrayList<>();
+        ArrayList<AutomatonState> dfaStates = new ArrayList<>();
+
+        StateSet startSet = new StateSet(compact);
+        startSet.addIndex(compact.getStartIndex());
+        interned.put(startSet, startSet);
+        subsetIndices.put(startSet, 0);
+        subsets.add(startSet);
+        dfaStates.add(dfa.getStartState());
+        setFinal(compact, startSet, dfa.getStartState());
+
+        int levelStart = 0;
+        while (levelStart < subsets.size()) {
+            int levelEnd = subsets.size();
+            Expansion[] expansions = new Expansion[levelEnd - levelStart];
+            pool.invoke(new ExpandTask(compact, subsets, levelStart,
+                    levelStart, levelEnd, expansions, interned));
+
+            // Number the new subsets in the order determinise() finds them
+            for (int done = levelStart; done < levelEnd; done++) {
+                AutomatonState from = dfaStates.get(done);
+                Expansion e = expansions[done - levelStart];
+                for (int i = 0; i < e.mLabels.length; i++) {
+                    StateSet target = e.mTargets[i];
+                    Integer toIndex = subsetIndices.get(target);
+                    if (toIndex == null) {
+                        toIndex = subsets.size();
+                        AutomatonState to = dfa.createNewState();
+                        setFinal(compact, target, to);
+                        dfa.addStateWithTransitions(to,
+                                new LinkedList<AutomatonTransition>());
+                        subsetIndices.put(target, toIndex);
+                        subsets.add(target);
+                        dfaStates.add(to);
+                    }
+                    dfa.addTransition(dfa.createNewTransition(from,
+                            dfaStates.get(toIndex),
+                            compact.getLabel(e.mLabels[i])));
+                }
+            }
+            levelStart = levelEnd;
+        }
+
+        fillSubsetMap(subsetMap, subsets, dfaStates);
+        return dfa;
+    }
+
+    /**
+     * Compute the targets of a subset on each label.
+     *
+     * @param targets Scratch space with one null entry per label, left null
+     * @param usedLabels Scratch space with one entry per label
+     */
+    private static Expansion expand(CompactAutomaton compact, StateSet subset,
+            StateSet[] targets, int[] usedLabels)
+    {
+        int numUsed = 0;
+        for (int s = subset.nextIndex(0); s >= 0; s = subset.nextIndex(s + 1)) {
+            int end = compact.getTransitionsEnd(s);
+            for (int t = compact.getTransitionsStart(s); t < end; t++) {
+                int label = compact.getTransitionLabel(t);
+                if (targets[label] == null) {
+                    targets[label] = new StateSet(compact);
+                    usedLabels[numUsed++] = label;
+                }
+                targets[label].addIndex(compact.getTransitionTarget(t));
+            }
+        }
+        // Labels are indexed in character order, so the out-going
+        // transitions of each DFA state are created in character order
+        Arrays.sort(usedLabels, 0, numUsed);
+
+        int[] labels = Arrays.copyOf(usedLabels, numUsed);
+        StateSet[] subsetTargets = new StateSet[numUsed];
+        for (int i = 0; i < numUsed; i++) {
+            subsetTargets[i] = targets[labels[i]];
+            targets[labels[i]] = null;
+        }
+        return new Expansion(labels, subsetTargets);
+    }
+
+    private static void fillSubsetMap(
+            Map<AutomatonState, Set<AutomatonState>> subsetMap,
+            ArrayList<StateSet> subsets, ArrayList<AutomatonState> dfaStates)
+    {
+        if (subsetMap != null) {
+            for (int i = 0; i < subsets.size(); i++) {
+                subsetMap.put(dfaStates.get(i),
+                        Collections.unmodifiableSet(subsets.get(i)));
+            }
+        }
+    }
+
+    /**
+     * @throws RuntimeException if the automaton has any epsilon transitions
+     * or transitions which are not single characters
+     */
+    private static void checkInput(CompactAutomaton compact)
+    {
+        if (compact.getEpsilonLabel() >= 0) {
+            throw new RuntimeException(
+                "Cannot determinise an automaton with epsilon transitions");
+        }
+        for (int label = 0; label < compact.getNumLabels(); label++) {
+            if (!compact.isSingleCharLabel(label)) {
+                throw new RuntimeException("Cannot determinise an automaton "
+                    + "with transitions which are not single characters, "
+                    + "break them down first");
+            }
+        }
+    }
+
+    /**
+     * Make "dfaState" final if "subset" contains a final state, accepting the
+     * patterns of all the states in "subset".
+     */
+    private static void setFinal(CompactAutomaton compact, StateSet subset,
+            AutomatonState dfaState)
+    {
+        boolean isFinal = false;
+        int[] ids = null;
+        for (int s = subset.nextIndex(0); s >= 0; s = subset.nextIndex(s + 1)) {
+            if (!compact.isFinal(s)) {
+                continue;
+            }
+            isFinal = true;
+            int[] stateIds = compact.getPatternIds(s);
+            if (stateIds.length == 0) {
+                continue;
+            } else if (ids == null) {
+                ids = stateIds;
+            } else {
+                int[] merged = Arrays.copyOf(ids, ids.length + stateIds.length);
+                System.arraycopy(stateIds, 0, merged, ids.length,
+                        stateIds.length);
+                ids = merged;
+            }
+        }
+        dfaState.setFinal(isFinal);
+        if (ids != null) {
+            dfaState.setPatternIds(ids);
+        }
+    }
+}
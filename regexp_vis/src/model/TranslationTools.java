@@ -23,11 +23,13 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 
 public final class TranslationTools {
@@ -211,6 +213,42 @@ public final class TranslationTools {
         return visited;
     }
 
+    /**
+     * calcReachableStates() for a CompactAutomaton snapshot.
+     *
+     * @param automaton The snapshot the state belongs to
+     * @param state The index of the state which we want to start the search
+     * from
+     * @param labelPred A predicate which tests if we should follow
+     * transitions with a specific label index or not
+     * @return The set of states which are reachable through the transitions
+     * subject to the given predicate
+     */
+    public static StateSet calcReachableStates(CompactAutomaton automaton,
+            int state, IntPredicate labelPred)
+    {
+        StateSet visited = new StateSet(automaton);
+        int[] stack = new int[automaton.getNumStates()];
+        int top = 0;
+        visited.addIndex(state);
+        stack[top++] = state;
+
+        while (top > 0) {
+            int s = stack[--top];
+            int end = automaton.getTransitionsEnd(s);
+            for (int t = automaton.getTransitionsStart(s); t < end; t++) {
+                int to = automaton.getTransitionTarget(t);
+                if (!visited.containsIndex(to)
+                        && labelPred.test(automaton.getTransitionLabel(t))) {
+                    visited.addIndex(to);
+                    stack[top++] = to;
+                }
+            }
+        }
+
+        return visited;
+    }
+
     /**
      * @param automaton The automaton in question
      * @return The set of unreachable states for this automaton, the set is
@@ -233,6 +271,18 @@ public final class TranslationTools {
         return allStates;
     }
 
+    /**
+     * @param automaton The snapshot in question
+     * @return The set of unreachable states for this snapshot, the set is
+     * empty if all states are reachable
+     */
+    public static StateSet automatonCalcUnreachableStates(
+            CompactAutomaton automaton)
+    {
+        return calcReachableStates(automaton, automaton.getStartIndex(),
+                label -> true).complement();
+    }
+
     /**
      * @param automaton The automaton the state belongs to
      * @param state The state which we want to find the epsilon closure of
@@ -246,6 +296,183 @@ public final class TranslationTools {
                 t -> t.getData().getChar() == BasicRegexp.EPSILON_CHAR);
     }
 
+    /**
+     * @param automaton The snapshot the state belongs to
+     * @param state The index of the state which we want to find the epsilon
+     * closure of
+     * @return The set of states which are in this state's epsilon closure
+     * (including the state itself)
+     */
+    public static StateSet calcEpsilonReachableStates(
+            CompactAutomaton automaton, int state)
+    {
+        int epsilonLabel = automaton.getEpsilonLabel();
+        return calcReachableStates(automaton, state,
+                label -> label == epsilonLabel);
+    }
+
+    /**
+     * Calculates the epsilon closure of every state of a snapshot at once.
+     * The epsilon transitions are condensed into strongly connected components
+     * (see calcEpsilonComponents()), whose closures are then built from the
+     * closures of their successors in reverse topological order. O(V + E) plus
+     * the cost of the unions, rather than a separate search from every state.
+     *
+     * Two states have equal epsilon closures if and only if they are in the
+     * same component, and all states of a component share the same StateSet
+     * instance, so the closures must not be modified.
+     *
+     * @param automaton The snapshot in question
+     * @return The epsilon closure for each state, indexed by state index
+     */
+    public static StateSet[] calcAllEpsilonClosures(CompactAutomaton automaton)
+    {
+        int numStates = automaton.getNumStates();
+        int epsilonLabel = automaton.getEpsilonLabel();
+        int[] componentOf = calcEpsilonComponents(automaton);
+        int numComponents = 0;
+        for (int s = 0; s < numStates; s++) {
+            numComponents = Math.max(numComponents, componentOf[s] + 1);
+        }
+
+        // Group the states by component, counting sort
+        int[] componentStarts = new int[numComponents + 1];
+        for (int s = 0; s < numStates; s++) {
+            componentStarts[componentOf[s] + 1]++;
+        }
+        for (int c = 0; c < numComponents; c++) {
+            componentStarts[c + 1] += componentStarts[c];
+        }
+        int[] members = new int[numStates];
+        int[] fill = Arrays.copyOf(componentStarts, numComponents);
+        for (int s = 0; s < numStates; s++) {
+            members[fill[componentOf[s]]++] = s;
+        }
+
+        // Every component reachable from a component has a lower number, so
+        // has its closure built already
+        StateSet[] closures = new StateSet[numStates];
+        for (int c = 0; c < numComponents; c++) {
+            StateSet closure = new StateSet(automaton);
+            for (int i = componentStarts[c]; i < componentStarts[c + 1]; i++) {
+                closure.addIndex(members[i]);
+                closures[members[i]] = closure;
+            }
+            for (int i = componentStarts[c]; i < componentStarts[c + 1]; i++) {
+                int member = members[i];
+                int end = automaton.getTransitionsEnd(member);
+                for (int t = automaton.getTransitionsStart(member); t < end;
+                        t++) {
+                    int to = automaton.getTransitionTarget(t);
+                    if (automaton.getTransitionLabel(t) == epsilonLabel
+                            && componentOf[to] != c) {
+                        closure.union(closures[to]);
+                    }
+                }
+            }
+        }
+
+        return closures;
+    }
+
+    /**
+     * Condenses the epsilon transitions of a snapshot into strongly connected
+     * components (Tarjan's algorithm, iteratively so deep automata can't
+     * overflow the stack). Two states have equal epsilon closures if and only
+     * if they are in the same component. Components are numbered from 0 in
+     * reverse topological order, every component reachable from a component
+     * has a lower number.
+     *
+     * @param automaton The snapshot in question
+     * @return The component of each state, indexed by state index
+     */
+    static int[] calcEpsilonComponents(CompactAutomaton automaton)
+    {
+        int numStates = automaton.getNumStates();
+        int epsilonLabel = automaton.getEpsilonLabel();
+        int[] componentOf = new int[numStates];
+        int numComponents = 0;
+
+        // Tarjan's algorithm: order of discovery, lowest reachable order of
+        // discovery on the component stack, and the component stack itself
+        int[] order = new int[numStates];
+        int[] low = new int[numStates];
+        boolean[] onStack = new boolean[numStates];
+        int[] sccStack = new int[numStates];
+        int sccTop = 0;
+        // Explicit call stack of states and the next transition to follow
+        int[] callStack = new int[numStates];
+        int[] callTrans = new int[numStates];
+        int callTop = 0;
+        int nextOrder = 1; // 0 means not yet discovered
+
+        for (int root = 0; root < numStates; root++) {
+            if (order[root] != 0) {
+                continue;
+            }
+
+            order[root] = low[root] = nextOrder++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+            callStack[callTop] = root;
+            callTrans[callTop] = automaton.getTransitionsStart(root);
+            callTop++;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                int end = automaton.getTransitionsEnd(v);
+                int t = callTrans[callTop - 1];
+                boolean descended = false;
+                while (t < end && !descended) {
+                    int to = automaton.getTransitionTarget(t);
+                    boolean isEpsilon =
+                            automaton.getTransitionLabel(t) == epsilonLabel;
+                    t++;
+                    if (!isEpsilon) {
+                        continue;
+                    } else if (order[to] == 0) {
+                        // Descend into "to", resume from "t" afterwards
+                        callTrans[callTop - 1] = t;
+                        order[to] = low[to] = nextOrder++;
+                        sccStack[sccTop++] = to;
+                        onStack[to] = true;
+                        callStack[callTop] = to;
+                        callTrans[callTop] = automaton.getTransitionsStart(to);
+                        callTop++;
+                        descended = true;
+                    } else if (onStack[to]) {
+                        low[v] = Math.min(low[v], order[to]);
+                    }
+                }
+                if (descended) {
+                    continue;
+                }
+
+                // All transitions of "v" followed
+                callTop--;
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] != order[v]) {
+                    continue;
+                }
+
+                // "v" is the root of a component, pop it. Every component
+                // reachable from it has already been popped.
+                int w;
+                do {
+                    w = sccStack[--sccTop];
+                    onStack[w] = false;
+                    componentOf[w] = numComponents;
+                } while (w != v);
+                numComponents++;
+            }
+        }
+
+        return componentOf;
+    }
+
     /**
      * Returns the list of character transitions which are non-deterministic,
      * sorted.
@@ -275,6 +502,36 @@ public final class TranslationTools {
         return list;
     }
 
+    /**
+     * calcNonDeterministicTrans() for a CompactAutomaton snapshot.
+     *
+     * @param automaton The snapshot the state belongs to
+     * @param state The index of the state to check for non-deterministic
+     * transitions
+     * @return A list of characters for which transitions are non-deterministic,
+     * if there is no non-determinism this list is empty.
+     */
+    public static List<Character> calcNonDeterministicTrans(
+            CompactAutomaton automaton, int state)
+    {
+        // Transitions are sorted by label, single characters in character
+        // order, so duplicates are adjacent and found in sorted order
+        ArrayList<Character> list = new ArrayList<>();
+        int start = automaton.getTransitionsStart(state);
+        int end = automaton.getTransitionsEnd(state);
+        int prevLabel = -1;
+        for (int t = start; t < end; t++) {
+            int label = automaton.getTransitionLabel(t);
+            char c = automaton.getLabelChar(label);
+            if (label == prevLabel
+                    && (list.isEmpty() || list.get(list.size() - 1) != c)) {
+                list.add(c);
+            }
+            prevLabel = label;
+        }
+        return list;
+    }
+
     /**
      * @param automaton The automaton the state belongs to
      * @param state The state to check for non-deterministic transitions
@@ -297,6 +554,33 @@ public final class TranslationTools {
         return false;
     }
 
+    /**
+     * @param automaton The snapshot the state belongs to
+     * @param state The index of the state to check for non-deterministic
+     * transitions
+     * @return True if the state has out-going non-deterministic transition(s),
+     * false otherwise
+     */
+    public static boolean stateHasNonDeterminism(CompactAutomaton automaton,
+            int state)
+    {
+        int start = automaton.getTransitionsStart(state);
+        int end = automaton.getTransitionsEnd(state);
+        int prevLabel = -1;
+        for (int t = start; t < end; t++) {
+            int label = automaton.getTransitionLabel(t);
+            // Called for the side effect of rejecting non single character
+            // labels, like stateHasNonDeterminism(Automaton, AutomatonState)
+            automaton.getLabelChar(label);
+            if (label == prevLabel) {
+                return true;
+            }
+            prevLabel = label;
+        }
+
+        return false;
+    }
+
     /**
      * @param automaton The automaton in question
      * @return True if the automaton has any state which has out-going
@@ -315,6 +599,23 @@ public final class TranslationTools {
         return false;
     }
 
+    /**
+     * @param automaton The snapshot in question
+     * @return True if the snapshot has any state which has out-going
+     * non-deterministic transition(s), false otherwise
+     */
+    public static boolean automatonHasNonDeterminism(
+            CompactAutomaton automaton)
+    {
+        for (int s = 0; s < automaton.getNumStates(); s++) {
+            if (stateHasNonDeterminism(automaton, s)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * @param automaton The automaton in question
      * @param from The state we are checking transitions from
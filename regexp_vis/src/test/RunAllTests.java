@@ -26,13 +26,29 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 import test.controller.ActivityTest;
+import test.model.AlphabetPartitionTest;
 import test.model.AutomatonStateTest;
 import test.model.AutomatonTest;
 import test.model.AutomatonTransitionTest;
 import test.model.BasicRegexpTest;
+import test.model.BasicRegexpWriterTest;
+import test.model.BrzozowskiConstructionTest;
 import test.model.CommandHistoryTest;
+import test.model.CompactAutomatonTest;
+import test.model.DfaMinimisationTest;
+import test.model.DfaTableTest;
+import test.model.LanguageEquivalenceTest;
+import test.model.LazyDfaMatcherTest;
+import test.model.NfaMatcherTest;
+import test.model.PatternSetMatcherTest;
+import test.model.RegexpCompilerTest;
+import test.model.RegexpInternTableTest;
 import test.model.RemoveEpsilonTransitionsContextTest;
 import test.model.RemoveNonDeterminismContextTest;
+import test.model.StateEliminationTest;
+import test.model.StateSetTest;
+import test.model.StreamSearcherTest;
+import test.model.SubsetConstructionTest;
 import test.model.TranslationToolsTest;
 import test.view.GraphEdgeTest;
 import test.view.GraphNodeTest;
@@ -44,13 +60,29 @@ import test.view.GraphUtilsTest;
         ActivityTest.class,
 
         /* test.model */
+        AlphabetPartitionTest.class,
         AutomatonStateTest.class,
         AutomatonTest.class,
         AutomatonTransitionTest.class,
         BasicRegexpTest.class,
+        BasicRegexpWriterTest.class,
+        BrzozowskiConstructionTest.class,
         CommandHistoryTest.class,
+        CompactAutomatonTest.class,
+        DfaMinimisationTest.class,
+        DfaTableTest.class,
+        LanguageEquivalenceTest.class,
+        LazyDfaMatcherTest.class,
+        NfaMatcherTest.class,
+        PatternSetMatcherTest.class,
+        RegexpCompilerTest.class,
+        RegexpInternTableTest.class,
         RemoveEpsilonTransitionsContextTest.class,
         RemoveNonDeterminismContextTest.class,
+        StateEliminationTest.class,
+        StateSetTest.class,
+        StreamSearcherTest.class,
+        SubsetConstructionTest.class,
         TranslationToolsTest.class,
 
         /* test.view */
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Static helper methods shared by the micro-benchmarks in this package. The
+ * benchmarks are plain programs rather than JUnit tests, run them with e.g.
+ * <code>java -cp bin test.bench.TransitionLookupBenchmark</code> after
+ * <code>ant test</code>.
+ */
+final class BenchmarkUtils {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Time an operation, after first running it enough times for the JIT to
+     * settle.
+     *
+     * @param ops The number of operations performed by a single call of
+     * "body", used to report the cost of each operation
+     * @param body The operation to time, passed the current round number
+     * @return The best observed time per operation, in nanoseconds
+     */
+    static double timePerOp(long ops, IntConsumer body) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            body.accept(i);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            body.accept(i);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / ops;
+    }
+
+    /**
+     * Print a single row of results.
+     *
+     * @param name The name of the measurement
+     * @param size The size of the input the measurement was taken for
+     * @param nsPerOp The measured time per operation, in nanoseconds
+     */
+    static void report(String name, int size, double nsPerOp) {
+        System.out.printf("%-44s n=%-8d %12.1f ns/op%n", name, size, nsPerOp);
+    }
+
+    /**
+     * Stops the JIT from eliminating work whose result is otherwise unused.
+     */
+    static volatile Object sSink;
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Random;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.CompactAutomaton;
+import model.TranslationTools;
+
+/**
+ * Compares reachability and epsilon closure computations on an Automaton with
+ * the same computations on its CompactAutomaton snapshot, and the memory
+ * retained by each.
+ */
+public class CompactAutomatonBenchmark {
+
+    private static final int SAMPLES = 200;
+
+    /**
+     * Build a random NFA with the given number of states, each with on
+     * average two character transitions and one epsilon transition.
+     */
+    static Automaton buildNfa(int numStates, Random rand) {
+        Automaton automaton = new Automaton();
+        ArrayList<AutomatonState> states = new ArrayList<>();
+        states.add(automaton.getStartState());
+        for (int i = 1; i < numStates; i++) {
+            AutomatonState s = automaton.createNewState();
+            s.setFinal(rand.nextInt(20) == 0);
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            states.add(s);
+        }
+        for (int i = 0; i < numStates * 3; i++) {
+            AutomatonState from = states.get(rand.nextInt(numStates));
+            AutomatonState to = states.get(rand.nextInt(numStates));
+            BasicRegexp re = rand.nextInt(3) == 0
+                    ? BasicRegexp.EPSILON_EXPRESSION
+                    : new BasicRegexp((char) ('a' + rand.nextInt(26)));
+            automaton.addTransition(automaton.createNewTransition(from, to,
+                    re));
+        }
+        return automaton;
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        for (int numStates : new int[] { 1000, 10000, 100000 }) {
+            long before = usedMemory();
+            Automaton automaton = buildNfa(numStates, new Random(1));
+            long afterAutomaton = usedMemory();
+            CompactAutomaton compact = automaton.freeze();
+            long afterCompact = usedMemory();
+            System.out.printf("%-44s n=%-8d %8d KiB vs %8d KiB%n",
+                    "retained memory (Automaton vs compact)", numStates,
+                    (afterAutomaton - before) / 1024,
+                    (afterCompact - afterAutomaton) / 1024);
+
+            AutomatonState[] sample = new AutomatonState[SAMPLES];
+            int[] sampleIdx = new int[SAMPLES];
+            Random rand = new Random(2);
+            for (int i = 0; i < SAMPLES; i++) {
+                sampleIdx[i] = rand.nextInt(numStates);
+                sample[i] = compact.getState(sampleIdx[i]);
+            }
+
+            BenchmarkUtils.report("calcEpsilonReachableStates (Automaton)",
+                    numStates, BenchmarkUtils.timePerOp(SAMPLES, round -> {
+                        for (AutomatonState s : sample) {
+                            BenchmarkUtils.sSink = TranslationTools
+                                    .calcEpsilonReachableStates(automaton, s);
+                        }
+                    }));
+            BenchmarkUtils.report("calcEpsilonReachableStates (compact)",
+                    numStates, BenchmarkUtils.timePerOp(SAMPLES, round -> {
+                        for (int s : sampleIdx) {
+                            BenchmarkUtils.sSink = TranslationTools
+                                    .calcEpsilonReachableStates(compact, s);
+                        }
+                    }));
+            BenchmarkUtils.report("calcReachableStates (Automaton)",
+                    numStates, BenchmarkUtils.timePerOp(1, round ->
+                        BenchmarkUtils.sSink = TranslationTools
+                            .automatonCalcUnreachableStates(automaton)));
+            BenchmarkUtils.report("calcReachableStates (compact)",
+                    numStates, BenchmarkUtils.timePerOp(1, round ->
+                        BenchmarkUtils.sSink = TranslationTools
+                            .automatonCalcUnreachableStates(compact)));
+            BenchmarkUtils.sSink = automaton;
+        }
+    }
+}
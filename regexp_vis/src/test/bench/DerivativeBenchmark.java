@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import model.BasicRegexp;
+import model.BrzozowskiConstruction;
+import model.DerivativeMatcher;
+import model.InvalidRegexpException;
+import model.NfaMatcher;
+import model.RegexpCompiler;
+import model.SubsetConstruction;
+
+/**
+ * Start-up cost of matching with short-lived patterns: creating a matcher
+ * and matching a few short words, with DerivativeMatcher and with an
+ * NfaMatcher over a compiled NFA. Also compares building a DFA with
+ * BrzozowskiConstruction against the Glushkov NFA plus SubsetConstruction.
+ */
+public class DerivativeBenchmark {
+
+    private static final String[] PATTERNS = {
+        "(a|b)*abb",
+        "(ab|ba)*(a?b+|c)",
+        "((a|b)(c|d))*e(f|g)+h?",
+        "(a|b)*a(a|b)(a|b)(a|b)(a|b)",
+    };
+
+    private static final String[] WORDS = {
+        "abababb", "babaabbabb", "abcdabcde", "aaaabbbbaaaa",
+    };
+
+    public static void main(String[] args) throws InvalidRegexpException {
+        for (int p = 0; p < PATTERNS.length; p++) {
+            BasicRegexp re = BasicRegexp.parseRegexp(PATTERNS[p]);
+            BenchmarkUtils.report("DerivativeMatcher create + 4 matches", p,
+                    BenchmarkUtils.timePerOp(1000, round -> {
+                        int count = 0;
+                        for (int i = 0; i < 1000; i++) {
+                            DerivativeMatcher m = new DerivativeMatcher(re);
+                            for (String w : WORDS) {
+                                count += m.matches(w) ? 1 : 0;
+                            }
+                        }
+                        BenchmarkUtils.sSink = count;
+                    }));
+            BenchmarkUtils.report("Thompson + NfaMatcher + 4 matches", p,
+                    BenchmarkUtils.timePerOp(1000, round -> {
+                        int count = 0;
+                        for (int i = 0; i < 1000; i++) {
+                            NfaMatcher m = new NfaMatcher(
+                                    RegexpCompiler.compileThompson(re));
+                            for (String w : WORDS) {
+                                count += m.matches(w) ? 1 : 0;
+                            }
+                        }
+                        BenchmarkUtils.sSink = count;
+                    }));
+            BenchmarkUtils.report("BrzozowskiConstruction.buildDfa()", p,
+                    BenchmarkUtils.timePerOp(100, round -> {
+                        for (int i = 0; i < 100; i++) {
+                            BenchmarkUtils.sSink =
+                                    BrzozowskiConstruction.buildDfa(re);
+                        }
+                    }));
+            BenchmarkUtils.report("Glushkov + SubsetConstruction", p,
+                    BenchmarkUtils.timePerOp(100, round -> {
+                        for (int i = 0; i < 100; i++) {
+                            BenchmarkUtils.sSink = SubsetConstruction
+                                    .determinise(RegexpCompiler
+                                            .compileGlushkov(re));
+                        }
+                    }));
+        }
+    }
+}
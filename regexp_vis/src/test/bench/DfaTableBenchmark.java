@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import model.Automaton;
+import model.BasicRegexp;
+import model.DfaMinimisation;
+import model.DfaTable;
+import model.InvalidRegexpException;
+import model.LazyDfaMatcher;
+import model.RegexpCompiler;
+import model.SubsetConstruction;
+
+/**
+ * Flattened DFA tables: building a DfaTable from the minimal DFA of
+ * (a|b)*a(a|b){n}, which has 2^(n+1) states, compared with mapping a saved
+ * table back in, and matching with a built table, a mapped table and a
+ * LazyDfaMatcher over the NFA.
+ */
+public class DfaTableBenchmark {
+
+    private static final int INPUT_LENGTH = 1 << 16;
+
+    public static void main(String[] args)
+            throws InvalidRegexpException, IOException {
+        for (int n = 8; n <= 16; n += 4) {
+            StringBuilder pattern = new StringBuilder("(a|b)*a");
+            for (int i = 0; i < n; i++) {
+                pattern.append("(a|b)");
+            }
+            Automaton nfa = RegexpCompiler.compileGlushkov(
+                    BasicRegexp.parseRegexp(pattern.toString()));
+            Automaton dfa = DfaMinimisation.minimise(
+                    SubsetConstruction.determinise(nfa));
+
+            long start = System.nanoTime();
+            DfaTable table = new DfaTable(dfa);
+            double buildMs = (System.nanoTime() - start) / 1e6;
+            File file = File.createTempFile("dfa", ".rvd");
+            file.deleteOnExit();
+            table.save(file);
+            System.out.printf("%-44s n=%-8d %12.1f ms, %d states, %d bytes%n",
+                    "Building DfaTable", n, buildMs, table.getNumStates(),
+                    file.length());
+            // Best of several loads, the first includes class loading
+            double loadMs = Double.MAX_VALUE;
+            DfaTable mapped = null;
+            for (int i = 0; i < 10; i++) {
+                start = System.nanoTime();
+                mapped = DfaTable.load(file);
+                loadMs = Math.min(loadMs, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%-44s n=%-8d %12.3f ms%n",
+                    "Loading mapped DfaTable", n, loadMs);
+
+            Random rand = new Random(n);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < INPUT_LENGTH; i++) {
+                sb.append(rand.nextBoolean() ? 'a' : 'b');
+            }
+            String input = sb.toString();
+            DfaTable mappedTable = mapped;
+            LazyDfaMatcher lazy = new LazyDfaMatcher(nfa);
+
+            BenchmarkUtils.report("DfaTable, built, per char", n,
+                    BenchmarkUtils.timePerOp(INPUT_LENGTH, round -> {
+                        BenchmarkUtils.sSink = table.matches(input);
+                    }));
+            BenchmarkUtils.report("DfaTable, mapped, per char", n,
+                    BenchmarkUtils.timePerOp(INPUT_LENGTH, round -> {
+                        BenchmarkUtils.sSink = mappedTable.matches(input);
+                    }));
+            BenchmarkUtils.report("LazyDfaMatcher, per char", n,
+                    BenchmarkUtils.timePerOp(INPUT_LENGTH, round -> {
+                        BenchmarkUtils.sSink = lazy.matches(input);
+                    }));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Random;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.CompactAutomaton;
+import model.RemoveEpsilonTransitionsContext;
+import model.TranslationTools;
+
+/**
+ * Compares computing every epsilon closure with a search from each state
+ * against the single pass TranslationTools.calcAllEpsilonClosures(), on
+ * NFAs shaped like the output of a Thompson construction: a long chain with
+ * short epsilon skips and loops.
+ */
+public class EpsilonClosureBenchmark {
+
+    static Automaton buildThompsonLike(int numStates, Random rand) {
+        Automaton automaton = new Automaton();
+        ArrayList<AutomatonState> states = new ArrayList<>();
+        states.add(automaton.getStartState());
+        for (int i = 1; i < numStates; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            states.add(s);
+            // Chain, either a character or epsilon
+            BasicRegexp re = rand.nextInt(2) == 0
+                    ? BasicRegexp.EPSILON_EXPRESSION
+                    : new BasicRegexp((char) ('a' + rand.nextInt(4)));
+            automaton.addTransition(automaton.createNewTransition(
+                    states.get(i - 1), s, re));
+            // Occasional epsilon loop back (STAR/PLUS) or skip (OPTION)
+            if (i > 8 && rand.nextInt(4) == 0) {
+                int other = i - 1 - rand.nextInt(8);
+                automaton.addTransition(automaton.createNewTransition(s,
+                        states.get(other), BasicRegexp.EPSILON_EXPRESSION));
+                automaton.addTransition(automaton.createNewTransition(
+                        states.get(other), s, BasicRegexp.EPSILON_EXPRESSION));
+            }
+        }
+        states.get(numStates - 1).setFinal(true);
+        return automaton;
+    }
+
+    public static void main(String[] args) {
+        for (int numStates : new int[] { 1000, 4000, 16000 }) {
+            Automaton automaton = buildThompsonLike(numStates, new Random(1));
+            CompactAutomaton compact = automaton.freeze();
+
+            BenchmarkUtils.report("closure per state (search each state)",
+                    numStates, BenchmarkUtils.timePerOp(numStates, round -> {
+                        for (int i = 0; i < numStates; i++) {
+                            BenchmarkUtils.sSink = TranslationTools
+                                    .calcEpsilonReachableStates(compact, i);
+                        }
+                    }));
+            BenchmarkUtils.report("closure per state (calcAllEpsilonClosures)",
+                    numStates, BenchmarkUtils.timePerOp(numStates, round ->
+                        BenchmarkUtils.sSink = TranslationTools
+                            .calcAllEpsilonClosures(compact)));
+            BenchmarkUtils.report("RemoveEpsilonTransitionsContext()",
+                    numStates, BenchmarkUtils.timePerOp(1, round ->
+                        BenchmarkUtils.sSink =
+                            new RemoveEpsilonTransitionsContext(automaton)));
+        }
+    }
+}
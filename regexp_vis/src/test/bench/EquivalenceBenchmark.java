@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import model.Automaton;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.LanguageEquivalence;
+import model.RegexpCompiler;
+import model.StateElimination;
+import model.SubsetConstruction;
+
+/**
+ * LanguageEquivalence on regexps whose DFAs grow exponentially, compared with
+ * only determinising both of them up front with SubsetConstruction, which a
+ * check on the product of the full DFAs would need before it could start.
+ * Then checks state elimination results against the regexp they came from.
+ */
+public class EquivalenceBenchmark {
+
+    /**
+     * @return (a|b)*a(a|b){n}, whose DFA has 2^(n+1) states
+     */
+    private static BasicRegexp nthFromLast(char c, int n)
+            throws InvalidRegexpException {
+        StringBuilder sb = new StringBuilder("(a|b)*" + c);
+        for (int i = 0; i < n; i++) {
+            sb.append("(a|b)");
+        }
+        return BasicRegexp.parseRegexp(sb.toString());
+    }
+
+    public static void main(String[] args) throws InvalidRegexpException {
+        for (int n = 4; n <= 12; n += 4) {
+            BasicRegexp a = nthFromLast('a', n);
+            BasicRegexp same = a.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                    BasicRegexp.DEFAULT_OPTIMISE_BUDGET);
+            BasicRegexp other = nthFromLast('b', n);
+            int numStates = 2 << n;
+            int reps = Math.max(1, (1 << 16) >> (2 * n));
+
+            BenchmarkUtils.report("Equivalent, LanguageEquivalence", numStates,
+                    BenchmarkUtils.timePerOp(reps, round -> {
+                        for (int i = 0; i < reps; i++) {
+                            BenchmarkUtils.sSink = LanguageEquivalence
+                                    .findCounterexample(a, same);
+                        }
+                    }));
+            BenchmarkUtils.report("Different, LanguageEquivalence", numStates,
+                    BenchmarkUtils.timePerOp(reps, round -> {
+                        for (int i = 0; i < reps; i++) {
+                            BenchmarkUtils.sSink = LanguageEquivalence
+                                    .findCounterexample(a, other);
+                        }
+                    }));
+            BenchmarkUtils.report("Determinising both up front", numStates,
+                    BenchmarkUtils.timePerOp(reps, round -> {
+                        for (int i = 0; i < reps; i++) {
+                            SubsetConstruction.determinise(
+                                    RegexpCompiler.compileGlushkov(a));
+                            BenchmarkUtils.sSink = SubsetConstruction
+                                    .determinise(RegexpCompiler
+                                            .compileGlushkov(same));
+                        }
+                    }));
+        }
+
+        String unit = "(a|bc)*d?(e|f)+";
+        for (int copies = 1; copies <= 64; copies *= 4) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < copies; i++) {
+                sb.append(unit);
+            }
+            BasicRegexp re = BasicRegexp.parseRegexp(sb.toString());
+            Automaton automaton = RegexpCompiler.compileThompson(re);
+            int numStates = automaton.getNumStates();
+            StateElimination.eliminateAll(automaton,
+                    StateElimination.Heuristic.LABEL_WEIGHT, null);
+            BasicRegexp result = StateElimination.getResult(automaton);
+            int reps = Math.max(1, 64 / copies);
+            BenchmarkUtils.report("State elimination result vs regexp",
+                    numStates, BenchmarkUtils.timePerOp(reps, round -> {
+                        for (int i = 0; i < reps; i++) {
+                            BenchmarkUtils.sSink = LanguageEquivalence
+                                    .findCounterexample(re, result);
+                        }
+                    }));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Random;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.DfaMinimisation;
+import model.MinimiseDfaCommand;
+
+/**
+ * Minimises random DFAs of 10k to 100k states with DfaMinimisation, both
+ * near-minimal ones and ones which are 10 times larger than their minimal DFA.
+ * The time per state should grow no faster than log n. Also times
+ * MinimiseDfaCommand, which minimises in place.
+ */
+public class MinimisationBenchmark {
+
+    private static final int ALPHABET_SIZE = 4;
+
+    /**
+     * Build a random complete DFA of "numStates" states in which state i
+     * behaves like state (i % numClasses), so the minimal DFA has at most
+     * numClasses states.
+     */
+    static Automaton buildDfa(int numStates, int numClasses, Random rand) {
+        Automaton automaton = new Automaton();
+        ArrayList<AutomatonState> states = new ArrayList<>();
+        states.add(automaton.getStartState());
+        for (int i = 1; i < numStates; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            states.add(s);
+        }
+
+        int[][] classDelta = new int[numClasses][ALPHABET_SIZE];
+        for (int c = 0; c < numClasses; c++) {
+            for (int a = 0; a < ALPHABET_SIZE; a++) {
+                classDelta[c][a] = rand.nextInt(numClasses);
+            }
+        }
+        boolean[] classFinal = new boolean[numClasses];
+        for (int c = 0; c < numClasses; c++) {
+            classFinal[c] = rand.nextInt(4) == 0;
+        }
+
+        int copies = numStates / numClasses;
+        for (int i = 0; i < numStates; i++) {
+            int c = i % numClasses;
+            states.get(i).setFinal(classFinal[c]);
+            for (int a = 0; a < ALPHABET_SIZE; a++) {
+                int to = classDelta[c][a] + numClasses * rand.nextInt(copies);
+                automaton.addTransition(automaton.createNewTransition(
+                        states.get(i), states.get(to),
+                        new BasicRegexp((char) ('a' + a))));
+            }
+        }
+        return automaton;
+    }
+
+    public static void main(String[] args) {
+        Random rand = new Random(1);
+        for (int n : new int[] { 10000, 30000, 100000 }) {
+            Automaton random = buildDfa(n, n, rand);
+            BenchmarkUtils.report("minimise(), near-minimal, per state", n,
+                    BenchmarkUtils.timePerOp(n, round -> BenchmarkUtils.sSink =
+                            DfaMinimisation.minimise(random)));
+
+            Automaton redundant = buildDfa(n, n / 10, rand);
+            BenchmarkUtils.report("minimise(), 10x redundant, per state", n,
+                    BenchmarkUtils.timePerOp(n, round -> BenchmarkUtils.sSink =
+                            DfaMinimisation.minimise(redundant)));
+
+            BenchmarkUtils.report("MinimiseDfaCommand, 10x redundant, per state",
+                    n, BenchmarkUtils.timePerOp(n, round -> {
+                        MinimiseDfaCommand cmd = new MinimiseDfaCommand(
+                                redundant);
+                        cmd.redo();
+                        cmd.undo();
+                    }));
+        }
+    }
+}
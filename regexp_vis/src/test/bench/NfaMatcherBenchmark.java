@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.LazyDfaMatcher;
+import model.NfaMatcher;
+import model.RegexpCompiler;
+import model.TranslationTools;
+
+/**
+ * Runs the Thompson NFA for (a|b)*a(a|b){n} over a corpus of random words,
+ * with NfaMatcher, LazyDfaMatcher and a straightforward HashSet based
+ * simulation. Times are per input character. For large n the full DFA (2^(n+1)
+ * states) can't fit in LazyDfaMatcher's cache, so it has to flush.
+ */
+public class NfaMatcherBenchmark {
+
+    private static final int CORPUS_CHARS = 1 << 16;
+
+    static boolean acceptsWithSets(Automaton automaton, String input) {
+        Set<AutomatonState> current = TranslationTools
+                .calcEpsilonReachableStates(automaton,
+                        automaton.getStartState());
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            Set<AutomatonState> next = new HashSet<>();
+            for (AutomatonState s : current) {
+                for (AutomatonTransition t : automaton
+                        .getStateTransitions(s)) {
+                    if (t.getData().getChar() == c) {
+                        next.addAll(TranslationTools
+                                .calcEpsilonReachableStates(automaton,
+                                        t.getTo()));
+                    }
+                }
+            }
+            current = next;
+        }
+        for (AutomatonState s : current) {
+            if (s.isFinal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws InvalidRegexpException {
+        Random rand = new Random(1);
+        String[] corpus = new String[CORPUS_CHARS / 64];
+        for (int i = 0; i < corpus.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 64; j++) {
+                sb.append(rand.nextBoolean() ? 'a' : 'b');
+            }
+            corpus[i] = sb.toString();
+        }
+
+        for (int n = 4; n <= 256; n *= 4) {
+            StringBuilder pattern = new StringBuilder("(a|b)*a");
+            for (int i = 0; i < n; i++) {
+                pattern.append("(a|b)");
+            }
+            Automaton nfa = RegexpCompiler.compileThompson(
+                    BasicRegexp.parseRegexp(pattern.toString()));
+            NfaMatcher matcher = new NfaMatcher(nfa);
+            int numStates = nfa.getNumStates();
+
+            BenchmarkUtils.report("NfaMatcher per char", numStates,
+                    BenchmarkUtils.timePerOp(CORPUS_CHARS, round -> {
+                        int count = 0;
+                        for (String s : corpus) {
+                            count += matcher.matches(s) ? 1 : 0;
+                        }
+                        BenchmarkUtils.sSink = count;
+                    }));
+            for (long budget : new long[] { 64L << 10,
+                    LazyDfaMatcher.DEFAULT_MEMORY_BUDGET }) {
+                LazyDfaMatcher lazy = new LazyDfaMatcher(nfa, budget);
+                BenchmarkUtils.report("LazyDfaMatcher (" + (budget >> 10)
+                        + " KiB) per char", numStates,
+                        BenchmarkUtils.timePerOp(CORPUS_CHARS, round -> {
+                            int count = 0;
+                            for (String s : corpus) {
+                                count += lazy.matches(s) ? 1 : 0;
+                            }
+                            BenchmarkUtils.sSink = count;
+                        }));
+                System.out.printf("    hits=%d misses=%d flushes=%d%n",
+                        lazy.getCacheHits(), lazy.getCacheMisses(),
+                        lazy.getCacheFlushes());
+            }
+            if (n <= 16) {
+                BenchmarkUtils.report("HashSet simulation per char",
+                        numStates, BenchmarkUtils.timePerOp(CORPUS_CHARS,
+                                round -> {
+                            int count = 0;
+                            for (String s : corpus) {
+                                count += acceptsWithSets(nfa, s) ? 1 : 0;
+                            }
+                            BenchmarkUtils.sSink = count;
+                        }));
+            }
+        }
+    }
+}
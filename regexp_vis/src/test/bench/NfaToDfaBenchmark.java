@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.RemoveNonDeterminismCommand;
+import model.RemoveNonDeterminismContext;
+import model.SubsetConstruction;
+import model.TranslationTools;
+
+/**
+ * Determinises the NFA for (a|b)*a(a|b){n}, whose DFA has 2^(n+1) states,
+ * through RemoveNonDeterminismCommand as NfaToDfaActivity does, and through
+ * SubsetConstruction in one go, sequentially and in parallel. The time per
+ * DFA state should stay roughly flat as n grows for all of them.
+ */
+public class NfaToDfaBenchmark {
+
+    /**
+     * @param n The number of (a|b) after the distinguished 'a'
+     * @return An epsilon-free NFA for (a|b)*a(a|b){n}
+     */
+    static Automaton buildNthFromLast(int n) {
+        Automaton automaton = new Automaton();
+        AutomatonState start = automaton.getStartState();
+        automaton.addTransition(automaton.createNewTransition(start, start,
+                new BasicRegexp('a')));
+        automaton.addTransition(automaton.createNewTransition(start, start,
+                new BasicRegexp('b')));
+
+        AutomatonState prev = automaton.createNewState();
+        automaton.addStateWithTransitions(prev,
+                new LinkedList<AutomatonTransition>());
+        automaton.addTransition(automaton.createNewTransition(start, prev,
+                new BasicRegexp('a')));
+        for (int i = 0; i < n; i++) {
+            AutomatonState next = automaton.createNewState();
+            automaton.addStateWithTransitions(next,
+                    new LinkedList<AutomatonTransition>());
+            automaton.addTransition(automaton.createNewTransition(prev, next,
+                    new BasicRegexp('a')));
+            automaton.addTransition(automaton.createNewTransition(prev, next,
+                    new BasicRegexp('b')));
+            prev = next;
+        }
+        prev.setFinal(true);
+        return automaton;
+    }
+
+    /**
+     * Remove all non-determinism from an epsilon-free automaton, one
+     * RemoveNonDeterminismCommand at a time.
+     *
+     * @param automaton The automaton to determinise in place
+     * @return The number of commands executed
+     */
+    static int determiniseWithCommands(Automaton automaton) {
+        RemoveNonDeterminismContext ctx = new RemoveNonDeterminismContext(
+                automaton);
+        ArrayDeque<AutomatonState> todo = new ArrayDeque<>();
+        Iterator<Automaton.StateTransitionsPair> it = automaton.graphIterator();
+        while (it.hasNext()) {
+            todo.add(it.next().getState());
+        }
+
+        int numCommands = 0;
+        while (!todo.isEmpty()) {
+            AutomatonState s = todo.poll();
+            for (char c : TranslationTools.calcNonDeterministicTrans(automaton,
+                    s)) {
+                RemoveNonDeterminismCommand cmd =
+                        new RemoveNonDeterminismCommand(ctx, s, c);
+                cmd.redo();
+                numCommands++;
+                if (cmd.getNewStateCommand() != null) {
+                    todo.add(cmd.getNewStateCommand().getState());
+                }
+            }
+        }
+        return numCommands;
+    }
+
+    public static void main(String[] args) {
+        for (int n = 4; n <= 11; n++) {
+            final int fn = n;
+            int numDfaStates = 1 << (n + 1);
+            BenchmarkUtils.report("RemoveNonDeterminismCommand per DFA state",
+                    numDfaStates, BenchmarkUtils.timePerOp(numDfaStates,
+                            round -> determiniseWithCommands(
+                                    buildNthFromLast(fn))));
+        }
+        for (int n = 4; n <= 15; n++) {
+            Automaton nfa = buildNthFromLast(n);
+            int numDfaStates = 1 << (n + 1);
+            BenchmarkUtils.report("SubsetConstruction per DFA state",
+                    numDfaStates, BenchmarkUtils.timePerOp(numDfaStates,
+                            round -> BenchmarkUtils.sSink =
+                                    SubsetConstruction.determinise(nfa)));
+        }
+
+        // Ideally the time per DFA state divides by the number of threads,
+        // up to the cost of building the Automaton which stays sequential
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(4, maxThreads);
+                threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            for (int n = 11; n <= 15; n += 2) {
+                Automaton nfa = buildNthFromLast(n);
+                int numDfaStates = 1 << (n + 1);
+                BenchmarkUtils.report("SubsetConstruction parallel, "
+                        + threads + " threads", numDfaStates,
+                        BenchmarkUtils.timePerOp(numDfaStates,
+                                round -> BenchmarkUtils.sSink =
+                                        SubsetConstruction
+                                                .determiniseParallel(nfa,
+                                                        pool)));
+            }
+            pool.shutdown();
+        }
+    }
+}
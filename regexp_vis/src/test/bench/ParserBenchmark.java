@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.Random;
+
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+
+/**
+ * Scaling of BasicRegexp.parseRegexp() on machine-generated expressions up
+ * to 1 MB, both shallow ones and ones with deeply nested parentheses. The
+ * time per character should stay flat as the size grows.
+ */
+public class ParserBenchmark {
+
+    /**
+     * @return A random expression of about "length" characters, with
+     * parentheses nested at most a few levels deep
+     */
+    private static String shallowRegexp(Random rand, int length) {
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append('(');
+            sb.append((char) ('a' + rand.nextInt(26)));
+            sb.append((char) ('a' + rand.nextInt(26)));
+            sb.append('|');
+            sb.append((char) ('a' + rand.nextInt(26)));
+            sb.append(")*");
+            sb.append((char) ('a' + rand.nextInt(26)));
+            sb.append(rand.nextBoolean() ? "?" : "+");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return An expression of about "length" characters, where every
+     * parenthesis is nested in the previous one
+     */
+    private static String nestedRegexp(Random rand, int length) {
+        int depth = length / 4;
+        StringBuilder sb = new StringBuilder(depth * 4);
+        for (int i = 0; i < depth; i++) {
+            sb.append('(');
+            sb.append((char) ('a' + rand.nextInt(26)));
+        }
+        for (int i = 0; i < depth; i++) {
+            sb.append(")*");
+        }
+        return sb.toString();
+    }
+
+    private static void time(String name, String str) {
+        BenchmarkUtils.report(name, str.length(),
+                BenchmarkUtils.timePerOp(str.length(), round -> {
+                    try {
+                        BenchmarkUtils.sSink = BasicRegexp.parseRegexp(str);
+                    } catch (InvalidRegexpException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+    }
+
+    public static void main(String[] args) {
+        Random rand = new Random(42);
+        for (int length = 1 << 14; length <= 1 << 20; length <<= 2) {
+            time("parseRegexp(), shallow, per char", shallowRegexp(rand,
+                    length));
+            time("parseRegexp(), nested, per char", nestedRegexp(rand,
+                    length));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.LazyDfaMatcher;
+import model.PatternSetMatcher;
+import model.RegexpCompiler;
+
+/**
+ * Classifying inputs against many patterns: a single PatternSetMatcher pass
+ * compared with running a LazyDfaMatcher for each pattern. Patterns are
+ * random words, some followed by a starred group, like the keyword and
+ * identifier rules of a lexer.
+ */
+public class PatternSetBenchmark {
+
+    private static String randomWord(Random rand, int minLength,
+            int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        int len = minLength + rand.nextInt(maxLength - minLength + 1);
+        for (int i = 0; i < len; i++) {
+            sb.append((char) ('a' + rand.nextInt(8)));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws InvalidRegexpException {
+        for (int numPatterns = 10; numPatterns <= 1000; numPatterns *= 10) {
+            Random rand = new Random(numPatterns);
+            List<BasicRegexp> patterns = new ArrayList<>();
+            for (int i = 0; i < numPatterns; i++) {
+                String word = randomWord(rand, 3, 6);
+                if (rand.nextBoolean()) {
+                    word += "(" + randomWord(rand, 1, 1) + "|"
+                            + randomWord(rand, 1, 1) + ")*";
+                }
+                patterns.add(BasicRegexp.parseRegexp(word));
+            }
+            String[] inputs = new String[1000];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = randomWord(rand, 3, 10);
+            }
+
+            long start = System.nanoTime();
+            PatternSetMatcher setMatcher = new PatternSetMatcher(patterns);
+            System.out.printf(
+                    "%-44s n=%-8d %12.1f ms, %d states, %d classes%n",
+                    "Building PatternSetMatcher", numPatterns,
+                    (System.nanoTime() - start) / 1e6,
+                    setMatcher.getNumStates(), setMatcher.getNumClasses());
+            List<LazyDfaMatcher> matchers = new ArrayList<>();
+            for (BasicRegexp re : patterns) {
+                matchers.add(new LazyDfaMatcher(
+                        RegexpCompiler.compileGlushkov(re)));
+            }
+
+            BenchmarkUtils.report("PatternSetMatcher, one pass", numPatterns,
+                    BenchmarkUtils.timePerOp(inputs.length, round -> {
+                        for (String input : inputs) {
+                            BenchmarkUtils.sSink = setMatcher.matches(input);
+                        }
+                    }));
+            BenchmarkUtils.report("LazyDfaMatcher per pattern", numPatterns,
+                    BenchmarkUtils.timePerOp(inputs.length, round -> {
+                        for (String input : inputs) {
+                            int count = 0;
+                            for (LazyDfaMatcher m : matchers) {
+                                if (m.matches(input)) {
+                                    count++;
+                                }
+                            }
+                            BenchmarkUtils.sSink = count;
+                        }
+                    }));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.BasicRegexp.RegexpOperator;
+import model.RegexpCompiler;
+import model.TranslationTools;
+
+/**
+ * Compiles machine-generated expressions to NFAs with RegexpCompiler, and
+ * with the breakdown commands one transition at a time as
+ * Activity.ensureNotHybridAutomaton() does. Times are per character of the
+ * expression.
+ */
+public class RegexpCompilerBenchmark {
+
+    /**
+     * @return A choice of random words over {a, b, c, d}, each word possibly
+     * with an iterated or optional part, e.g. "ab(cd)*a|bb?ca|..."
+     */
+    static BasicRegexp buildExpression(int numChars, Random rand) {
+        ArrayList<BasicRegexp> words = new ArrayList<>();
+        int chars = 0;
+        while (chars < numChars) {
+            ArrayList<BasicRegexp> word = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                BasicRegexp c = new BasicRegexp((char) ('a' + rand.nextInt(4)));
+                switch (rand.nextInt(6)) {
+                case 0:
+                    c = new BasicRegexp(c, RegexpOperator.STAR);
+                    break;
+                case 1:
+                    c = new BasicRegexp(c, RegexpOperator.OPTION);
+                    break;
+                default:
+                    break;
+                }
+                word.add(c);
+            }
+            chars += word.size();
+            words.add(new BasicRegexp(word, RegexpOperator.SEQUENCE));
+        }
+        return new BasicRegexp(words, RegexpOperator.CHOICE);
+    }
+
+    /**
+     * Break down a single transition labelled with "re" until only single
+     * characters remain.
+     */
+    static Automaton compileWithCommands(BasicRegexp re) {
+        Automaton automaton = new Automaton();
+        AutomatonState end = automaton.createNewState();
+        end.setFinal(true);
+        automaton.addStateWithTransitions(end,
+                new LinkedList<AutomatonTransition>());
+        automaton.addTransition(automaton.createNewTransition(
+                automaton.getStartState(), end, re));
+
+        List<AutomatonTransition> trans = TranslationTools
+                .getAllTransitionsToBreakdown(automaton);
+        while (trans != null) {
+            for (AutomatonTransition t : trans) {
+                TranslationTools.createBreakdownCommand(automaton, t).redo();
+            }
+            trans = TranslationTools.getAllTransitionsToBreakdown(automaton);
+        }
+        return automaton;
+    }
+
+    public static void main(String[] args) {
+        Random rand = new Random(1);
+        for (int n = 1000; n <= 100000; n *= 10) {
+            BasicRegexp re = buildExpression(n, rand);
+            if (n <= 10000) {
+                BenchmarkUtils.report("Breakdown commands per char", n,
+                        BenchmarkUtils.timePerOp(n, round ->
+                                BenchmarkUtils.sSink =
+                                        compileWithCommands(re)));
+            }
+            BenchmarkUtils.report("compileThompson() per char", n,
+                    BenchmarkUtils.timePerOp(n, round -> BenchmarkUtils.sSink =
+                            RegexpCompiler.compileThompson(re)));
+            BenchmarkUtils.report("compileGlushkov() per char", n,
+                    BenchmarkUtils.timePerOp(n, round -> BenchmarkUtils.sSink =
+                            RegexpCompiler.compileGlushkov(re)));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.RegexpInternTable;
+import model.SequenceStateTransitionsCommand;
+
+/**
+ * Cost of equality between large expressions with and without interning,
+ * and the number of distinct BasicRegexp nodes left after eliminating the
+ * states of a layered automaton with SequenceStateTransitionsCommand, with
+ * and without a RegexpInternTable.
+ */
+public class RegexpInternBenchmark {
+
+    private static BasicRegexp bigRegexp(int size)
+            throws InvalidRegexpException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            sb.append("(ab|c*d)+e");
+        }
+        return BasicRegexp.parseRegexp(sb.toString());
+    }
+
+    /**
+     * Build an automaton with a start state, "layers" layers of "width"
+     * states each connected to every state in the next layer, and an end
+     * state. Labels alternate between 'a' and 'b'.
+     */
+    private static Automaton layeredAutomaton(int layers, int width,
+            ArrayList<AutomatonState> middle)
+    {
+        Automaton automaton = new Automaton();
+        ArrayList<AutomatonState> prev = new ArrayList<>();
+        prev.add(automaton.getStartState());
+        for (int l = 0; l <= layers; l++) {
+            ArrayList<AutomatonState> cur = new ArrayList<>();
+            int n = l == layers ? 1 : width;
+            for (int i = 0; i < n; i++) {
+                AutomatonState s = automaton.createNewState();
+                automaton.addStateWithTransitions(s,
+                        new LinkedList<AutomatonTransition>());
+                cur.add(s);
+                if (l != layers) {
+                    middle.add(s);
+                }
+            }
+            for (int i = 0; i < prev.size(); i++) {
+                for (int j = 0; j < cur.size(); j++) {
+                    char c = (char) ('a' + (i + j) % 2);
+                    automaton.addTransition(automaton.createNewTransition(
+                            prev.get(i), cur.get(j), new BasicRegexp(c)));
+                }
+            }
+            prev = cur;
+        }
+        return automaton;
+    }
+
+    private static void countNodes(BasicRegexp re,
+            IdentityHashMap<BasicRegexp, Boolean> seen)
+    {
+        if (seen.put(re, Boolean.TRUE) != null || re.isSingleChar()) {
+            return;
+        }
+        for (BasicRegexp operand : re.getOperands()) {
+            countNodes(operand, seen);
+        }
+    }
+
+    private static int eliminate(int layers, int width,
+            RegexpInternTable table)
+    {
+        ArrayList<AutomatonState> middle = new ArrayList<>();
+        Automaton automaton = layeredAutomaton(layers, width, middle);
+        for (AutomatonState s : middle) {
+            new SequenceStateTransitionsCommand(automaton, s, table).redo();
+        }
+        IdentityHashMap<BasicRegexp, Boolean> seen = new IdentityHashMap<>();
+        for (AutomatonTransition t : automaton
+                .getStateTransitions(automaton.getStartState())) {
+            countNodes(t.getData(), seen);
+        }
+        return seen.size();
+    }
+
+    public static void main(String[] args) throws InvalidRegexpException {
+        for (int size : new int[] { 10, 100, 1000 }) {
+            BasicRegexp re1 = bigRegexp(size);
+            BasicRegexp re2 = bigRegexp(size);
+            BenchmarkUtils.report("equals(), separate trees", size,
+                    BenchmarkUtils.timePerOp(1000, round -> {
+                        int count = 0;
+                        for (int i = 0; i < 1000; i++) {
+                            count += re1.equals(re2) ? 1 : 0;
+                        }
+                        BenchmarkUtils.sSink = count;
+                    }));
+
+            RegexpInternTable table = new RegexpInternTable();
+            BasicRegexp interned1 = table.intern(re1);
+            BasicRegexp interned2 = table.intern(re2);
+            BenchmarkUtils.report("equals(), interned", size,
+                    BenchmarkUtils.timePerOp(1000, round -> {
+                        int count = 0;
+                        for (int i = 0; i < 1000; i++) {
+                            count += interned1.equals(interned2) ? 1 : 0;
+                        }
+                        BenchmarkUtils.sSink = count;
+                    }));
+            BenchmarkUtils.report("RegexpInternTable.intern()", size,
+                    BenchmarkUtils.timePerOp(1, round -> {
+                        BenchmarkUtils.sSink =
+                                new RegexpInternTable().intern(re1);
+                    }));
+        }
+
+        for (int width : new int[] { 2, 4, 6 }) {
+            int layers = 6;
+            System.out.printf("%-40s width=%-4d %8d nodes%n",
+                    "State elimination, no intern table", width,
+                    eliminate(layers, width, null));
+            System.out.printf("%-40s width=%-4d %8d nodes%n",
+                    "State elimination, RegexpInternTable", width,
+                    eliminate(layers, width, new RegexpInternTable()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import model.BasicRegexp;
+import model.BasicRegexpReader;
+import model.BasicRegexpWriter;
+import model.InvalidRegexpException;
+import model.RegexpCompiler;
+
+/**
+ * Saving and loading the expressions produced by state elimination, as
+ * infix text through toString() and parseRegexp() and in the binary form of
+ * BasicRegexpWriter and BasicRegexpReader. The binary form writes shared
+ * subexpressions once, which matters most for the largest results.
+ */
+public class SerialisationBenchmark {
+
+    private static byte[] encode(BasicRegexp re) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BasicRegexpWriter writer = new BasicRegexpWriter(bytes)) {
+            writer.write(re);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static BasicRegexp decode(byte[] bytes) {
+        try (BasicRegexpReader reader = new BasicRegexpReader(
+                new ByteArrayInputStream(bytes))) {
+            return reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BasicRegexp parse(String str) {
+        try {
+            return BasicRegexp.parseRegexp(str);
+        } catch (InvalidRegexpException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws InvalidRegexpException {
+        String unit = "(a|bc)*d?(e|f)+";
+        for (int copies = 1; copies <= 16; copies *= 4) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < copies; i++) {
+                sb.append(unit);
+            }
+            BasicRegexp re = BasicRegexp.parseRegexp(sb.toString());
+            int numStates = RegexpCompiler.compileThompson(re).getNumStates();
+            BasicRegexp result = StateEliminationBenchmark
+                    .eliminate(RegexpCompiler.compileThompson(re));
+            String text = result.toString();
+            byte[] binary = encode(result);
+
+            System.out.printf("%-44s n=%-8d %12d bytes%n", "Text size",
+                    numStates, text.length());
+            System.out.printf("%-44s n=%-8d %12d bytes%n", "Binary size",
+                    numStates, binary.length);
+            int reps = 64 / copies;
+            BenchmarkUtils.report("Text round trip", numStates,
+                    BenchmarkUtils.timePerOp(reps, round -> {
+                        for (int i = 0; i < reps; i++) {
+                            // Print a fresh tree, rather than the cached
+                            // string of "result"
+                            BenchmarkUtils.sSink =
+                                    parse(decode(binary).toString());
+                        }
+                    }));
+            BenchmarkUtils.report("Binary round trip", numStates,
+                    BenchmarkUtils.timePerOp(reps, round -> {
+                        for (int i = 0; i < reps; i++) {
+                            BenchmarkUtils.sSink =
+                                    decode(encode(decode(binary)));
+                        }
+                    }));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+
+import model.Automaton;
+import model.Automaton.StateTransitionsPair;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.ConjoinParallelTransitionsCommand;
+import model.InvalidRegexpException;
+import model.IsolateFinalStateCommand;
+import model.IsolateInitialStateCommand;
+import model.RegexpCompiler;
+import model.RemoveLoopTransitionCommand;
+import model.SequenceStateTransitionsCommand;
+import model.StateElimination;
+import model.StateElimination.Heuristic;
+import model.TranslationTools;
+
+/**
+ * NFA to regexp translation by state elimination, as done step by step in
+ * NfaToRegexpActivity, on Thompson NFAs of increasing size. Reports the
+ * time taken, the length of the resulting expression and the cost of
+ * printing it, which the canvas does whenever a label is updated. Then
+ * compares the expressions produced by the StateElimination heuristics.
+ */
+public class StateEliminationBenchmark {
+
+    private static void conjoinParallel(Automaton automaton,
+            AutomatonState from, AutomatonState to)
+    {
+        if (TranslationTools.stateHasParallelTrans(automaton, from, to)) {
+            new ConjoinParallelTransitionsCommand(automaton, from, to).redo();
+        }
+    }
+
+    /**
+     * Eliminate every state of "automaton" other than the initial and final
+     * states
+     *
+     * @return The expression on the single remaining transition
+     */
+    static BasicRegexp eliminate(Automaton automaton) {
+        IsolateInitialStateCommand initialCmd =
+                IsolateInitialStateCommand.create(automaton);
+        if (initialCmd != null) {
+            initialCmd.redo();
+        }
+        IsolateFinalStateCommand finalCmd =
+                IsolateFinalStateCommand.create(automaton);
+        if (finalCmd != null) {
+            finalCmd.redo();
+        }
+
+        AutomatonState start = automaton.getStartState();
+        AutomatonState end = null;
+        ArrayList<AutomatonState> toRemove = new ArrayList<>();
+        Iterator<StateTransitionsPair> it = automaton.graphIterator();
+        while (it.hasNext()) {
+            AutomatonState state = it.next().getState();
+            if (state.isFinal()) {
+                end = state;
+            } else if (state != start) {
+                toRemove.add(state);
+            }
+        }
+
+        for (AutomatonState state : toRemove) {
+            List<AutomatonState> from = new ArrayList<>();
+            for (AutomatonTransition t : automaton
+                    .getIngoingTransition(state)) {
+                from.add(t.getFrom());
+            }
+            List<AutomatonState> to = new ArrayList<>();
+            for (AutomatonTransition t : automaton
+                    .getStateTransitions(state)) {
+                to.add(t.getTo());
+            }
+            for (AutomatonState f : from) {
+                conjoinParallel(automaton, f, state);
+            }
+            for (AutomatonState t : to) {
+                conjoinParallel(automaton, state, t);
+            }
+            AutomatonTransition loop =
+                    TranslationTools.getSingleLoop(automaton, state);
+            if (loop != null) {
+                new RemoveLoopTransitionCommand(automaton, loop).redo();
+            }
+            new SequenceStateTransitionsCommand(automaton, state).redo();
+        }
+
+        conjoinParallel(automaton, start, end);
+        return automaton.getStateTransitions(start).get(0).getData();
+    }
+
+    public static void main(String[] args) throws InvalidRegexpException {
+        String unit = "(a|bc)*d?(e|f)+";
+        for (int copies = 1; copies <= 16; copies *= 4) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < copies; i++) {
+                sb.append(unit);
+            }
+            BasicRegexp re = BasicRegexp.parseRegexp(sb.toString());
+            int numStates = RegexpCompiler.compileThompson(re).getNumStates();
+
+            BasicRegexp result = eliminate(RegexpCompiler.compileThompson(re));
+            System.out.printf("%-44s n=%-8d %12d chars%n",
+                    "Resulting expression length", numStates,
+                    result.toString().length());
+            BenchmarkUtils.report("toString() of the result, repeated",
+                    numStates, BenchmarkUtils.timePerOp(100, round -> {
+                        for (int i = 0; i < 100; i++) {
+                            BenchmarkUtils.sSink = result.toString();
+                        }
+                    }));
+            int reps = 256 / copies;
+            BenchmarkUtils.report("State elimination of Thompson NFA",
+                    numStates, BenchmarkUtils.timePerOp(reps, round -> {
+                        for (int i = 0; i < reps; i++) {
+                            BenchmarkUtils.sSink = eliminate(
+                                    RegexpCompiler.compileThompson(re));
+                        }
+                    }));
+        }
+
+        // StateElimination, the order chosen by each heuristic
+        for (int copies = 1; copies <= 256; copies *= 4) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < copies; i++) {
+                sb.append(unit);
+            }
+            BasicRegexp re = BasicRegexp.parseRegexp(sb.toString());
+            Automaton automaton = RegexpCompiler.compileThompson(re);
+            int numStates = automaton.getNumStates();
+
+            EnumMap<Heuristic, Integer> sizes = StateElimination
+                    .calcResultSizes(automaton);
+            for (Heuristic heuristic : Heuristic.values()) {
+                System.out.printf("%-44s n=%-8d %12d nodes%n",
+                        "Result size, " + heuristic, numStates,
+                        sizes.get(heuristic));
+            }
+            int reps = Math.max(1, 64 / copies);
+            for (Heuristic heuristic : Heuristic.values()) {
+                if (heuristic == Heuristic.IN_ORDER && copies > 16) {
+                    continue;
+                }
+                BenchmarkUtils.report("StateElimination, " + heuristic,
+                        numStates, BenchmarkUtils.timePerOp(reps, round -> {
+                            for (int i = 0; i < reps; i++) {
+                                Automaton a = RegexpCompiler
+                                        .compileThompson(re);
+                                StateElimination.eliminateAll(a, heuristic,
+                                        null);
+                                BenchmarkUtils.sSink =
+                                        StateElimination.getResult(a);
+                            }
+                        }));
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import model.BasicRegexp;
+import model.DfaMinimisation;
+import model.DfaTable;
+import model.InvalidRegexpException;
+import model.RegexpCompiler;
+import model.StreamSearcher;
+import model.SubsetConstruction;
+
+/**
+ * Searching a large generated log file with StreamSearcher, in GB/s, against
+ * just reading the file through the same size of direct buffer. The size of
+ * the file in MB is the first argument, 2048 by default. The file is written
+ * to the temporary directory and read once before timing, so later passes
+ * come from the page cache if it fits in memory.
+ */
+public class StreamSearchBenchmark {
+
+    private static final String[] PATTERNS = {
+        // Rare, only lines which start with "E" begin an attempt
+        "ERROR:timeout=(0|1|2|3|4|5|6|7|8|9)+ms",
+        // On every line, attempts start at every digit
+        "took=(0|1|2|3|4|5|6|7|8|9)+ms",
+        "(0|1|2|3|4|5|6|7|8|9)+ms",
+    };
+
+    private static long sCount;
+
+    private static void writeLog(File file, long size) throws IOException {
+        Random rand = new Random(25);
+        StringBuilder sb = new StringBuilder();
+        String[] levels = {"INFO", "DEBUG", "WARN"};
+        while (sb.length() < (1 << 20)) {
+            if (rand.nextInt(1000) == 0) {
+                sb.append("ERROR:timeout=").append(rand.nextInt(10000))
+                        .append("ms worker-").append(rand.nextInt(16))
+                        .append('\n');
+                continue;
+            }
+            sb.append("2016-03-").append(10 + rand.nextInt(20))
+                    .append("T12:").append(10 + rand.nextInt(50))
+                    .append(':').append(10 + rand.nextInt(50)).append(' ')
+                    .append(levels[rand.nextInt(levels.length)])
+                    .append(" worker-").append(rand.nextInt(16))
+                    .append(" request=/api/v1/items/")
+                    .append(rand.nextInt(100000)).append(" status=200 took=")
+                    .append(rand.nextInt(1000)).append("ms\n");
+        }
+        byte[] block = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(file))) {
+            for (long written = 0; written < size; written += block.length) {
+                out.write(block);
+            }
+        }
+    }
+
+    private static void reportRate(String name, int sizeMb, long bytes,
+            long nanos) {
+        System.out.printf("%-44s n=%-8d %12.2f GB/s%n", name, sizeMb,
+                bytes / (double) nanos);
+    }
+
+    public static void main(String[] args)
+            throws InvalidRegexpException, IOException {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        File file = File.createTempFile("search", ".log");
+        file.deleteOnExit();
+        writeLog(file, (long) sizeMb << 20);
+        long bytes = file.length();
+
+        // Baseline, read only
+        ByteBuffer buffer = ByteBuffer.allocateDirect(
+                StreamSearcher.DEFAULT_BUFFER_SIZE);
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ)) {
+                while (channel.read(buffer) >= 0) {
+                    buffer.clear();
+                }
+            }
+            if (pass > 0) {
+                reportRate("FileChannel read only", sizeMb, bytes,
+                        System.nanoTime() - start);
+            }
+        }
+
+        for (String pattern : PATTERNS) {
+            DfaTable table = new DfaTable(DfaMinimisation.minimise(
+                    SubsetConstruction.determinise(
+                            RegexpCompiler.compileGlushkov(
+                                    BasicRegexp.parseRegexp(pattern)))));
+            StreamSearcher searcher = new StreamSearcher(table);
+            for (int pass = 0; pass < 2; pass++) {
+                sCount = 0;
+                long start = System.nanoTime();
+                try (FileChannel channel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.READ)) {
+                    searcher.search(channel, (s, e) -> sCount++);
+                }
+                if (pass > 0) {
+                    reportRate("StreamSearcher " + pattern.substring(0,
+                            Math.min(pattern.length(), 24)), sizeMb, bytes,
+                            System.nanoTime() - start);
+                    System.out.printf("%-44s n=%-8d %12d matches%n", "",
+                            sizeMb, sCount);
+                }
+            }
+        }
+    }
+}
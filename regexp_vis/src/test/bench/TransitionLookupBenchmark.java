@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Random;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+
+/**
+ * Measures Automaton.getTransitionById() for growing automaton sizes, the
+ * cost per lookup should stay roughly flat.
+ */
+public class TransitionLookupBenchmark {
+
+    private static final int LOOKUPS = 1000000;
+
+    /**
+     * Build a random automaton with the given number of states, each with
+     * three out-going transitions.
+     */
+    private static Automaton buildAutomaton(int numStates, Random rand) {
+        Automaton automaton = new Automaton();
+        ArrayList<AutomatonState> states = new ArrayList<>();
+        states.add(automaton.getStartState());
+        for (int i = 1; i < numStates; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            states.add(s);
+        }
+        for (AutomatonState s : states) {
+            for (int i = 0; i < 3; i++) {
+                AutomatonState to = states.get(rand.nextInt(numStates));
+                automaton.addTransition(automaton.createNewTransition(s, to,
+                        new BasicRegexp((char) ('a' + i))));
+            }
+        }
+        return automaton;
+    }
+
+    public static void main(String[] args) {
+        for (int numStates : new int[] { 100, 1000, 10000, 100000 }) {
+            Random rand = new Random(1);
+            Automaton automaton = buildAutomaton(numStates, rand);
+            int numTransitions = numStates * 3;
+            int[] ids = new int[LOOKUPS];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = rand.nextInt(numTransitions);
+            }
+
+            double ns = BenchmarkUtils.timePerOp(LOOKUPS, round -> {
+                AutomatonTransition last = null;
+                for (int id : ids) {
+                    last = automaton.getTransitionById(id);
+                }
+                BenchmarkUtils.sSink = last;
+            });
+            BenchmarkUtils.report("getTransitionById", numStates, ns);
+        }
+    }
+}
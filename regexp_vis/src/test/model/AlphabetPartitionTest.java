@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static test.model.ModelTestUtils.randomPattern;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import model.AlphabetPartition;
+import model.Automaton;
+import model.BasicRegexp;
+import model.CompactAutomaton;
+import model.DfaMinimisation;
+import model.InvalidRegexpException;
+import model.RegexpCompiler;
+import model.SubsetConstruction;
+
+public class AlphabetPartitionTest {
+
+    private static Automaton minimalDfa(String pattern)
+            throws InvalidRegexpException {
+        return DfaMinimisation.minimise(SubsetConstruction.determinise(
+                RegexpCompiler.compileGlushkov(
+                        BasicRegexp.parseRegexp(pattern))));
+    }
+
+    private static TreeSet<Integer> targets(CompactAutomaton compact,
+            int state, char c) {
+        TreeSet<Integer> targets = new TreeSet<>();
+        int end = compact.getTransitionsEnd(state);
+        for (int t = compact.getTransitionsStart(state); t < end; t++) {
+            int label = compact.getTransitionLabel(t);
+            if (compact.isSingleCharLabel(label)
+                    && compact.getLabelChar(label) == c) {
+                targets.add(compact.getTransitionTarget(t));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Checks the classes against the definition, two used characters share a
+     * class exactly when every state has the same targets on both
+     */
+    private static void assertClassesExact(Automaton automaton) {
+        CompactAutomaton compact = automaton.freeze();
+        AlphabetPartition classes = new AlphabetPartition(compact);
+        char[] alphabet = classes.getAlphabet();
+        for (char c1 : alphabet) {
+            assertNotEquals(0, classes.classOf(c1));
+            for (char c2 : alphabet) {
+                boolean same = true;
+                for (int s = 0; s < compact.getNumStates() && same; s++) {
+                    same = targets(compact, s, c1).equals(
+                            targets(compact, s, c2));
+                }
+                assertEquals(same,
+                        classes.classOf(c1) == classes.classOf(c2));
+            }
+        }
+        // Representatives are the smallest characters, in increasing order
+        for (int cls = 1; cls < classes.getNumClasses(); cls++) {
+            char rep = classes.getRepresentative(cls);
+            assertEquals(cls, classes.classOf(rep));
+            for (char c : alphabet) {
+                if (classes.classOf(c) == cls) {
+                    assertEquals(rep, c);
+                    break;
+                }
+            }
+            if (cls > 1) {
+                assertEquals(true,
+                        classes.getRepresentative(cls - 1) < rep);
+            }
+        }
+    }
+
+    @Test
+    public void testGlushkov() throws InvalidRegexpException {
+        AlphabetPartition classes = new AlphabetPartition(
+                BasicRegexp.parseRegexp("(a|b)c"));
+        assertEquals(4, classes.getNumClasses());
+        assertArrayEquals(new char[] {'a', 'b', 'c'}, classes.getAlphabet());
+        assertEquals(1, classes.classOf('a'));
+        assertEquals(2, classes.classOf('b'));
+        assertEquals(3, classes.classOf('c'));
+        assertEquals(0, classes.classOf('d'));
+        assertEquals(0, classes.classOf('\u4e2d'));
+        assertEquals(0, classes.classOf(Character.MAX_VALUE));
+        assertEquals('\u0000', classes.getRepresentative(0));
+    }
+
+    @Test
+    public void testMinimalDfa() throws InvalidRegexpException {
+        // The minimal DFA merges the states after "a" and "b"
+        AlphabetPartition classes = new AlphabetPartition(
+                minimalDfa("(a|b)c"));
+        assertEquals(3, classes.getNumClasses());
+        assertEquals(1, classes.classOf('a'));
+        assertEquals(1, classes.classOf('b'));
+        assertEquals(2, classes.classOf('c'));
+        assertEquals('a', classes.getRepresentative(1));
+        assertEquals('c', classes.getRepresentative(2));
+
+        // Characters far apart, in different pages of the remap table
+        classes = new AlphabetPartition(
+                minimalDfa("(\u4e2d|a|\u00e9)*(z|\uffef)"));
+        assertEquals(3, classes.getNumClasses());
+        assertEquals(1, classes.classOf('a'));
+        assertEquals(1, classes.classOf('\u00e9'));
+        assertEquals(1, classes.classOf('\u4e2d'));
+        assertEquals(2, classes.classOf('z'));
+        assertEquals(2, classes.classOf('\uffef'));
+        assertEquals(0, classes.classOf('\u4e2e'));
+    }
+
+    @Test
+    public void testEpsilon() throws InvalidRegexpException {
+        AlphabetPartition classes = new AlphabetPartition(
+                RegexpCompiler.compileThompson(
+                        BasicRegexp.parseRegexp("(a|b)*")));
+        assertArrayEquals(new char[] {'a', 'b'}, classes.getAlphabet());
+        assertEquals(0, classes.classOf(BasicRegexp.EPSILON_CHAR));
+    }
+
+    @Test
+    public void testEmpty() {
+        AlphabetPartition classes = new AlphabetPartition(new Automaton());
+        assertEquals(1, classes.getNumClasses());
+        assertEquals(0, classes.getAlphabet().length);
+        assertEquals(0, classes.classOf('a'));
+    }
+
+    @Test
+    public void testRandom() throws InvalidRegexpException {
+        Random rand = new Random(23);
+        for (int i = 0; i < 200; i++) {
+            String pattern = randomPattern(rand, 4, "abcde", "*");
+            assertClassesExact(RegexpCompiler.compileGlushkov(
+                    BasicRegexp.parseRegexp(pattern)));
+            assertClassesExact(minimalDfa(pattern));
+        }
+    }
+}
@@ -22,6 +22,7 @@
  */
 package test.model;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -89,4 +90,26 @@ public class AutomatonStateTest {
         assertTrue(boolean0);
         assertEquals(0, automatonState0.getId());
     }
+
+    @Test
+    public void testPatternIds() {
+        AutomatonState state = new AutomatonState(1, true);
+        assertArrayEquals(new int[0], state.getPatternIds());
+        assertEquals("1 [final]", state.toString());
+
+        state.setPatternIds(new int[] { 7, 2, 7, 0 });
+        assertArrayEquals(new int[] { 0, 2, 7 }, state.getPatternIds());
+        assertTrue(state.hasPatternId(2));
+        assertFalse(state.hasPatternId(1));
+        assertEquals("1 [final] [0, 2, 7]", state.toString());
+
+        // A copy is returned
+        state.getPatternIds()[0] = 5;
+        assertArrayEquals(new int[] { 0, 2, 7 }, state.getPatternIds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPatternIds_null() {
+        new AutomatonState(1).setPatternIds(null);
+    }
 }
@@ -31,9 +31,11 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Before;
@@ -187,6 +189,119 @@ public class AutomatonTest {
         assertTrue(caught);
     }
 
+    /**
+     * Calculates the in-going transitions of a state by scanning every
+     * transition in the automaton, used to check the automaton's index.
+     */
+    private static List<AutomatonTransition> scanIngoingTransitions(
+            Automaton automaton, AutomatonState state) {
+        List<AutomatonTransition> ret = new ArrayList<>();
+        Iterator<Automaton.StateTransitionsPair> it = automaton.graphIterator();
+        while (it.hasNext()) {
+            for (AutomatonTransition t : it.next().getTransitions()) {
+                if (t.getTo() == state) {
+                    ret.add(t);
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    public void testGetIngoingTransition_matchesScan() {
+        Random rand = new Random(42);
+        List<AutomatonState> states = new ArrayList<>();
+        states.add(mAutomaton.getStartState());
+        states.add(mState1);
+        states.add(mState2);
+        states.add(mState3);
+        List<AutomatonState> removedStates = new ArrayList<>();
+        List<LinkedList<AutomatonTransition>> removedTransitions =
+                new ArrayList<>();
+
+        // Perform a random sequence of mutations, checking the index against
+        // a full scan after every step
+        for (int i = 0; i < 2000; i++) {
+            int op = rand.nextInt(10);
+            if (op < 5) {
+                AutomatonState from = states.get(rand.nextInt(states.size()));
+                AutomatonState to = states.get(rand.nextInt(states.size()));
+                mAutomaton.addTransition(mAutomaton.createNewTransition(from,
+                        to, new BasicRegexp((char) ('a' + rand.nextInt(3)))));
+            } else if (op < 7) {
+                AutomatonState s = states.get(rand.nextInt(states.size()));
+                List<AutomatonTransition> trans =
+                        mAutomaton.getStateTransitions(s);
+                if (!trans.isEmpty()) {
+                    mAutomaton.removeTransition(
+                            trans.get(rand.nextInt(trans.size())));
+                }
+            } else if (op < 8) {
+                AutomatonState s = mAutomaton.createNewState();
+                mAutomaton.addStateWithTransitions(s,
+                        new LinkedList<AutomatonTransition>());
+                states.add(s);
+            } else if (op < 9 && states.size() > 1) {
+                // Remove a state, transitions to it are left dangling just as
+                // RemoveStateCommand permits
+                AutomatonState s = states.remove(1 + rand.nextInt(
+                        states.size() - 1));
+                removedTransitions.add(mAutomaton.removeState(s));
+                removedStates.add(s);
+            } else if (!removedStates.isEmpty()) {
+                // Re-add a removed state with its transitions, like undo
+                int idx = rand.nextInt(removedStates.size());
+                AutomatonState s = removedStates.remove(idx);
+                mAutomaton.addStateWithTransitions(s,
+                        removedTransitions.remove(idx));
+                states.add(s);
+            }
+
+            for (AutomatonState s : states) {
+                List<AutomatonTransition> expected =
+                        scanIngoingTransitions(mAutomaton, s);
+                List<AutomatonTransition> actual =
+                        mAutomaton.getIngoingTransition(s);
+                assertEquals(expected.size(), actual.size());
+                assertTrue(actual.containsAll(expected));
+                assertEquals(!expected.isEmpty(),
+                        mAutomaton.hasIngoingTransition(s));
+            }
+        }
+    }
+
+    @Test
+    public void testGetTransitionById() {
+        AutomatonTransition t1 = mAutomaton.createNewTransition(mState1,
+                mState2, BasicRegexp.EPSILON_EXPRESSION);
+        AutomatonTransition t2 = mAutomaton.createNewTransition(mState2,
+                mState3, BasicRegexp.EPSILON_EXPRESSION);
+
+        // Test that transitions can't be found before they are added
+        assertNull(mAutomaton.getTransitionById(t1.getId()));
+
+        mAutomaton.addTransition(t1);
+        mAutomaton.addTransition(t2);
+        assertSame(t1, mAutomaton.getTransitionById(t1.getId()));
+        assertSame(t2, mAutomaton.getAutomatonTransitionById(t2.getId()));
+
+        // Test removing the transition directly
+        mAutomaton.removeTransition(t1);
+        assertNull(mAutomaton.getTransitionById(t1.getId()));
+        assertNull(mAutomaton.getAutomatonTransitionById(t1.getId()));
+
+        // Test removing and re-adding the state the transition is from
+        LinkedList<AutomatonTransition> removed =
+                mAutomaton.removeState(mState2);
+        assertNull(mAutomaton.getTransitionById(t2.getId()));
+        mAutomaton.addStateWithTransitions(mState2, removed);
+        assertSame(t2, mAutomaton.getTransitionById(t2.getId()));
+
+        // Test clearing the automaton
+        mAutomaton.clear();
+        assertNull(mAutomaton.getTransitionById(t2.getId()));
+    }
+
     @Test
     public void testGetStateTransitions() {
         // Test that we start off with no transitions initially
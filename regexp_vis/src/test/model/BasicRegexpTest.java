@@ -27,14 +27,19 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static test.model.ModelTestUtils.randomPattern;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
 import model.BasicRegexp;
 import model.InvalidRegexpException;
+import model.NfaMatcher;
+import model.RegexpCompiler;
 
 @SuppressWarnings({ "unused", "static-method" })
 public class BasicRegexpTest {
@@ -1074,4 +1079,186 @@ public class BasicRegexpTest {
         assertEquals((-1), int0);
     }
 
+    @Test
+    public void testDerivative() throws InvalidRegexpException {
+        BasicRegexp re = BasicRegexp.parseRegexp("ab*|b");
+        // d_a(ab*|b) = b*
+        assertEquals(BasicRegexp.parseRegexp("b*"), re.derivative('a'));
+        // d_b(ab*|b) = epsilon
+        assertSame(BasicRegexp.EPSILON_EXPRESSION, re.derivative('b'));
+        // d_c(ab*|b) is the empty language
+        assertEquals(null, re.derivative('c'));
+        assertEquals(null, BasicRegexp.EPSILON_EXPRESSION.derivative('a'));
+
+        // Nullable prefix of a SEQUENCE: d_b(a?b) = epsilon
+        re = BasicRegexp.parseRegexp("a?b");
+        assertSame(BasicRegexp.EPSILON_EXPRESSION, re.derivative('b'));
+        // d_a(a+) = a*
+        re = BasicRegexp.parseRegexp("a+");
+        assertEquals(BasicRegexp.parseRegexp("a*"), re.derivative('a'));
+    }
+
+    @Test
+    public void testOptimise_plusOnChoice() throws InvalidRegexpException {
+        // Optimising the operands of a PLUS on a CHOICE must keep the PLUS
+        BasicRegexp re = BasicRegexp.parseRegexp("(b|b|ac)+");
+        BasicRegexp optimised = re.optimise(BasicRegexp.OPTIMISE_ALL, 10);
+        assertEquals(BasicRegexp.parseRegexp("(b|ac)+"), optimised);
+        assertFalse(optimised.isNullable());
+    }
+
+    @Test
+    public void testHashCode() throws InvalidRegexpException {
+        String[][] equal = {
+            {"a", "a"},
+            {"ab*(c|d)", "ab*(c|d)"},
+            {"a|b|c", "c|a|b"},
+            {"x(a|b)+y", "x(b|a)+y"},
+        };
+        for (String[] pair : equal) {
+            BasicRegexp re1 = BasicRegexp.parseRegexp(pair[0]);
+            BasicRegexp re2 = BasicRegexp.parseRegexp(pair[1]);
+            assertEquals(re1, re2);
+            assertEquals(re1.hashCode(), re2.hashCode());
+        }
+
+        HashSet<BasicRegexp> set = new HashSet<>();
+        set.add(BasicRegexp.parseRegexp("(a|b)*c"));
+        assertTrue(set.contains(BasicRegexp.parseRegexp("(b|a)*c")));
+        assertFalse(set.contains(BasicRegexp.parseRegexp("c(a|b)*")));
+        assertFalse(set.contains(BasicRegexp.parseRegexp("(a|b)+c")));
+    }
+
+    @Test
+    public void testParseRegexp_errorColumn() {
+        String[] regexps = { "ab)c", "a(bc", "a(b)(c", "a(b)|*", "ab||c",
+                "ab(c|)", "ab( )" };
+        int[] columns = { 2, 1, 4, 5, 3, 4, 2 };
+        for (int i = 0; i < regexps.length; i++) {
+            try {
+                BasicRegexp.parseRegexp(regexps[i]);
+                fail("Expecting exception: InvalidRegexpException");
+            } catch (InvalidRegexpException e) {
+                assertEquals(regexps[i], columns[i], e.getColumn());
+            }
+        }
+    }
+
+    @Test
+    public void testParseRegexp_deepNesting() throws InvalidRegexpException {
+        // Deep enough to overflow the stack if parsing were recursive
+        int depth = 100000;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            sb.append("(a");
+        }
+        for (int i = 0; i < depth; i++) {
+            sb.append(")*");
+        }
+
+        BasicRegexp re = BasicRegexp.parseRegexp(sb.toString());
+        for (int i = 0; i < depth; i++) {
+            assertEquals(BasicRegexp.RegexpOperator.STAR, re.getOperator());
+            BasicRegexp seq = re.getOperands().get(0);
+            if (i == depth - 1) {
+                assertEquals(new BasicRegexp('a'), seq);
+            } else {
+                assertEquals(BasicRegexp.RegexpOperator.SEQUENCE,
+                        seq.getOperator());
+                assertEquals(new BasicRegexp('a'), seq.getOperands().get(0));
+                re = seq.getOperands().get(1);
+            }
+        }
+    }
+
+    @Test
+    public void testOptimiseFully() throws InvalidRegexpException {
+        String[][] cases = {
+            {"(((a|b)*)*)*", "(a|b)*"},
+            {"(a*b*)*c", "(a|b)*c"},
+            {"a?a?a*|a*", "a*"},
+            {"(a|a|b)(c**|c*)", "(a|b)c*"},
+        };
+        for (String[] c : cases) {
+            BasicRegexp re = BasicRegexp.parseRegexp(c[0]);
+            BasicRegexp optimised = re.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                    BasicRegexp.DEFAULT_OPTIMISE_BUDGET);
+            assertEquals(c[1], optimised.toString());
+            // Cached, and a fixed point
+            assertSame(optimised, re.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                    BasicRegexp.DEFAULT_OPTIMISE_BUDGET));
+            assertSame(optimised, optimised.optimiseFully(
+                    BasicRegexp.OPTIMISE_ALL,
+                    BasicRegexp.DEFAULT_OPTIMISE_BUDGET));
+            assertSame(optimised, optimised.optimise(BasicRegexp.OPTIMISE_ALL,
+                    -1));
+        }
+    }
+
+    @Test
+    public void testOptimiseFully_budget() throws InvalidRegexpException {
+        BasicRegexp re = BasicRegexp.parseRegexp("((a*)*b)**");
+        // No budget, nothing done and nothing cached
+        assertSame(re, re.optimiseFully(BasicRegexp.OPTIMISE_ALL, 0));
+        assertEquals("(a*b)*", re.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                BasicRegexp.DEFAULT_OPTIMISE_BUDGET).toString());
+    }
+
+    @Test
+    public void testOptimiseFully_random() throws InvalidRegexpException {
+        // The optimised expression must match the same words, up to length 5
+        List<String> words = new ArrayList<>();
+        words.add("");
+        for (int i = 0; i < words.size() && words.get(i).length() < 5; i++) {
+            for (char c = 'a'; c <= 'c'; c++) {
+                words.add(words.get(i) + c);
+            }
+        }
+
+        Random rand = new Random(16);
+        for (int i = 0; i < 300; i++) {
+            BasicRegexp re = BasicRegexp.parseRegexp(
+                    randomPattern(rand, 5, "abc", "*+?"));
+            BasicRegexp optimised = re.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                    BasicRegexp.DEFAULT_OPTIMISE_BUDGET);
+            NfaMatcher expected = new NfaMatcher(
+                    RegexpCompiler.compileThompson(re));
+            NfaMatcher actual = new NfaMatcher(
+                    RegexpCompiler.compileThompson(optimised));
+            for (String w : words) {
+                assertEquals(re + " -> " + optimised + " on \"" + w + "\"",
+                        expected.matches(w), actual.matches(w));
+            }
+        }
+    }
+
+    @Test
+    public void testDerivedAttributes() throws InvalidRegexpException {
+        BasicRegexp re = BasicRegexp.parseRegexp("(ab|c)*d?");
+        // SEQUENCE(STAR(CHOICE(SEQUENCE(a, b), c)), OPTION(d))
+        assertEquals(9, re.getSize());
+        assertEquals(5, re.getHeight());
+        assertEquals("abcd", re.getAlphabet());
+        assertTrue(re.isNullable());
+        assertSame(re.toString(), re.toString());
+
+        BasicRegexp single = new BasicRegexp('x');
+        assertEquals(1, single.getSize());
+        assertEquals(1, single.getHeight());
+        assertEquals("x", single.getAlphabet());
+        assertEquals("", BasicRegexp.EPSILON_EXPRESSION.getAlphabet());
+
+        assertEquals("abcz", BasicRegexp.parseRegexp("z|(cb)*a|b")
+                .getAlphabet());
+
+        // Sub-expressions are counted once for each use
+        ArrayList<BasicRegexp> operands = new ArrayList<>();
+        operands.add(re);
+        operands.add(re);
+        BasicRegexp twice = new BasicRegexp(operands,
+                BasicRegexp.RegexpOperator.CHOICE);
+        assertEquals(19, twice.getSize());
+        assertEquals(6, twice.getHeight());
+        assertEquals("(ab|c)*d?|(ab|c)*d?", twice.toString());
+    }
 }
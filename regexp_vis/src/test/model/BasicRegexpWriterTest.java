@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.model.ModelTestUtils.randomPattern;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.BasicRegexp;
+import model.BasicRegexpReader;
+import model.BasicRegexpWriter;
+import model.InvalidRegexpDataException;
+import model.InvalidRegexpException;
+
+public class BasicRegexpWriterTest {
+
+    private static BasicRegexpReader reader(byte[] bytes) {
+        return new BasicRegexpReader(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void testRoundTrip() throws InvalidRegexpException, IOException {
+        Random rand = new Random(18);
+        ArrayList<BasicRegexp> regexps = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            regexps.add(BasicRegexp.parseRegexp(
+                    randomPattern(rand, 6, "abc", "*+?")));
+        }
+        // Characters which need an OP_CHAR
+        regexps.add(BasicRegexp.parseRegexp("\u0001\u03b5|\uffff\u0100"));
+        // Single byte characters
+        regexps.add(BasicRegexp.parseRegexp("\u0008\u007f\u0080\u00ff"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BasicRegexpWriter writer = new BasicRegexpWriter(bytes);
+        for (BasicRegexp re : regexps) {
+            writer.write(re);
+        }
+
+        BasicRegexpReader reader = reader(bytes.toByteArray());
+        for (BasicRegexp re : regexps) {
+            BasicRegexp read = reader.read();
+            assertEquals(re, read);
+            // Ordering of CHOICE operands is kept as well
+            assertEquals(re.toString(), read.toString());
+        }
+        try {
+            reader.read();
+            fail("Expecting exception: EOFException");
+        } catch (EOFException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSharedSubexpressions()
+            throws InvalidRegexpException, IOException {
+        BasicRegexp shared = BasicRegexp.parseRegexp("(ab|cd)*e?");
+        ArrayList<BasicRegexp> operands = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            operands.add(shared);
+        }
+        BasicRegexp re = new BasicRegexp(operands,
+                BasicRegexp.RegexpOperator.CHOICE);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BasicRegexpWriter writer = new BasicRegexpWriter(bytes);
+        writer.write(re);
+        writer.write(shared);
+        // 100 back-references of 2 bytes, rather than 100 copies
+        assertTrue(bytes.size() < 250);
+        assertTrue(bytes.size() < re.toString().length() / 4);
+
+        BasicRegexpReader reader = reader(bytes.toByteArray());
+        BasicRegexp read = reader.read();
+        assertEquals(re.toString(), read.toString());
+        BasicRegexp readShared = read.getOperands().get(0);
+        for (BasicRegexp operand : read.getOperands()) {
+            assertSame(readShared, operand);
+        }
+        // Shared with the previous expression read as well
+        assertSame(readShared, reader.read());
+    }
+
+    @Test
+    public void testVarInt() throws IOException {
+        int[] values = { 0, 1, 0x7f, 0x80, 0x3fff, 0x4000, 123456789,
+                Integer.MAX_VALUE };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BasicRegexpWriter writer = new BasicRegexpWriter(bytes);
+        for (int value : values) {
+            writer.writeVarInt(value);
+        }
+        assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 4 + 5, bytes.size());
+
+        BasicRegexpReader reader = reader(bytes.toByteArray());
+        for (int value : values) {
+            assertEquals(value, reader.readVarInt());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVarInt_negative() throws IOException {
+        new BasicRegexpWriter(new ByteArrayOutputStream()).writeVarInt(-1);
+    }
+
+    @Test
+    public void testInvalidData() {
+        byte[][] invalid = {
+            // Unknown opcode
+            { 7 },
+            // Back-reference to a node not read yet
+            { 6, 0 },
+            // SEQUENCE without operands
+            { 4, 0 },
+            // Varint out of range
+            { 4, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f },
+            // Character out of range
+            { 0, (byte) 0x80, (byte) 0x80, 0x04 },
+        };
+        for (byte[] bytes : invalid) {
+            try {
+                reader(bytes).read();
+                fail("Expecting exception: InvalidRegexpDataException");
+            } catch (InvalidRegexpDataException e) {
+                // Expected
+            } catch (IOException e) {
+                fail("Expecting exception: InvalidRegexpDataException");
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedData() throws IOException {
+        byte[][] truncated = {
+            { 4, 2, 'a' },
+            { 1 },
+            { 0 },
+        };
+        for (byte[] bytes : truncated) {
+            try {
+                reader(bytes).read();
+                fail("Expecting exception: EOFException");
+            } catch (EOFException e) {
+                // Expected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.model.ModelTestUtils.randomPattern;
+import static test.model.ModelTestUtils.randomString;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.BasicRegexp;
+import model.BrzozowskiConstruction;
+import model.DerivativeMatcher;
+import model.DfaMinimisation;
+import model.InvalidRegexpException;
+import model.NfaMatcher;
+import model.TranslationTools;
+
+public class BrzozowskiConstructionTest {
+
+    @Test
+    public void testBuildDfa_random() throws InvalidRegexpException {
+        Random rand = new Random(31);
+        for (int iter = 0; iter < 200; iter++) {
+            String pattern = randomPattern(rand, 5, "abc", "*+?");
+            BasicRegexp re = BasicRegexp.parseRegexp(pattern);
+            Pattern expected = Pattern.compile(pattern);
+
+            Map<AutomatonState, BasicRegexp> stateExpressions =
+                    new HashMap<>();
+            Automaton dfa = BrzozowskiConstruction.buildDfa(re,
+                    stateExpressions,
+                    BrzozowskiConstruction.DEFAULT_MAX_STATES);
+            assertFalse(TranslationTools.automatonHasNonDeterminism(dfa));
+            assertEquals(dfa.getNumStates(), stateExpressions.size());
+            // Every state is live, so it can't be smaller than the minimal DFA
+            assertTrue(dfa.getNumStates() >= DfaMinimisation.minimise(dfa)
+                    .getNumStates());
+
+            NfaMatcher dfaMatcher = new NfaMatcher(dfa);
+            DerivativeMatcher matcher = new DerivativeMatcher(re);
+            for (int i = 0; i < 100; i++) {
+                String s = randomString(rand, "abc", 10);
+                boolean matches = expected.matcher(s).matches();
+                assertEquals(pattern + " on " + s, matches,
+                        dfaMatcher.matches(s));
+                assertEquals(pattern + " on " + s, matches,
+                        matcher.matches(s));
+            }
+            // The matcher never builds more states than the full DFA has
+            assertTrue(matcher.getNumStates() <= dfa.getNumStates());
+        }
+    }
+
+    @Test
+    public void testBuildDfa_nthFromLast() throws InvalidRegexpException {
+        for (int n = 0; n <= 6; n++) {
+            StringBuilder pattern = new StringBuilder("(a|b)*a");
+            for (int i = 0; i < n; i++) {
+                pattern.append("(a|b)");
+            }
+            Automaton dfa = BrzozowskiConstruction.buildDfa(
+                    BasicRegexp.parseRegexp(pattern.toString()));
+            assertEquals(1 << (n + 1), DfaMinimisation.minimise(dfa)
+                    .getNumStates());
+        }
+    }
+
+    @Test
+    public void testBuildDfa_maxStates() throws InvalidRegexpException {
+        BasicRegexp re = BasicRegexp.parseRegexp("(a|b)*a(a|b)(a|b)(a|b)");
+        try {
+            BrzozowskiConstruction.buildDfa(re, null, 4);
+            fail("Expecting exception: RuntimeException");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDerivativeMatcher_otherChars()
+            throws InvalidRegexpException {
+        DerivativeMatcher matcher = new DerivativeMatcher(
+                BasicRegexp.parseRegexp("a*b"));
+        assertTrue(matcher.matches("aab"));
+        assertFalse(matcher.matches("axb"));
+        assertFalse(matcher.matches("" + BasicRegexp.EPSILON_CHAR + "b"));
+        assertFalse(matcher.matches(""));
+    }
+}
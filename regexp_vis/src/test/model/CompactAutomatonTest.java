@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.CompactAutomaton;
+import model.StateSet;
+import model.TranslationTools;
+
+public class CompactAutomatonTest {
+    private Automaton mAutomaton;
+    private List<AutomatonState> mStates;
+
+    @Before
+    public void setUp() throws Exception {
+        // Random NFA with epsilon transitions, non-determinism and some
+        // unreachable states
+        Random rand = new Random(7);
+        mAutomaton = new Automaton();
+        mStates = new ArrayList<>();
+        mStates.add(mAutomaton.getStartState());
+        for (int i = 0; i < 200; i++) {
+            AutomatonState s = mAutomaton.createNewState();
+            s.setFinal(rand.nextInt(10) == 0);
+            mAutomaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            mStates.add(s);
+        }
+        for (int i = 0; i < 300; i++) {
+            AutomatonState from = mStates.get(rand.nextInt(mStates.size()));
+            AutomatonState to = mStates.get(rand.nextInt(mStates.size()));
+            BasicRegexp re = rand.nextInt(3) == 0
+                    ? BasicRegexp.EPSILON_EXPRESSION
+                    : new BasicRegexp((char) ('a' + rand.nextInt(4)));
+            mAutomaton.addTransition(
+                    mAutomaton.createNewTransition(from, to, re));
+        }
+    }
+
+    @Test
+    public void testStructure() {
+        CompactAutomaton compact = mAutomaton.freeze();
+        assertEquals(mAutomaton.getNumStates(), compact.getNumStates());
+        assertSame(mAutomaton.getStartState(),
+                compact.getState(compact.getStartIndex()));
+
+        int numTrans = 0;
+        for (AutomatonState s : mStates) {
+            int idx = compact.indexOf(s);
+            assertSame(s, compact.getState(idx));
+            assertEquals(s.isFinal(), compact.isFinal(idx));
+
+            List<AutomatonTransition> trans = mAutomaton.getStateTransitions(s);
+            int start = compact.getTransitionsStart(idx);
+            int end = compact.getTransitionsEnd(idx);
+            assertEquals(trans.size(), end - start);
+            for (int t = start; t < end; t++) {
+                AutomatonTransition orig = mAutomaton
+                        .getTransitionById(compact.getTransitionId(t));
+                assertSame(s, orig.getFrom());
+                assertSame(orig.getTo(),
+                        compact.getState(compact.getTransitionTarget(t)));
+                assertEquals(orig.getData(),
+                        compact.getLabel(compact.getTransitionLabel(t)));
+                // Sorted by label, then target
+                if (t > start) {
+                    int prevLabel = compact.getTransitionLabel(t - 1);
+                    int label = compact.getTransitionLabel(t);
+                    assertTrue(prevLabel < label || (prevLabel == label
+                            && compact.getTransitionTarget(t - 1)
+                                <= compact.getTransitionTarget(t)));
+                }
+            }
+            numTrans += trans.size();
+        }
+        assertEquals(numTrans, compact.getNumTransitions());
+    }
+
+    @Test
+    public void testIndexOf_foreign() {
+        CompactAutomaton compact = mAutomaton.freeze();
+        assertEquals(-1, compact.indexOf(new AutomatonState(1)));
+        assertEquals(-1, compact.indexOf(new AutomatonState(100000)));
+        assertEquals(-1, compact.indexOf(mAutomaton.createNewState()));
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        CompactAutomaton compact = mAutomaton.freeze();
+        AutomatonState s = mStates.get(1);
+        boolean wasFinal = s.isFinal();
+        int numTrans = compact.getNumTransitions();
+
+        s.setFinal(!wasFinal);
+        mAutomaton.addTransition(mAutomaton.createNewTransition(s, s,
+                new BasicRegexp('z')));
+
+        assertEquals(wasFinal, compact.isFinal(compact.indexOf(s)));
+        assertEquals(numTrans, compact.getNumTransitions());
+    }
+
+    @Test
+    public void testCalcReachableStates() {
+        CompactAutomaton compact = mAutomaton.freeze();
+        for (AutomatonState s : mStates) {
+            assertEquals(
+                    TranslationTools.calcReachableStates(mAutomaton, s,
+                            t -> true),
+                    TranslationTools.calcReachableStates(compact,
+                            compact.indexOf(s), label -> true));
+            assertEquals(
+                    TranslationTools.calcEpsilonReachableStates(mAutomaton, s),
+                    TranslationTools.calcEpsilonReachableStates(compact,
+                            compact.indexOf(s)));
+        }
+        assertEquals(
+                TranslationTools.automatonCalcUnreachableStates(mAutomaton),
+                TranslationTools.automatonCalcUnreachableStates(compact));
+    }
+
+    @Test
+    public void testCalcAllEpsilonClosures() {
+        CompactAutomaton compact = mAutomaton.freeze();
+        StateSet[] closures = TranslationTools.calcAllEpsilonClosures(compact);
+        for (int i = 0; i < compact.getNumStates(); i++) {
+            assertEquals(TranslationTools.calcEpsilonReachableStates(compact,
+                    i), closures[i]);
+            // Equal closures are shared
+            for (int j = 0; j < i; j++) {
+                assertEquals(closures[i].equals(closures[j]),
+                        closures[i] == closures[j]);
+            }
+        }
+    }
+
+    @Test
+    public void testCalcAllEpsilonClosures_deepChain() {
+        // Long chain of epsilon transitions with a cycle back to the start,
+        // all states end up with the same closure
+        Automaton automaton = new Automaton();
+        AutomatonState prev = automaton.getStartState();
+        for (int i = 0; i < 100000; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            automaton.addTransition(automaton.createNewTransition(prev, s,
+                    BasicRegexp.EPSILON_EXPRESSION));
+            prev = s;
+        }
+        automaton.addTransition(automaton.createNewTransition(prev,
+                automaton.getStartState(), BasicRegexp.EPSILON_EXPRESSION));
+
+        CompactAutomaton compact = automaton.freeze();
+        StateSet[] closures = TranslationTools.calcAllEpsilonClosures(compact);
+        assertEquals(compact.getNumStates(), closures[0].size());
+        for (StateSet closure : closures) {
+            assertSame(closures[0], closure);
+        }
+    }
+
+    @Test
+    public void testNonDeterminism() {
+        CompactAutomaton compact = mAutomaton.freeze();
+        for (AutomatonState s : mStates) {
+            int idx = compact.indexOf(s);
+            assertEquals(
+                    TranslationTools.calcNonDeterministicTrans(mAutomaton, s),
+                    TranslationTools.calcNonDeterministicTrans(compact, idx));
+            assertEquals(
+                    TranslationTools.stateHasNonDeterminism(mAutomaton, s),
+                    TranslationTools.stateHasNonDeterminism(compact, idx));
+        }
+        assertTrue(TranslationTools.automatonHasNonDeterminism(compact));
+
+        Automaton dfa = new Automaton();
+        AutomatonState s1 = dfa.createNewState();
+        dfa.addStateWithTransitions(s1, new LinkedList<AutomatonTransition>());
+        dfa.addTransition(dfa.createNewTransition(dfa.getStartState(), s1,
+                new BasicRegexp('a')));
+        dfa.addTransition(dfa.createNewTransition(s1, s1,
+                new BasicRegexp('a')));
+        assertFalse(TranslationTools.automatonHasNonDeterminism(dfa.freeze()));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testFreeze_danglingTransition() {
+        AutomatonState s = mStates.get(5);
+        mAutomaton.addTransition(mAutomaton.createNewTransition(mStates.get(1),
+                s, new BasicRegexp('a')));
+        mAutomaton.removeState(s);
+        mAutomaton.freeze();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.model.ModelTestUtils.accepts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.DfaMinimisation;
+import model.MinimiseDfaCommand;
+import model.TranslationTools;
+
+public class DfaMinimisationTest {
+    private static final int ALPHABET_SIZE = 3;
+
+    /**
+     * Builds a partial DFA of "size" states where state i behaves like state
+     * (i % numClasses) of a small random DFA, so the minimal DFA has at most
+     * numClasses states.
+     */
+    private static Automaton buildRedundantDfa(int size, int numClasses,
+            Random rand) {
+        int[][] smallDelta = new int[numClasses][ALPHABET_SIZE];
+        boolean[] smallFinal = new boolean[numClasses];
+        for (int c = 0; c < numClasses; c++) {
+            smallFinal[c] = rand.nextInt(3) == 0;
+            for (int a = 0; a < ALPHABET_SIZE; a++) {
+                // -1 is a missing transition
+                smallDelta[c][a] = rand.nextInt(numClasses + 1) - 1;
+            }
+        }
+
+        Automaton automaton = new Automaton();
+        List<AutomatonState> states = new ArrayList<>();
+        states.add(automaton.getStartState());
+        for (int i = 1; i < size; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            states.add(s);
+        }
+        for (int i = 0; i < size; i++) {
+            int c = i % numClasses;
+            states.get(i).setFinal(smallFinal[c]);
+            for (int a = 0; a < ALPHABET_SIZE; a++) {
+                int toClass = smallDelta[c][a];
+                if (toClass < 0) {
+                    continue;
+                }
+                int to = toClass + numClasses
+                        * rand.nextInt((size - 1 - toClass) / numClasses + 1);
+                automaton.addTransition(automaton.createNewTransition(
+                        states.get(i), states.get(to),
+                        new BasicRegexp((char) ('a' + a))));
+            }
+        }
+        return automaton;
+    }
+
+    private static AutomatonState step(Automaton dfa, AutomatonState s,
+            char c) {
+        for (AutomatonTransition t : dfa.getStateTransitions(s)) {
+            if (t.getData().getChar() == c) {
+                return t.getTo();
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameLanguage(Automaton expected,
+            Automaton actual) {
+        List<String> strings = new ArrayList<>();
+        strings.add("");
+        for (int i = 0; i < strings.size(); i++) {
+            String s = strings.get(i);
+            assertEquals(s, accepts(expected, s), accepts(actual, s));
+            if (s.length() < 6) {
+                for (int a = 0; a < ALPHABET_SIZE; a++) {
+                    strings.add(s + (char) ('a' + a));
+                }
+            }
+        }
+    }
+
+    /**
+     * Naive Moore partition refinement, for checking the number of states of
+     * the minimal DFA.
+     */
+    private static int countMinimalStates(Automaton dfa) {
+        Set<AutomatonState> reachable = TranslationTools.calcReachableStates(
+                dfa, dfa.getStartState(), t -> true);
+        // null is the dead state
+        List<AutomatonState> states = new ArrayList<>(reachable);
+        states.add(null);
+        Map<AutomatonState, Integer> classes = new HashMap<>();
+        for (AutomatonState s : states) {
+            classes.put(s, s != null && s.isFinal() ? 1 : 0);
+        }
+        int numClasses = 0;
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            Map<AutomatonState, Integer> newClasses = new HashMap<>();
+            for (AutomatonState s : states) {
+                List<Integer> sig = new ArrayList<>();
+                sig.add(classes.get(s));
+                for (int a = 0; a < ALPHABET_SIZE; a++) {
+                    sig.add(classes.get(s == null ? null
+                            : step(dfa, s, (char) ('a' + a))));
+                }
+                Integer c = signatures.get(sig);
+                if (c == null) {
+                    c = signatures.size();
+                    signatures.put(sig, c);
+                }
+                newClasses.put(s, c);
+            }
+            classes = newClasses;
+            if (signatures.size() == numClasses) {
+                break;
+            }
+            numClasses = signatures.size();
+        }
+        // The dead state's class isn't part of the minimal DFA, unless it is
+        // empty of live states
+        int deadClass = classes.get(null);
+        Set<Integer> live = new HashSet<>();
+        for (AutomatonState s : reachable) {
+            if (classes.get(s) != deadClass) {
+                live.add(classes.get(s));
+            }
+        }
+        return live.size();
+    }
+
+    @Test
+    public void testMinimise_random() {
+        Random rand = new Random(5);
+        for (int iter = 0; iter < 30; iter++) {
+            int numClasses = 1 + rand.nextInt(8);
+            Automaton dfa = buildRedundantDfa(numClasses * (1
+                    + rand.nextInt(10)), numClasses, rand);
+            int expected = countMinimalStates(dfa);
+
+            Automaton minimal = DfaMinimisation.minimise(dfa);
+            assertEquals(Math.max(expected, 1), minimal.getNumStates());
+            assertFalse(TranslationTools.automatonHasNonDeterminism(minimal));
+            assertSameLanguage(dfa, minimal);
+            assertEquals(expected,
+                    DfaMinimisation.calcEquivalentStates(dfa).size());
+        }
+    }
+
+    @Test
+    public void testMinimise_alreadyMinimal() {
+        Random rand = new Random(9);
+        Automaton dfa = buildRedundantDfa(200, 200, rand);
+        Automaton minimal = DfaMinimisation.minimise(dfa);
+        assertEquals(countMinimalStates(dfa), minimal.getNumStates());
+        assertEquals(minimal.getNumStates(),
+                DfaMinimisation.minimise(minimal).getNumStates());
+    }
+
+    @Test
+    public void testMinimise_emptyLanguage() {
+        Automaton dfa = new Automaton();
+        AutomatonState s = dfa.createNewState();
+        dfa.addStateWithTransitions(s, new LinkedList<AutomatonTransition>());
+        dfa.addTransition(dfa.createNewTransition(dfa.getStartState(), s,
+                new BasicRegexp('a')));
+        Automaton minimal = DfaMinimisation.minimise(dfa);
+        assertEquals(1, minimal.getNumStates());
+        assertFalse(minimal.getStartState().isFinal());
+        assertFalse(minimal.hasOutgoingTransition(minimal.getStartState()));
+        assertTrue(DfaMinimisation.calcEquivalentStates(dfa).isEmpty());
+    }
+
+    @Test
+    public void testMinimise_nonDeterministic() {
+        Automaton nfa = new Automaton();
+        AutomatonState s = nfa.createNewState();
+        nfa.addStateWithTransitions(s, new LinkedList<AutomatonTransition>());
+        nfa.addTransition(nfa.createNewTransition(nfa.getStartState(), s,
+                new BasicRegexp('a')));
+        nfa.addTransition(nfa.createNewTransition(nfa.getStartState(),
+                nfa.getStartState(), new BasicRegexp('a')));
+        try {
+            DfaMinimisation.minimise(nfa);
+            fail("Expecting exception: RuntimeException");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testMinimiseDfaCommand() {
+        Random rand = new Random(13);
+        for (int iter = 0; iter < 20; iter++) {
+            int numClasses = 1 + rand.nextInt(6);
+            Automaton dfa = buildRedundantDfa(numClasses * (1
+                    + rand.nextInt(6)), numClasses, rand);
+            Automaton copy = DfaMinimisation.minimise(dfa);
+            int expected = countMinimalStates(dfa);
+            int numStates = dfa.getNumStates();
+            Map<AutomatonState, List<AutomatonTransition>> before =
+                    new HashMap<>();
+            Iterator<Automaton.StateTransitionsPair> it = dfa.graphIterator();
+            while (it.hasNext()) {
+                AutomatonState s = it.next().getState();
+                before.put(s, new ArrayList<>(dfa.getStateTransitions(s)));
+            }
+
+            MinimiseDfaCommand cmd = new MinimiseDfaCommand(dfa);
+            cmd.redo();
+            assertEquals(Math.max(expected, 1), dfa.getNumStates());
+            assertEquals(numStates - dfa.getNumStates(),
+                    cmd.getRemovedStates().size());
+            assertFalse(TranslationTools.automatonHasNonDeterminism(dfa));
+            assertSameLanguage(copy, dfa);
+
+            cmd.undo();
+            assertEquals(numStates, dfa.getNumStates());
+            for (Map.Entry<AutomatonState, List<AutomatonTransition>> e
+                    : before.entrySet()) {
+                assertTrue(dfa.stateExists(e.getKey()));
+                assertEquals(new HashSet<>(e.getValue()), new HashSet<>(
+                        dfa.getStateTransitions(e.getKey())));
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.model.ModelTestUtils.randomPattern;
+import static test.model.ModelTestUtils.randomString;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.Automaton;
+import model.BasicRegexp;
+import model.DfaMinimisation;
+import model.DfaTable;
+import model.InvalidRegexpException;
+import model.NfaMatcher;
+import model.RegexpCompiler;
+import model.SubsetConstruction;
+
+public class DfaTableTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static void assertSameLanguage(NfaMatcher expected,
+            DfaTable table, Random rand) {
+        for (int i = 0; i < 200; i++) {
+            String s = randomString(rand, "abcd\u4e2d", 12);
+            assertEquals(s, expected.matches(s), table.matches(s));
+        }
+    }
+
+    @Test
+    public void testMatches() throws InvalidRegexpException {
+        Random rand = new Random(24);
+        for (int i = 0; i < 100; i++) {
+            Automaton nfa = RegexpCompiler.compileGlushkov(
+                    BasicRegexp.parseRegexp(
+                            randomPattern(rand, 4, "abc\u4e2d", "*")));
+            NfaMatcher expected = new NfaMatcher(nfa);
+            Automaton dfa = SubsetConstruction.determinise(nfa);
+            assertSameLanguage(expected, new DfaTable(dfa), rand);
+            assertSameLanguage(expected,
+                    new DfaTable(DfaMinimisation.minimise(dfa)), rand);
+        }
+    }
+
+    @Test
+    public void testTable() throws InvalidRegexpException {
+        DfaTable table = new DfaTable(DfaMinimisation.minimise(
+                SubsetConstruction.determinise(RegexpCompiler.compileGlushkov(
+                        BasicRegexp.parseRegexp("(a|b)c")))));
+        assertEquals(3, table.getNumStates());
+        assertEquals(3, table.getNumClasses());
+        assertEquals(table.classOf('a'), table.classOf('b'));
+        assertEquals(0, table.classOf('d'));
+
+        int state = table.step(table.getStartState(), 'b');
+        assertFalse(table.isFinal(state));
+        assertEquals(-1, table.step(state, 'b'));
+        state = table.step(state, 'c');
+        assertTrue(table.isFinal(state));
+        assertEquals(-1, table.step(state, 'a'));
+    }
+
+    @Test
+    public void testSaveLoad() throws InvalidRegexpException, IOException {
+        Random rand = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            Automaton nfa = RegexpCompiler.compileGlushkov(
+                    BasicRegexp.parseRegexp(
+                            randomPattern(rand, 4, "abc\u4e2d", "*")));
+            DfaTable table = new DfaTable(DfaMinimisation.minimise(
+                    SubsetConstruction.determinise(nfa)));
+            File file = mFolder.newFile();
+            table.save(file);
+            DfaTable loaded = DfaTable.load(file);
+            assertEquals(table.getNumStates(), loaded.getNumStates());
+            assertEquals(table.getNumClasses(), loaded.getNumClasses());
+            assertSameLanguage(new NfaMatcher(nfa), loaded, rand);
+
+            // Saving a mapped table gives the same file
+            File copy = mFolder.newFile();
+            loaded.save(copy);
+            assertArrayEquals(Files.readAllBytes(file.toPath()),
+                    Files.readAllBytes(copy.toPath()));
+        }
+    }
+
+    private void assertLoadFails(byte[] data) throws IOException {
+        File file = mFolder.newFile();
+        Files.write(file.toPath(), data);
+        try {
+            DfaTable.load(file);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testLoad_invalid() throws InvalidRegexpException,
+            IOException {
+        DfaTable table = new DfaTable(SubsetConstruction.determinise(
+                RegexpCompiler.compileGlushkov(
+                        BasicRegexp.parseRegexp("a*b"))));
+        File file = mFolder.newFile();
+        table.save(file);
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        assertLoadFails(new byte[0]);
+        assertLoadFails(Arrays.copyOf(data, 12));
+        assertLoadFails(Arrays.copyOf(data, data.length - 4));
+        assertLoadFails(Arrays.copyOf(data, data.length + 4));
+        byte[] badMagic = data.clone();
+        badMagic[1] = 'X';
+        assertLoadFails(badMagic);
+        byte[] badVersion = data.clone();
+        badVersion[7] = 99;
+        assertLoadFails(badVersion);
+        // First entry of the page index, pointing past the pages
+        byte[] badPage = data.clone();
+        badPage[20] = 1;
+        assertLoadFails(badPage);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonDeterministic() throws InvalidRegexpException {
+        new DfaTable(RegexpCompiler.compileGlushkov(
+                BasicRegexp.parseRegexp("ab|ac")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEpsilon() throws InvalidRegexpException {
+        new DfaTable(RegexpCompiler.compileThompson(
+                BasicRegexp.parseRegexp("a*")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNull() {
+        new DfaTable(null);
+    }
+}
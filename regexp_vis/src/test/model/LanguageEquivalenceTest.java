@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static test.model.ModelTestUtils.randomPattern;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.BasicRegexp;
+import model.BrzozowskiConstruction;
+import model.InvalidRegexpException;
+import model.LanguageEquivalence;
+import model.NfaMatcher;
+import model.RegexpCompiler;
+import model.StateElimination;
+import model.SubsetConstruction;
+
+public class LanguageEquivalenceTest {
+
+    // Random expressions may contain epsilon
+    private static final String PATTERN_ALPHABET = "ab\u03b5";
+
+    private static String findCounterexample(String a, String b)
+            throws InvalidRegexpException {
+        return LanguageEquivalence.findCounterexample(
+                BasicRegexp.parseRegexp(a), BasicRegexp.parseRegexp(b));
+    }
+
+    /**
+     * @return The shortest word over {a, b} of at most "maxLength" characters
+     * accepted by exactly one of the matchers, or null if there is none
+     */
+    private static String bruteForceCounterexample(NfaMatcher a,
+            NfaMatcher b, int maxLength) {
+        for (int len = 0; len <= maxLength; len++) {
+            for (int bits = 0; bits < (1 << len); bits++) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < len; i++) {
+                    sb.append((bits & (1 << i)) == 0 ? 'a' : 'b');
+                }
+                String w = sb.toString();
+                if (a.matches(w) != b.matches(w)) {
+                    return w;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testEquivalent() throws InvalidRegexpException {
+        assertNull(findCounterexample("(a|b)*", "(a*b*)*"));
+        assertNull(findCounterexample("a(ba)*", "(ab)*a"));
+        assertNull(findCounterexample("(a|b)*a(a|b)", "(a|b)*(aa|ab)"));
+        assertNull(findCounterexample("a+", "aa*"));
+        assertNull(findCounterexample("(a?)*", "\u03b5|a+"));
+        assertTrue(LanguageEquivalence.areEquivalent(
+                BasicRegexp.parseRegexp("(a|b)*"),
+                BasicRegexp.parseRegexp("(b|a)*")));
+    }
+
+    @Test
+    public void testCounterexample() throws InvalidRegexpException {
+        assertEquals("", findCounterexample("a*", "a+"));
+        assertEquals("b", findCounterexample("a|b", "a|c"));
+        assertEquals("c", findCounterexample("a|b", "a|b|c"));
+        assertEquals("aa", findCounterexample("(a|b)*a(a|b)", "(a|b)*ab"));
+        // The shortest word accepted by only one of them has length 4,
+        // although both have words of every length
+        assertEquals(4, findCounterexample("(a|b)*a(a|b)(a|b)(a|b)",
+                "(a|b)*b(a|b)(a|b)(a|b)").length());
+        assertFalse(LanguageEquivalence.areEquivalent(
+                BasicRegexp.parseRegexp("(ab)*"),
+                BasicRegexp.parseRegexp("(ab)+")));
+    }
+
+    @Test
+    public void testCounterexample_random() throws InvalidRegexpException {
+        Random rand = new Random(20);
+        int numEquivalent = 0;
+        for (int i = 0; i < 1000; i++) {
+            BasicRegexp a = BasicRegexp.parseRegexp(
+                    randomPattern(rand, 4, PATTERN_ALPHABET, "*+?"));
+            BasicRegexp b = rand.nextInt(4) == 0 ? a.optimiseFully(
+                    BasicRegexp.OPTIMISE_ALL,
+                    BasicRegexp.DEFAULT_OPTIMISE_BUDGET)
+                    : BasicRegexp.parseRegexp(randomPattern(rand, 4,
+                            PATTERN_ALPHABET, "*+?"));
+            NfaMatcher matcherA = new NfaMatcher(
+                    RegexpCompiler.compileThompson(a));
+            NfaMatcher matcherB = new NfaMatcher(
+                    RegexpCompiler.compileThompson(b));
+
+            String expected = bruteForceCounterexample(matcherA, matcherB, 8);
+            String actual = LanguageEquivalence.findCounterexample(a, b);
+            if (expected == null) {
+                // Any difference would need a longer word than this small
+                // regexps can distinguish
+                assertNull(a + " " + b, actual);
+                numEquivalent++;
+            } else {
+                assertEquals(a + " " + b, expected.length(), actual.length());
+                assertNotEquals(a + " " + b, matcherA.matches(actual),
+                        matcherB.matches(actual));
+            }
+        }
+        assertTrue(numEquivalent > 250);
+    }
+
+    @Test
+    public void testAutomata() throws InvalidRegexpException {
+        BasicRegexp re = BasicRegexp.parseRegexp(
+                "(a|bc)*d?(e|f)+(a|bc)*d?(e|f)+");
+        Automaton nfa = RegexpCompiler.compileThompson(re);
+        Automaton glushkov = RegexpCompiler.compileGlushkov(re);
+        assertTrue(LanguageEquivalence.areEquivalent(nfa, glushkov));
+        assertTrue(LanguageEquivalence.areEquivalent(nfa,
+                SubsetConstruction.determinise(glushkov)));
+        assertTrue(LanguageEquivalence.areEquivalent(nfa,
+                BrzozowskiConstruction.buildDfa(re)));
+
+        for (StateElimination.Heuristic heuristic
+                : StateElimination.Heuristic.values()) {
+            Automaton automaton = RegexpCompiler.compileThompson(re);
+            StateElimination.eliminateAll(automaton, heuristic, null);
+            assertTrue(LanguageEquivalence.areEquivalent(re,
+                    StateElimination.getResult(automaton)));
+        }
+
+        // The empty set
+        assertEquals("a", LanguageEquivalence.findCounterexample(
+                new Automaton(), RegexpCompiler.compileThompson(
+                        BasicRegexp.parseRegexp("a"))));
+        assertNull(LanguageEquivalence.findCounterexample(new Automaton(),
+                new Automaton()));
+    }
+
+    @Test
+    public void testLarge() throws InvalidRegexpException {
+        // (a|b)*a(a|b){16} has a DFA of 2^17 states, the check only visits
+        // pairs as far as the counterexample, or each DFA state once
+        StringBuilder sb = new StringBuilder("(a|b)*a");
+        for (int i = 0; i < 16; i++) {
+            sb.append("(a|b)");
+        }
+        BasicRegexp a = BasicRegexp.parseRegexp(sb.toString());
+        BasicRegexp b = BasicRegexp.parseRegexp(sb.toString() + "(a|b)");
+        assertEquals(17, findCounterexample(a.toString(), b.toString())
+                .length());
+        assertNull(LanguageEquivalence.findCounterexample(a,
+                a.optimiseFully(BasicRegexp.OPTIMISE_ALL,
+                        BasicRegexp.DEFAULT_OPTIMISE_BUDGET)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArg() {
+        LanguageEquivalence.findCounterexample((Automaton) null,
+                new Automaton());
+    }
+}
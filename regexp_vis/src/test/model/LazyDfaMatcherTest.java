@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static test.model.ModelTestUtils.buildNthFromLastThompson;
+import static test.model.ModelTestUtils.randomString;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.LazyDfaMatcher;
+import model.NfaMatcher;
+import model.RegexpCompiler;
+
+public class LazyDfaMatcherTest {
+
+    @Test
+    public void testMatches_largeBudget() throws InvalidRegexpException {
+        Automaton nfa = buildNthFromLastThompson(4);
+        NfaMatcher expected = new NfaMatcher(nfa);
+        LazyDfaMatcher matcher = new LazyDfaMatcher(nfa);
+        Random rand = new Random(8);
+        for (int i = 0; i < 2000; i++) {
+            String s = randomString(rand, "ab", 30);
+            assertEquals(s, expected.matches(s), matcher.matches(s));
+        }
+        assertEquals(0, matcher.getCacheFlushes());
+        // All 2^5 states of the minimal DFA are reached, plus the start
+        // state's set which no other input leads back to. Most steps are hits.
+        assertEquals(33, matcher.getNumCachedStates());
+        assertTrue(matcher.getCacheHits() > 10 * matcher.getCacheMisses());
+    }
+
+    @Test
+    public void testMatches_smallBudget() throws InvalidRegexpException {
+        Automaton nfa = buildNthFromLastThompson(12);
+        NfaMatcher expected = new NfaMatcher(nfa);
+        // Room for only a handful of states
+        LazyDfaMatcher matcher = new LazyDfaMatcher(nfa, 2000);
+        Random rand = new Random(9);
+        for (int i = 0; i < 500; i++) {
+            String s = randomString(rand, "ab", 40);
+            assertEquals(s, expected.matches(s), matcher.matches(s));
+        }
+        assertTrue(matcher.getCacheFlushes() > 0);
+        assertTrue(matcher.getNumCachedStates() < 20);
+    }
+
+    @Test
+    public void testMatches_otherChars() throws InvalidRegexpException {
+        Automaton nfa = RegexpCompiler.compileGlushkov(
+                BasicRegexp.parseRegexp("(a|\u0100)*b"));
+        LazyDfaMatcher matcher = new LazyDfaMatcher(nfa);
+        assertTrue(matcher.matches("a\u0100ab"));
+        assertTrue(matcher.matches("b"));
+        assertFalse(matcher.matches("acb"));
+        assertFalse(matcher.matches("\u0101b"));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLazyDfaMatcher_tinyBudget() throws InvalidRegexpException {
+        new LazyDfaMatcher(buildNthFromLastThompson(2), 100);
+    }
+}
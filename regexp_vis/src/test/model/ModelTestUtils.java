@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.RegexpCompiler;
+import model.TranslationTools;
+
+/**
+ * Static methods shared by the model tests, for building test automata and
+ * inputs, and checking results against a straightforward simulation.
+ */
+final class ModelTestUtils {
+
+    private ModelTestUtils() {
+    }
+
+    /**
+     * @return An epsilon-free NFA for (a|b)*a(a|b){n}, whose minimal DFA has
+     * 2^(n+1) states
+     */
+    static Automaton buildNthFromLast(int n) {
+        Automaton automaton = new Automaton();
+        AutomatonState start = automaton.getStartState();
+        automaton.addTransition(automaton.createNewTransition(start, start,
+                new BasicRegexp('a')));
+        automaton.addTransition(automaton.createNewTransition(start, start,
+                new BasicRegexp('b')));
+        AutomatonState prev = start;
+        for (int i = 0; i <= n; i++) {
+            AutomatonState next = automaton.createNewState();
+            automaton.addStateWithTransitions(next,
+                    new LinkedList<AutomatonTransition>());
+            automaton.addTransition(automaton.createNewTransition(prev, next,
+                    new BasicRegexp('a')));
+            if (i > 0) {
+                automaton.addTransition(automaton.createNewTransition(prev,
+                        next, new BasicRegexp('b')));
+            }
+            prev = next;
+        }
+        prev.setFinal(true);
+        return automaton;
+    }
+
+    /**
+     * @return The Thompson NFA for (a|b)*a(a|b){n}, with epsilon transitions,
+     * see buildNthFromLast()
+     */
+    static Automaton buildNthFromLastThompson(int n)
+            throws InvalidRegexpException {
+        StringBuilder pattern = new StringBuilder("(a|b)*a");
+        for (int i = 0; i < n; i++) {
+            pattern.append("(a|b)");
+        }
+        return RegexpCompiler.compileThompson(
+                BasicRegexp.parseRegexp(pattern.toString()));
+    }
+
+    /**
+     * Simulates an automaton on the given input, following epsilon
+     * transitions, independently of the matchers being tested.
+     */
+    static boolean accepts(Automaton automaton, String input) {
+        Set<AutomatonState> current = TranslationTools
+                .calcEpsilonReachableStates(automaton,
+                        automaton.getStartState());
+        for (char c : input.toCharArray()) {
+            Set<AutomatonState> next = new HashSet<>();
+            for (AutomatonState s : current) {
+                for (AutomatonTransition t : automaton
+                        .getStateTransitions(s)) {
+                    if (t.getData().getChar() == c) {
+                        next.addAll(TranslationTools
+                                .calcEpsilonReachableStates(automaton,
+                                        t.getTo()));
+                    }
+                }
+            }
+            current = next;
+        }
+        for (AutomatonState s : current) {
+            if (s.isFinal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return All strings over {a, b} of length at most maxLength, shortest
+     * first
+     */
+    static List<String> allStrings(int maxLength) {
+        List<String> strings = new ArrayList<>();
+        strings.add("");
+        for (int i = 0; i < strings.size(); i++) {
+            String s = strings.get(i);
+            if (s.length() < maxLength) {
+                strings.add(s + "a");
+                strings.add(s + "b");
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * @return A random string of at most maxLength characters taken from
+     * "chars"
+     */
+    static String randomString(Random rand, String chars, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        int len = rand.nextInt(maxLength + 1);
+        for (int i = 0; i < len; i++) {
+            sb.append(chars.charAt(rand.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param depth The maximum nesting depth of the expression
+     * @param alphabet The characters the expression may use
+     * @param unaryOps The unary operators the expression may use, from "*+?"
+     * @return A random regular expression, for parseRegexp()
+     */
+    static String randomPattern(Random rand, int depth, String alphabet,
+            String unaryOps) {
+        int choice = depth == 0 ? 0 : rand.nextInt(4 + unaryOps.length());
+        switch (choice) {
+        case 0:
+        case 1:
+            return String.valueOf(alphabet.charAt(
+                    rand.nextInt(alphabet.length())));
+        case 2:
+            return randomPattern(rand, depth - 1, alphabet, unaryOps)
+                    + randomPattern(rand, depth - 1, alphabet, unaryOps);
+        case 3:
+            return "(" + randomPattern(rand, depth - 1, alphabet, unaryOps)
+                    + "|" + randomPattern(rand, depth - 1, alphabet, unaryOps)
+                    + ")";
+        default:
+            return "(" + randomPattern(rand, depth - 1, alphabet, unaryOps)
+                    + ")" + unaryOps.charAt(choice - 4);
+        }
+    }
+}
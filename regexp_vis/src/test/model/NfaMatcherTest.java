@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.model.ModelTestUtils.accepts;
+import static test.model.ModelTestUtils.randomString;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.NfaMatcher;
+import model.RegexpCompiler;
+
+public class NfaMatcherTest {
+
+    @Test
+    public void testMatches_randomNfa() {
+        Random rand = new Random(21);
+        for (int iter = 0; iter < 50; iter++) {
+            // Enough states to need several words
+            int numStates = 2 + rand.nextInt(150);
+            Automaton automaton = new Automaton();
+            List<AutomatonState> states = new ArrayList<>();
+            states.add(automaton.getStartState());
+            for (int i = 1; i < numStates; i++) {
+                AutomatonState s = automaton.createNewState();
+                s.setFinal(rand.nextInt(8) == 0);
+                automaton.addStateWithTransitions(s,
+                        new LinkedList<AutomatonTransition>());
+                states.add(s);
+            }
+            for (int i = 0; i < numStates * 2; i++) {
+                AutomatonState from = states.get(rand.nextInt(numStates));
+                AutomatonState to = states.get(rand.nextInt(numStates));
+                BasicRegexp re = rand.nextInt(4) == 0
+                        ? BasicRegexp.EPSILON_EXPRESSION
+                        : new BasicRegexp((char) ('a' + rand.nextInt(3)));
+                automaton.addTransition(automaton.createNewTransition(from,
+                        to, re));
+            }
+
+            NfaMatcher matcher = new NfaMatcher(automaton);
+            for (int i = 0; i < 50; i++) {
+                String s = randomString(rand, "abc", 12);
+                assertEquals(s, accepts(automaton, s), matcher.matches(s));
+            }
+        }
+    }
+
+    @Test
+    public void testMatches_parsed() throws InvalidRegexpException {
+        String[] patterns = { "(a|b)*abb", "a+b?c*", "((ab)*|c)+a", "abc",
+            "(a|b|c)*(aa|bb|cc)(a|b|c)*" };
+        Random rand = new Random(4);
+        for (String pattern : patterns) {
+            BasicRegexp re = BasicRegexp.parseRegexp(pattern);
+            Pattern expected = Pattern.compile(pattern);
+            NfaMatcher thompson = new NfaMatcher(
+                    RegexpCompiler.compileThompson(re));
+            NfaMatcher glushkov = new NfaMatcher(
+                    RegexpCompiler.compileGlushkov(re));
+            for (int i = 0; i < 500; i++) {
+                String s = randomString(rand, "abc", 10);
+                boolean matches = expected.matcher(s).matches();
+                assertEquals(pattern + " on " + s, matches,
+                        thompson.matches(s));
+                assertEquals(pattern + " on " + s, matches,
+                        glushkov.matches(s));
+            }
+        }
+    }
+
+    @Test
+    public void testMatches_emptyInput() {
+        Automaton automaton = new Automaton();
+        assertFalse(new NfaMatcher(automaton).matches(""));
+        automaton.getStartState().setFinal(true);
+        assertTrue(new NfaMatcher(automaton).matches(""));
+        assertFalse(new NfaMatcher(automaton).matches("a"));
+    }
+
+    @Test
+    public void testMatches_largeThompson() throws InvalidRegexpException {
+        // 80001 states, each with a small epsilon closure,
+        // which mustn't take memory quadratic in the number of states
+        StringBuilder pattern = new StringBuilder();
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            pattern.append("(a|b)c");
+            input.append(i % 2 == 0 ? "ac" : "bc");
+        }
+        NfaMatcher matcher = new NfaMatcher(RegexpCompiler.compileThompson(
+                BasicRegexp.parseRegexp(pattern.toString())));
+        assertTrue(matcher.matches(input));
+        input.setCharAt(input.length() - 1, 'a');
+        assertFalse(matcher.matches(input));
+    }
+
+    @Test
+    public void testMatches_snapshot() throws InvalidRegexpException {
+        Automaton automaton = RegexpCompiler.compileGlushkov(
+                BasicRegexp.parseRegexp("ab"));
+        NfaMatcher matcher = new NfaMatcher(automaton);
+        automaton.getStartState().setFinal(true);
+        assertFalse(matcher.matches(""));
+        assertTrue(matcher.matches("ab"));
+    }
+
+    @Test
+    public void testNfaMatcher_hybrid() {
+        Automaton automaton = new Automaton();
+        AutomatonState s = automaton.createNewState();
+        automaton.addStateWithTransitions(s,
+                new LinkedList<AutomatonTransition>());
+        ArrayList<BasicRegexp> operands = new ArrayList<>();
+        operands.add(new BasicRegexp('a'));
+        operands.add(new BasicRegexp('b'));
+        automaton.addTransition(automaton.createNewTransition(
+                automaton.getStartState(), s, new BasicRegexp(operands,
+                        BasicRegexp.RegexpOperator.SEQUENCE)));
+        try {
+            new NfaMatcher(automaton);
+            fail("Expecting exception: RuntimeException");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static test.model.ModelTestUtils.randomPattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.BasicRegexp;
+import model.DfaMinimisation;
+import model.InvalidRegexpException;
+import model.NfaMatcher;
+import model.PatternSetMatcher;
+import model.RegexpCompiler;
+import model.SubsetConstruction;
+
+public class PatternSetMatcherTest {
+
+    private static List<BasicRegexp> parseAll(String... patterns)
+            throws InvalidRegexpException {
+        List<BasicRegexp> list = new ArrayList<>();
+        for (String pattern : patterns) {
+            list.add(BasicRegexp.parseRegexp(pattern));
+        }
+        return list;
+    }
+
+    @Test
+    public void testCompileUnion() throws InvalidRegexpException {
+        Automaton union = RegexpCompiler.compileUnion(
+                parseAll("ab", "a*", "a|c"));
+        // One state per character plus the shared start state
+        assertEquals(1 + 2 + 1 + 2, union.getNumStates());
+        assertArrayEquals(new int[] { 1 },
+                union.getStartState().getPatternIds());
+        assertTrue(union.getStartState().isFinal());
+
+        Iterator<Automaton.StateTransitionsPair> it = union.graphIterator();
+        while (it.hasNext()) {
+            AutomatonState state = it.next().getState();
+            assertEquals(state.isFinal(),
+                    state.getPatternIds().length > 0);
+        }
+    }
+
+    @Test
+    public void testDeterminise() throws InvalidRegexpException {
+        Automaton dfa = SubsetConstruction.determinise(
+                RegexpCompiler.compileUnion(parseAll("a", "a", "ab", "a*")));
+        AutomatonState start = dfa.getStartState();
+        assertArrayEquals(new int[] { 3 }, start.getPatternIds());
+        AutomatonState afterA = dfa.getStateTransitions(start).get(0).getTo();
+        assertArrayEquals(new int[] { 0, 1, 3 }, afterA.getPatternIds());
+    }
+
+    @Test
+    public void testMinimise() throws InvalidRegexpException {
+        // Without the pattern IDs the states after "a" and after "b" would be
+        // merged
+        Automaton dfa = SubsetConstruction.determinise(
+                RegexpCompiler.compileUnion(parseAll("a", "b")));
+        assertEquals(3, DfaMinimisation.minimise(dfa).getNumStates());
+        Automaton single = SubsetConstruction.determinise(
+                RegexpCompiler.compileGlushkov(
+                        BasicRegexp.parseRegexp("a|b")));
+        assertEquals(2, DfaMinimisation.minimise(single).getNumStates());
+
+        // Equal patterns are still merged
+        dfa = SubsetConstruction.determinise(RegexpCompiler.compileUnion(
+                parseAll("(a|b)c", "ac|bc")));
+        assertEquals(3, DfaMinimisation.minimise(dfa).getNumStates());
+    }
+
+    @Test
+    public void testMatches() throws InvalidRegexpException {
+        PatternSetMatcher matcher = new PatternSetMatcher(
+                parseAll("ab", "a*", "a(b|c)", "x\u0100"));
+        assertEquals(4, matcher.getNumPatterns());
+        assertArrayEquals(new int[] { 1 }, matcher.matches(""));
+        assertArrayEquals(new int[] { 0, 2 }, matcher.matches("ab"));
+        assertArrayEquals(new int[] { 1 }, matcher.matches("aaa"));
+        assertArrayEquals(new int[] { 2 }, matcher.matches("ac"));
+        assertArrayEquals(new int[] { 3 }, matcher.matches("x\u0100"));
+        assertArrayEquals(new int[0], matcher.matches("abc"));
+        assertArrayEquals(new int[0], matcher.matches("z"));
+
+        assertArrayEquals(new int[0], new PatternSetMatcher(
+                new ArrayList<BasicRegexp>()).matches(""));
+    }
+
+    @Test
+    public void testMatches_random() throws InvalidRegexpException {
+        Random rand = new Random(21);
+        List<BasicRegexp> patterns = new ArrayList<>();
+        List<NfaMatcher> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            BasicRegexp re = BasicRegexp.parseRegexp(
+                    randomPattern(rand, 4, "abc", "*+?"));
+            patterns.add(re);
+            expected.add(new NfaMatcher(RegexpCompiler.compileThompson(re)));
+        }
+        PatternSetMatcher matcher = new PatternSetMatcher(patterns);
+
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = rand.nextInt(8);
+            for (int j = 0; j < len; j++) {
+                sb.append("abcd".charAt(rand.nextInt(4)));
+            }
+            String input = sb.toString();
+            int[] ids = new int[patterns.size()];
+            int numIds = 0;
+            for (int id = 0; id < patterns.size(); id++) {
+                if (expected.get(id).matches(input)) {
+                    ids[numIds++] = id;
+                }
+            }
+            assertArrayEquals(input, Arrays.copyOf(ids, numIds),
+                    matcher.matches(input));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArg() {
+        List<BasicRegexp> patterns = new ArrayList<>();
+        patterns.add(null);
+        RegexpCompiler.compileUnion(patterns);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static test.model.ModelTestUtils.accepts;
+import static test.model.ModelTestUtils.allStrings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.BasicRegexp;
+import model.BasicRegexp.RegexpOperator;
+import model.InvalidRegexpException;
+import model.RegexpCompiler;
+import model.TranslationTools;
+
+public class RegexpCompilerTest {
+
+    /**
+     * Generates a random expression over {a, b, epsilon}, appending the
+     * equivalent java.util.regex pattern to "pattern".
+     */
+    private static BasicRegexp randomRegexp(Random rand, int depth,
+            StringBuilder pattern) {
+        int choice = depth == 0 ? rand.nextInt(3) : rand.nextInt(8);
+        switch (choice) {
+        case 0:
+            pattern.append('a');
+            return new BasicRegexp('a');
+        case 1:
+            pattern.append('b');
+            return new BasicRegexp('b');
+        case 2:
+            pattern.append("(?:)");
+            return BasicRegexp.EPSILON_EXPRESSION;
+        case 3:
+        case 4: {
+            RegexpOperator op = choice == 3 ? RegexpOperator.SEQUENCE
+                    : RegexpOperator.CHOICE;
+            ArrayList<BasicRegexp> operands = new ArrayList<>();
+            int numOperands = 2 + rand.nextInt(2);
+            pattern.append("(?:");
+            for (int i = 0; i < numOperands; i++) {
+                if (i > 0 && op == RegexpOperator.CHOICE) {
+                    pattern.append('|');
+                }
+                operands.add(randomRegexp(rand, depth - 1, pattern));
+            }
+            pattern.append(')');
+            return new BasicRegexp(operands, op);
+        }
+        default: {
+            RegexpOperator op = choice == 5 ? RegexpOperator.STAR
+                    : choice == 6 ? RegexpOperator.PLUS
+                    : RegexpOperator.OPTION;
+            pattern.append("(?:");
+            BasicRegexp operand = randomRegexp(rand, depth - 1, pattern);
+            pattern.append(')');
+            pattern.append(op == RegexpOperator.STAR ? '*'
+                    : op == RegexpOperator.PLUS ? '+' : '?');
+            return new BasicRegexp(operand, op);
+        }
+        }
+    }
+
+    private static int countChars(BasicRegexp re) {
+        if (re.isSingleChar()) {
+            return re.getChar() == BasicRegexp.EPSILON_CHAR ? 0 : 1;
+        }
+        int count = 0;
+        for (BasicRegexp operand : re.getOperands()) {
+            count += countChars(operand);
+        }
+        return count;
+    }
+
+    @Test
+    public void testCompile_random() {
+        Random rand = new Random(17);
+        List<String> strings = allStrings(6);
+        for (int iter = 0; iter < 300; iter++) {
+            StringBuilder pattern = new StringBuilder();
+            BasicRegexp re = randomRegexp(rand, 4, pattern);
+            Pattern expected = Pattern.compile(pattern.toString());
+
+            Automaton thompson = RegexpCompiler.compileThompson(re);
+            Automaton glushkov = RegexpCompiler.compileGlushkov(re);
+            assertFalse(TranslationTools.automatonHasEpsilonTransitions(
+                    glushkov));
+            assertEquals(countChars(re) + 1, glushkov.getNumStates());
+            for (String s : strings) {
+                boolean matches = expected.matcher(s).matches();
+                assertEquals(re + " on " + s, matches, accepts(thompson, s));
+                assertEquals(re + " on " + s, matches, accepts(glushkov, s));
+            }
+        }
+    }
+
+    @Test
+    public void testCompile_parsed() throws InvalidRegexpException {
+        BasicRegexp re = BasicRegexp.parseRegexp("(a|b)*abb");
+        Automaton glushkov = RegexpCompiler.compileGlushkov(re);
+        assertEquals(6, glushkov.getNumStates());
+        Automaton thompson = RegexpCompiler.compileThompson(re);
+        for (String s : allStrings(7)) {
+            boolean expected = s.endsWith("abb");
+            assertEquals(s, expected, accepts(thompson, s));
+            assertEquals(s, expected, accepts(glushkov, s));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileThompson_null() {
+        RegexpCompiler.compileThompson(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileGlushkov_null() {
+        RegexpCompiler.compileGlushkov(null);
+    }
+}
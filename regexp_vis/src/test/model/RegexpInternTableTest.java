@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.RegexpInternTable;
+import model.SequenceStateTransitionsCommand;
+
+public class RegexpInternTableTest {
+
+    @Test
+    public void testIntern_sharesSubexpressions()
+            throws InvalidRegexpException {
+        RegexpInternTable table = new RegexpInternTable();
+        BasicRegexp re = BasicRegexp.parseRegexp("(ab|c)*x(ab|c)*");
+        BasicRegexp interned = table.intern(re);
+
+        assertEquals(re, interned);
+        assertEquals(re.toString(), interned.toString());
+        List<BasicRegexp> operands = interned.getOperands();
+        assertSame(operands.get(0), operands.get(2));
+        // a, b, ab, c, ab|c, (ab|c)*, x, (ab|c)*x(ab|c)*
+        assertEquals(8, table.size());
+    }
+
+    @Test
+    public void testIntern_sameInstance() throws InvalidRegexpException {
+        RegexpInternTable table = new RegexpInternTable();
+        BasicRegexp re1 = table.intern(BasicRegexp.parseRegexp("a(b|c)+d?"));
+        BasicRegexp re2 = table.intern(BasicRegexp.parseRegexp("a(b|c)+d?"));
+        assertSame(re1, re2);
+        assertSame(re1, table.intern(re1));
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertNotSame(re1,
+                table.intern(BasicRegexp.parseRegexp("a(b|c)+d?")));
+    }
+
+    @Test
+    public void testIntern_keepsChoiceOrder() throws InvalidRegexpException {
+        // Equal according to equals(), but they must print as they were
+        RegexpInternTable table = new RegexpInternTable();
+        BasicRegexp re1 = table.intern(BasicRegexp.parseRegexp("a|b"));
+        BasicRegexp re2 = table.intern(BasicRegexp.parseRegexp("b|a"));
+        assertEquals(re1, re2);
+        assertNotSame(re1, re2);
+        assertEquals("a|b", re1.toString());
+        assertEquals("b|a", re2.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntern_null() {
+        new RegexpInternTable().intern(null);
+    }
+
+    private static AutomatonTransition addTransition(Automaton automaton,
+            AutomatonState from, AutomatonState to, String re)
+            throws InvalidRegexpException {
+        AutomatonTransition t = automaton.createNewTransition(from, to,
+                BasicRegexp.parseRegexp(re));
+        automaton.addTransition(t);
+        return t;
+    }
+
+    @Test
+    public void testSequenceStateTransitions() throws InvalidRegexpException {
+        Automaton automaton = new Automaton();
+        AutomatonState start = automaton.getStartState();
+        AutomatonState other = automaton.createNewState();
+        AutomatonState mid = automaton.createNewState();
+        AutomatonState end = automaton.createNewState();
+        automaton.addStateWithTransitions(other,
+                new LinkedList<AutomatonTransition>());
+        automaton.addStateWithTransitions(mid,
+                new LinkedList<AutomatonTransition>());
+        automaton.addStateWithTransitions(end,
+                new LinkedList<AutomatonTransition>());
+        addTransition(automaton, start, mid, "ab|c");
+        addTransition(automaton, other, mid, "ab|c");
+        addTransition(automaton, mid, end, "d*");
+
+        RegexpInternTable table = new RegexpInternTable();
+        SequenceStateTransitionsCommand cmd =
+                new SequenceStateTransitionsCommand(automaton, mid, table);
+        cmd.redo();
+
+        List<AutomatonTransition> sequenced = cmd.getSequencedTransitions();
+        assertEquals(2, sequenced.size());
+        BasicRegexp re1 = sequenced.get(0).getData();
+        BasicRegexp re2 = sequenced.get(1).getData();
+        assertEquals(BasicRegexp.parseRegexp("(ab|c)d*"), re1);
+        assertSame(re1, re2);
+    }
+
+}
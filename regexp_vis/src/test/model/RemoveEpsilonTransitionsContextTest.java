@@ -35,6 +35,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
@@ -42,7 +43,10 @@ import org.junit.Test;
 import model.Automaton;
 import model.AutomatonState;
 import model.AutomatonTransition;
+import model.BasicRegexp;
 import model.RemoveEpsilonTransitionsContext;
+import model.RemoveEquivalentStatesCommand;
+import model.TranslationTools;
 
 @SuppressWarnings({ "unused", "static-method" })
 public class RemoveEpsilonTransitionsContextTest {
@@ -284,4 +288,97 @@ public class RemoveEpsilonTransitionsContextTest {
 
         }
     }
+
+    @Test
+    public void testEquivalentStates_matchClosures() {
+        // Random NFA with plenty of epsilon cycles
+        Random rand = new Random(3);
+        Automaton automaton = new Automaton();
+        List<AutomatonState> states = new ArrayList<>();
+        states.add(automaton.getStartState());
+        for (int i = 0; i < 60; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            states.add(s);
+        }
+        for (int i = 0; i < 80; i++) {
+            AutomatonState from = states.get(rand.nextInt(states.size()));
+            AutomatonState to = states.get(rand.nextInt(states.size()));
+            BasicRegexp re = rand.nextInt(2) == 0
+                    ? BasicRegexp.EPSILON_EXPRESSION
+                    : new BasicRegexp('a');
+            automaton.addTransition(automaton.createNewTransition(from, to,
+                    re));
+        }
+
+        RemoveEpsilonTransitionsContext ctx =
+                new RemoveEpsilonTransitionsContext(automaton);
+        for (AutomatonState a : states) {
+            Set<AutomatonState> aClosure = TranslationTools
+                    .calcEpsilonReachableStates(automaton, a);
+            assertTrue(ctx.getEquivalentStates(a).contains(a));
+            for (AutomatonState b : states) {
+                boolean expected = aClosure.equals(TranslationTools
+                        .calcEpsilonReachableStates(automaton, b));
+                assertEquals(expected, ctx.areStatesEquivalent(a, b));
+                assertEquals(expected,
+                        ctx.getEquivalentStates(a).contains(b));
+            }
+        }
+    }
+
+    @Test
+    public void testEquivalentStatesExist_tracksCommands() {
+        // a -> {1, 2, 3} where 1, 2 and 3 are equivalent via an epsilon cycle
+        Automaton automaton = new Automaton();
+        AutomatonState start = automaton.getStartState();
+        List<AutomatonState> states = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            automaton.addTransition(automaton.createNewTransition(start, s,
+                    new BasicRegexp('a')));
+            states.add(s);
+        }
+        for (int i = 0; i < 3; i++) {
+            automaton.addTransition(automaton.createNewTransition(
+                    states.get(i), states.get((i + 1) % 3),
+                    BasicRegexp.EPSILON_EXPRESSION));
+        }
+
+        RemoveEpsilonTransitionsContext ctx =
+                new RemoveEpsilonTransitionsContext(automaton);
+        // A detached context answers by checking each state
+        RemoveEpsilonTransitionsContext scanCtx =
+                new RemoveEpsilonTransitionsContext(automaton);
+        scanCtx.detach();
+
+        assertTrue(ctx.equivalentStatesExist(automaton));
+        assertTrue(ctx.equivalentStatesExist(automaton, states.get(0)));
+        assertFalse(ctx.equivalentStatesExist(automaton, start));
+
+        RemoveEquivalentStatesCommand cmd = new RemoveEquivalentStatesCommand(
+                automaton, ctx, states.get(0));
+        cmd.redo();
+        assertFalse(automaton.stateExists(states.get(1)));
+        assertFalse(ctx.equivalentStatesExist(automaton));
+        assertFalse(ctx.equivalentStatesExist(automaton, states.get(0)));
+        // The removed states still have one equivalent state present
+        assertTrue(ctx.equivalentStatesExist(automaton, states.get(1)));
+        for (AutomatonState s : states) {
+            assertEquals(scanCtx.equivalentStatesExist(automaton, s),
+                    ctx.equivalentStatesExist(automaton, s));
+        }
+
+        cmd.undo();
+        assertTrue(ctx.equivalentStatesExist(automaton));
+        assertEquals(scanCtx.equivalentStatesExist(automaton),
+                ctx.equivalentStatesExist(automaton));
+
+        automaton.clear();
+        assertFalse(ctx.equivalentStatesExist(automaton));
+        assertFalse(scanCtx.equivalentStatesExist(automaton));
+    }
 }
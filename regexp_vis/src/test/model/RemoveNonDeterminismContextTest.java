@@ -26,16 +26,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.Set;
 
 import org.junit.Test;
 
 import model.Automaton;
 import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.RemoveNonDeterminismCommand;
 import model.RemoveNonDeterminismContext;
+import model.StateSet;
 
 @SuppressWarnings({ "unused", "static-method" })
 public class RemoveNonDeterminismContextTest {
@@ -219,4 +226,68 @@ public class RemoveNonDeterminismContextTest {
         Automaton automaton1 = removeNonDeterminismContext0.getAutomaton();
         assertSame(automaton0, automaton1);
     }
+
+    @Test
+    public void testReachableToSet_stateSet() {
+        Automaton automaton = new Automaton();
+        AutomatonState start = automaton.getStartState();
+        AutomatonState s1 = automaton.createNewState();
+        AutomatonState s2 = automaton.createNewState();
+        automaton.addStateWithTransitions(s1,
+                new LinkedList<AutomatonTransition>());
+        automaton.addStateWithTransitions(s2,
+                new LinkedList<AutomatonTransition>());
+        automaton.addTransition(automaton.createNewTransition(start, s1,
+                new BasicRegexp('a')));
+        automaton.addTransition(automaton.createNewTransition(start, s2,
+                new BasicRegexp('a')));
+        RemoveNonDeterminismContext ctx = new RemoveNonDeterminismContext(
+                automaton);
+
+        RemoveNonDeterminismCommand cmd = new RemoveNonDeterminismCommand(ctx,
+                start, 'a');
+        cmd.redo();
+        AutomatonState newState = cmd.getNewStateCommand().getState();
+
+        // Sets of original states are StateSet(s), equal to ordinary sets
+        Set<AutomatonState> expected = new HashSet<>();
+        expected.add(s1);
+        expected.add(s2);
+        Set<AutomatonState> binding = ctx.lookupStateBinding(newState);
+        assertTrue(binding instanceof StateSet);
+        assertEquals(expected, binding);
+
+        // Sets containing the new state are translated to original states
+        Set<AutomatonState> reachable = new HashSet<>();
+        reachable.add(newState);
+        reachable.add(start);
+        Set<AutomatonState> ppSet = ctx.reachableToSet(reachable);
+        assertTrue(ppSet instanceof StateSet);
+        expected.add(start);
+        assertEquals(expected, ppSet);
+        assertSame(newState, ctx.findStateFromSet(binding));
+    }
+
+    @Test
+    public void testFindStateFromSet_rebinding() {
+        Automaton automaton = new Automaton();
+        RemoveNonDeterminismContext ctx = new RemoveNonDeterminismContext(
+                automaton);
+        AutomatonState s = new AutomatonState(10);
+        Set<AutomatonState> set1 = new HashSet<>();
+        set1.add(automaton.getStartState());
+        Set<AutomatonState> set2 = new HashSet<>();
+
+        ctx.putStateBinding(s, set1);
+        assertSame(s, ctx.findStateFromSet(new HashSet<>(set1)));
+
+        // Rebinding replaces the old set
+        ctx.putStateBinding(s, set2);
+        assertNull(ctx.findStateFromSet(set1));
+        assertSame(s, ctx.findStateFromSet(set2));
+
+        ctx.removeStateBinding(s);
+        assertNull(ctx.findStateFromSet(set2));
+        assertNull(ctx.lookupStateBinding(s));
+    }
 }
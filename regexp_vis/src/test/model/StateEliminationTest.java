@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.Command;
+import model.InvalidRegexpException;
+import model.NfaMatcher;
+import model.RegexpCompiler;
+import model.StateElimination;
+import model.StateElimination.Heuristic;
+import model.TranslationTools;
+
+public class StateEliminationTest {
+
+    /**
+     * Builds a random NFA over "a", "b" and epsilon, including loops and
+     * parallel transitions.
+     */
+    private static Automaton buildRandomNfa(int size, Random rand) {
+        Automaton automaton = new Automaton();
+        List<AutomatonState> states = new ArrayList<>();
+        states.add(automaton.getStartState());
+        for (int i = 1; i < size; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            states.add(s);
+        }
+        for (AutomatonState s : states) {
+            s.setFinal(rand.nextInt(4) == 0);
+        }
+        int numTrans = size * 2;
+        for (int i = 0; i < numTrans; i++) {
+            AutomatonState from = states.get(rand.nextInt(size));
+            AutomatonState to = states.get(rand.nextInt(size));
+            char c = "abab\u03b5".charAt(rand.nextInt(5));
+            automaton.addTransition(automaton.createNewTransition(from, to,
+                    new BasicRegexp(c)));
+        }
+        return automaton;
+    }
+
+    private static int countTransitions(Automaton automaton) {
+        int count = 0;
+        for (int id = 0; id < 10000; id++) {
+            AutomatonState s = automaton.getStateById(id);
+            if (s != null) {
+                count += automaton.getStateTransitions(s).size();
+            }
+        }
+        return count;
+    }
+
+    private static void assertSameLanguage(NfaMatcher expected,
+            BasicRegexp result) {
+        NfaMatcher actual = result == null ? null
+                : new NfaMatcher(RegexpCompiler.compileThompson(result));
+        for (int len = 0; len <= 6; len++) {
+            for (int bits = 0; bits < (1 << len); bits++) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < len; i++) {
+                    sb.append((bits & (1 << i)) == 0 ? 'a' : 'b');
+                }
+                String w = sb.toString();
+                assertEquals(w, expected.matches(w),
+                        actual != null && actual.matches(w));
+            }
+        }
+    }
+
+    @Test
+    public void testEliminateAll() {
+        for (Heuristic heuristic : Heuristic.values()) {
+            Random rand = new Random(19);
+            for (int i = 0; i < 100; i++) {
+                Automaton automaton = buildRandomNfa(2 + rand.nextInt(8),
+                        rand);
+                NfaMatcher expected = new NfaMatcher(automaton);
+                boolean hasFinalState = TranslationTools
+                        .automatonHasFinalState(automaton);
+                StateElimination.eliminateAll(automaton, heuristic, null);
+                // Nothing is done for the empty set
+                assertTrue(automaton.getNumStates() <= 2 || !hasFinalState);
+                assertSameLanguage(expected,
+                        StateElimination.getResult(automaton));
+            }
+        }
+    }
+
+    @Test
+    public void testEliminateAll_trivial() {
+        // No final state
+        Automaton automaton = new Automaton();
+        StateElimination.eliminateAll(automaton, Heuristic.LABEL_WEIGHT,
+                null);
+        assertNull(StateElimination.getResult(automaton));
+
+        // Only the initial state, which is final
+        automaton.getStartState().setFinal(true);
+        StateElimination.eliminateAll(automaton, Heuristic.LABEL_WEIGHT,
+                null);
+        assertEquals(BasicRegexp.EPSILON_EXPRESSION,
+                StateElimination.getResult(automaton));
+    }
+
+    @Test
+    public void testCalcResultSizes() {
+        Random rand = new Random(190);
+        for (int i = 0; i < 50; i++) {
+            Automaton automaton = buildRandomNfa(2 + rand.nextInt(10), rand);
+            NfaMatcher expected = new NfaMatcher(automaton);
+            int numStates = automaton.getNumStates();
+            int numTrans = countTransitions(automaton);
+
+            EnumMap<Heuristic, Integer> sizes = StateElimination
+                    .calcResultSizes(automaton);
+            assertEquals(Heuristic.values().length, sizes.size());
+
+            // Restored
+            assertEquals(numStates, automaton.getNumStates());
+            assertEquals(numTrans, countTransitions(automaton));
+            List<Command> commands = StateElimination.eliminateAll(automaton,
+                    Heuristic.LABEL_WEIGHT, null);
+            BasicRegexp result = StateElimination.getResult(automaton);
+            assertSameLanguage(expected, result);
+            assertEquals((int) sizes.get(Heuristic.LABEL_WEIGHT),
+                    result == null ? 0 : result.getSize());
+        }
+    }
+
+    @Test
+    public void testHeuristicOrder() throws InvalidRegexpException {
+        BasicRegexp re = BasicRegexp.parseRegexp(
+                "(a|bc)*d?(e|f)+(a|bc)*d?(e|f)+(a|bc)*d?(e|f)+");
+        EnumMap<Heuristic, Integer> sizes = StateElimination
+                .calcResultSizes(RegexpCompiler.compileThompson(re));
+        assertTrue(sizes.get(Heuristic.DEGREE_PRODUCT)
+                < sizes.get(Heuristic.IN_ORDER));
+        assertTrue(sizes.get(Heuristic.LABEL_WEIGHT)
+                < sizes.get(Heuristic.IN_ORDER));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArg() {
+        StateElimination.eliminateAll(new Automaton(), null, null);
+    }
+}
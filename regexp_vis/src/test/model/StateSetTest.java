@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.CompactAutomaton;
+import model.StateSet;
+
+public class StateSetTest {
+    private CompactAutomaton mUniverse;
+    private List<AutomatonState> mStates;
+
+    @Before
+    public void setUp() throws Exception {
+        // More than two words worth of states
+        Automaton automaton = new Automaton();
+        mStates = new ArrayList<>();
+        mStates.add(automaton.getStartState());
+        for (int i = 0; i < 150; i++) {
+            AutomatonState s = automaton.createNewState();
+            automaton.addStateWithTransitions(s,
+                    new LinkedList<AutomatonTransition>());
+            mStates.add(s);
+        }
+        mUniverse = automaton.freeze();
+    }
+
+    private StateSet setOf(int... indices) {
+        StateSet set = new StateSet(mUniverse);
+        for (int i : indices) {
+            set.add(mStates.get(i));
+        }
+        return set;
+    }
+
+    @Test
+    public void testAddContainsRemove() {
+        StateSet set = new StateSet(mUniverse);
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(mStates.get(3)));
+        assertFalse(set.add(mStates.get(3)));
+        assertTrue(set.add(mStates.get(130)));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(mStates.get(3)));
+        assertTrue(set.contains(mStates.get(130)));
+        assertFalse(set.contains(mStates.get(4)));
+        assertFalse(set.contains(new AutomatonState(3)));
+        assertFalse(set.contains("not a state"));
+
+        assertTrue(set.remove(mStates.get(3)));
+        assertFalse(set.remove(mStates.get(3)));
+        assertEquals(1, set.size());
+        assertFalse(set.contains(mStates.get(3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdd_foreign() {
+        new StateSet(mUniverse).add(new AutomatonState(3));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        StateSet a = setOf(1, 64, 100);
+        StateSet b = setOf(100, 1, 64);
+        // b has grown further than a, the extra words are zero
+        b.add(mStates.get(140));
+        b.remove(mStates.get(140));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        // Equal to other Set implementations with the same states
+        Set<AutomatonState> hashSet = new HashSet<>(a);
+        assertEquals(hashSet, a);
+        assertEquals(a, hashSet);
+        assertEquals(hashSet.hashCode(), a.hashCode());
+
+        // Cached hash code is invalidated by modification
+        int oldHash = a.hashCode();
+        a.add(mStates.get(2));
+        assertNotEquals(a, b);
+        hashSet.add(mStates.get(2));
+        assertEquals(hashSet.hashCode(), a.hashCode());
+        assertNotEquals(oldHash, a.hashCode());
+    }
+
+    @Test
+    public void testUnionIntersect() {
+        StateSet a = setOf(1, 2, 70);
+        StateSet b = setOf(2, 3, 140);
+
+        StateSet union = new StateSet(a);
+        assertTrue(union.addAll(b));
+        assertEquals(setOf(1, 2, 3, 70, 140), union);
+        assertEquals(5, union.size());
+        assertFalse(union.addAll(a));
+
+        StateSet intersection = new StateSet(a);
+        assertTrue(intersection.retainAll(b));
+        assertEquals(setOf(2), intersection);
+        assertEquals(1, intersection.size());
+
+        assertTrue(a.intersects(b));
+        assertFalse(setOf(1).intersects(setOf(140)));
+    }
+
+    @Test
+    public void testComplement() {
+        StateSet set = setOf(0, 63, 64, 150);
+        StateSet complement = set.complement();
+        assertEquals(mStates.size() - 4, complement.size());
+        for (int i = 0; i < mStates.size(); i++) {
+            assertEquals(!set.contains(mStates.get(i)),
+                    complement.contains(mStates.get(i)));
+        }
+        assertEquals(mStates.size(), new StateSet(mUniverse).complement()
+                .size());
+    }
+
+    @Test
+    public void testIterator() {
+        StateSet set = setOf(5, 65, 129);
+        Iterator<AutomatonState> it = set.iterator();
+        assertEquals(mStates.get(5), it.next());
+        assertEquals(mStates.get(65), it.next());
+        it.remove();
+        assertEquals(mStates.get(129), it.next());
+        assertFalse(it.hasNext());
+        assertEquals(setOf(5, 129), set);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertEquals;
+import static test.model.ModelTestUtils.randomPattern;
+import static test.model.ModelTestUtils.randomString;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.BasicRegexp;
+import model.DfaMinimisation;
+import model.DfaTable;
+import model.InvalidRegexpException;
+import model.RegexpCompiler;
+import model.StreamSearcher;
+import model.SubsetConstruction;
+
+public class StreamSearcherTest {
+
+    private static DfaTable buildTable(String pattern)
+            throws InvalidRegexpException {
+        return new DfaTable(DfaMinimisation.minimise(
+                SubsetConstruction.determinise(
+                        RegexpCompiler.compileGlushkov(
+                                BasicRegexp.parseRegexp(pattern)))));
+    }
+
+    /**
+     * Straightforward leftmost-longest search of a whole string, to check
+     * against
+     */
+    private static List<String> searchString(DfaTable table, String input) {
+        List<String> matches = new ArrayList<>();
+        int pos = 0;
+        while (pos <= input.length()) {
+            int state = table.getStartState();
+            int lastEnd = table.isFinal(state) ? pos : -1;
+            for (int i = pos; i < input.length() && state >= 0; i++) {
+                state = table.step(state, input.charAt(i));
+                if (state >= 0 && table.isFinal(state)) {
+                    lastEnd = i + 1;
+                }
+            }
+            if (lastEnd >= 0) {
+                matches.add(pos + "-" + lastEnd);
+                pos = lastEnd > pos ? lastEnd : pos + 1;
+            } else {
+                pos++;
+            }
+        }
+        return matches;
+    }
+
+    private static List<String> searchReader(DfaTable table, String input,
+            int bufferSize) throws IOException {
+        List<String> matches = new ArrayList<>();
+        StreamSearcher searcher = new StreamSearcher(table, bufferSize);
+        long count = searcher.search(new StringReader(input),
+                (start, end) -> matches.add(start + "-" + end));
+        assertEquals(matches.size(), count);
+        return matches;
+    }
+
+    private static List<String> searchChannel(DfaTable table, String input,
+            int bufferSize) throws IOException {
+        List<String> matches = new ArrayList<>();
+        StreamSearcher searcher = new StreamSearcher(table, bufferSize);
+        long count = searcher.search(Channels.newChannel(
+                new ByteArrayInputStream(
+                        input.getBytes(StandardCharsets.ISO_8859_1))),
+                (start, end) -> matches.add(start + "-" + end));
+        assertEquals(matches.size(), count);
+        return matches;
+    }
+
+    @Test
+    public void testSearch() throws InvalidRegexpException, IOException {
+        DfaTable table = buildTable("ab*");
+        List<String> expected = new ArrayList<>();
+        expected.add("1-5");
+        expected.add("6-7");
+        expected.add("7-9");
+        assertEquals(expected, searchReader(table, "xabbbyaab", 64));
+        assertEquals(expected, searchChannel(table, "xabbbyaab", 64));
+        assertEquals(expected, searchChannel(table, "xabbbyaab", 1));
+    }
+
+    @Test
+    public void testSearch_empty() throws InvalidRegexpException,
+            IOException {
+        // Empty matches like java.util.regex.Matcher.find()
+        DfaTable table = buildTable("a*");
+        List<String> expected = new ArrayList<>();
+        expected.add("0-0");
+        expected.add("1-2");
+        expected.add("2-2");
+        expected.add("3-3");
+        assertEquals(expected, searchReader(table, "bab", 2));
+        assertEquals(expected, searchChannel(table, "bab", 2));
+
+        expected.clear();
+        expected.add("0-0");
+        assertEquals(expected, searchReader(table, "", 4));
+        expected.clear();
+        assertEquals(expected, searchReader(buildTable("a"), "", 4));
+    }
+
+    @Test
+    public void testSearch_random() throws InvalidRegexpException,
+            IOException {
+        Random rand = new Random(25);
+        int[] bufferSizes = {1, 2, 3, 7, 64};
+        for (int i = 0; i < 200; i++) {
+            DfaTable table = buildTable(randomPattern(rand, 4, "abc", "+*"));
+            for (int j = 0; j < 10; j++) {
+                String input = randomString(rand, "abcd", 40);
+                List<String> expected = searchString(table, input);
+                int bufferSize = bufferSizes[rand.nextInt(bufferSizes.length)];
+                assertEquals(input, expected,
+                        searchReader(table, input, bufferSize));
+                assertEquals(input, expected,
+                        searchChannel(table, input, bufferSize));
+            }
+        }
+    }
+
+    @Test
+    public void testSearch_longMatch() throws InvalidRegexpException,
+            IOException {
+        // A match much longer than the buffer grows the window
+        StringBuilder sb = new StringBuilder("zzx");
+        for (int i = 0; i < 100000; i++) {
+            sb.append(i % 3 == 0 ? 'a' : 'b');
+        }
+        sb.append("yzx");
+        String input = sb.toString();
+        DfaTable table = buildTable("x(a|b)*y");
+        List<String> expected = new ArrayList<>();
+        expected.add("2-" + (input.length() - 2));
+        assertEquals(expected, searchChannel(table, input, 16));
+        assertEquals(expected, searchReader(table, input, 16));
+    }
+
+    @Test
+    public void testSearch_maxMatchLength() throws InvalidRegexpException,
+            IOException {
+        // Longer matches are cut at the limit and the search carries on
+        List<String> matches = new ArrayList<>();
+        StreamSearcher searcher = new StreamSearcher(buildTable("a+"), 2, 4);
+        searcher.search(new StringReader("aaaaaaaaaab"),
+                (start, end) -> matches.add(start + "-" + end));
+        List<String> expected = new ArrayList<>();
+        expected.add("0-4");
+        expected.add("4-8");
+        expected.add("8-10");
+        assertEquals(expected, matches);
+
+        // A long near miss is given up at the limit, so a later match is
+        // still found
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append(i % 3 == 0 ? 'a' : 'b');
+        }
+        sb.append("cy");
+        matches.clear();
+        searcher = new StreamSearcher(buildTable("(a|b)*y|c"), 16, 32);
+        searcher.search(new StringReader(sb.toString()),
+                (start, end) -> matches.add(start + "-" + end));
+        expected.clear();
+        expected.add("100000-100001");
+        expected.add("100001-100002");
+        assertEquals(expected, matches);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMaxMatchLength() throws InvalidRegexpException {
+        new StreamSearcher(buildTable("a"), 16, 0);
+    }
+
+    @Test
+    public void testSearch_nonLatin1() throws InvalidRegexpException,
+            IOException {
+        DfaTable table = buildTable("\u4e2d+\u6587");
+        List<String> expected = new ArrayList<>();
+        expected.add("1-5");
+        assertEquals(expected, searchReader(table,
+                "a\u4e2d\u4e2d\u4e2d\u6587\u6587", 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullListener() throws InvalidRegexpException,
+            IOException {
+        new StreamSearcher(buildTable("a")).search(new StringReader("a"),
+                null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullTable() {
+        new StreamSearcher(null);
+    }
+}
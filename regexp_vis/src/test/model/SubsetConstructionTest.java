@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2015, 2016 Matthew J. Nicholls, Samuel Pengelly,
+ * Parham Ghassemi, William R. Dix
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package test.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.model.ModelTestUtils.accepts;
+import static test.model.ModelTestUtils.allStrings;
+import static test.model.ModelTestUtils.buildNthFromLast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import model.Automaton;
+import model.AutomatonState;
+import model.AutomatonTransition;
+import model.BasicRegexp;
+import model.InvalidRegexpException;
+import model.RegexpCompiler;
+import model.SubsetConstruction;
+import model.TranslationTools;
+
+public class SubsetConstructionTest {
+
+    @Test
+    public void testDeterminise_nthFromLast() {
+        for (int n = 0; n <= 5; n++) {
+            Automaton nfa = buildNthFromLast(n);
+            int nfaStates = nfa.getNumStates();
+            Automaton dfa = SubsetConstruction.determinise(nfa);
+
+            assertEquals(1 << (n + 1), dfa.getNumStates());
+            assertFalse(TranslationTools.automatonHasNonDeterminism(dfa));
+            // The original is left untouched
+            assertEquals(nfaStates, nfa.getNumStates());
+            for (String s : allStrings(n + 4)) {
+                assertEquals(s, accepts(nfa, s), accepts(dfa, s));
+            }
+        }
+    }
+
+    @Test
+    public void testDeterminise_random() {
+        Random rand = new Random(11);
+        for (int iter = 0; iter < 20; iter++) {
+            Automaton nfa = new Automaton();
+            List<AutomatonState> states = new ArrayList<>();
+            states.add(nfa.getStartState());
+            for (int i = 0; i < 8; i++) {
+                AutomatonState s = nfa.createNewState();
+                s.setFinal(rand.nextInt(3) == 0);
+                nfa.addStateWithTransitions(s,
+                        new LinkedList<AutomatonTransition>());
+                states.add(s);
+            }
+            for (int i = 0; i < 20; i++) {
+                AutomatonState from = states.get(rand.nextInt(states.size()));
+                AutomatonState to = states.get(rand.nextInt(states.size()));
+                nfa.addTransition(nfa.createNewTransition(from, to,
+                        new BasicRegexp((char) ('a' + rand.nextInt(2)))));
+            }
+
+            Map<AutomatonState, Set<AutomatonState>> subsetMap =
+                    new HashMap<>();
+            Automaton dfa = SubsetConstruction.determinise(nfa, subsetMap);
+            assertFalse(TranslationTools.automatonHasNonDeterminism(dfa));
+            assertEquals(dfa.getNumStates(), subsetMap.size());
+            for (String s : allStrings(8)) {
+                assertEquals(s, accepts(nfa, s), accepts(dfa, s));
+            }
+
+            // Each DFA state is final iff its subset contains a final state,
+            // and no two DFA states share a subset
+            Set<Set<AutomatonState>> seen = new HashSet<>();
+            Iterator<Automaton.StateTransitionsPair> it = dfa.graphIterator();
+            while (it.hasNext()) {
+                AutomatonState s = it.next().getState();
+                Set<AutomatonState> subset = subsetMap.get(s);
+                boolean hasFinal = false;
+                for (AutomatonState nfaState : subset) {
+                    hasFinal |= nfaState.isFinal();
+                }
+                assertEquals(hasFinal, s.isFinal());
+                assertTrue(seen.add(new HashSet<>(subset)));
+            }
+        }
+    }
+
+    /**
+     * Asserts that two automata are identical, including their state IDs and
+     * the order of the transitions.
+     */
+    private static void assertIdentical(Automaton expected, Automaton actual) {
+        assertEquals(expected.getNumStates(), actual.getNumStates());
+        Iterator<Automaton.StateTransitionsPair> it = expected.graphIterator();
+        while (it.hasNext()) {
+            Automaton.StateTransitionsPair pair = it.next();
+            AutomatonState s1 = pair.getState();
+            AutomatonState s2 = actual.getStateById(s1.getId());
+            assertEquals(s1.isFinal(), s2.isFinal());
+            assertArrayEquals(s1.getPatternIds(), s2.getPatternIds());
+            List<AutomatonTransition> trans1 = pair.getTransitions();
+            List<AutomatonTransition> trans2 = actual.getStateTransitions(s2);
+            assertEquals(trans1.size(), trans2.size());
+            for (int i = 0; i < trans1.size(); i++) {
+                assertEquals(trans1.get(i).getData(),
+                        trans2.get(i).getData());
+                assertEquals(trans1.get(i).getTo().getId(),
+                        trans2.get(i).getTo().getId());
+            }
+        }
+    }
+
+    @Test
+    public void testDeterminiseParallel() throws InvalidRegexpException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Wide enough levels to be split between tasks
+            for (int n = 0; n <= 10; n += 2) {
+                Automaton nfa = buildNthFromLast(n);
+                Map<AutomatonState, Set<AutomatonState>> subsetMap =
+                        new HashMap<>();
+                Automaton dfa = SubsetConstruction.determiniseParallel(nfa,
+                        subsetMap, pool);
+                assertIdentical(SubsetConstruction.determinise(nfa), dfa);
+                assertEquals(dfa.getNumStates(), subsetMap.size());
+            }
+
+            List<BasicRegexp> patterns = new ArrayList<>();
+            Random rand = new Random(22);
+            for (int i = 0; i < 100; i++) {
+                String[] parts = { "a", "b", "a*", "(a|b)*" };
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < 6; j++) {
+                    sb.append(parts[rand.nextInt(parts.length)]);
+                }
+                patterns.add(BasicRegexp.parseRegexp(sb.toString()));
+            }
+            Automaton union = RegexpCompiler.compileUnion(patterns);
+            assertIdentical(SubsetConstruction.determinise(union),
+                    SubsetConstruction.determiniseParallel(union, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeterminiseParallel_null() {
+        SubsetConstruction.determiniseParallel(new Automaton(), null);
+    }
+
+    @Test
+    public void testDeterminise_startSubset() {
+        Automaton nfa = buildNthFromLast(2);
+        Map<AutomatonState, Set<AutomatonState>> subsetMap = new HashMap<>();
+        Automaton dfa = SubsetConstruction.determinise(nfa, subsetMap);
+        Set<AutomatonState> startSubset = subsetMap.get(dfa.getStartState());
+        assertEquals(1, startSubset.size());
+        assertTrue(startSubset.contains(nfa.getStartState()));
+    }
+
+    @Test
+    public void testDeterminise_epsilon() {
+        Automaton nfa = new Automaton();
+        AutomatonState s = nfa.createNewState();
+        nfa.addStateWithTransitions(s, new LinkedList<AutomatonTransition>());
+        nfa.addTransition(nfa.createNewTransition(nfa.getStartState(), s,
+                BasicRegexp.EPSILON_EXPRESSION));
+        try {
+            SubsetConstruction.determinise(nfa);
+            fail("Expecting exception: RuntimeException");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeterminise_null() {
+        SubsetConstruction.determinise(null);
+    }
+}